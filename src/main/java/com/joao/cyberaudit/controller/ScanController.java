@@ -4,206 +4,234 @@ import com.joao.cyberaudit.model.*;
 import com.joao.cyberaudit.service.*;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/scan")
 public class ScanController {
 
-    private final SSLService sslService;
-    private final HeaderService headerService;
-    private final ScoreService scoreService;
-    private final HttpFetchService httpFetchService;
+    private final ScanPipelineService scanPipelineService;
     private final ReportService reportService;
-    private final ErrorDisclosureService errorDisclosureService;
-    private final PortScanService portScanService;
-    private final XssProbeService xssProbeService;
     private final PdfReportService pdfReportService;
-    private final ScanCacheService scanCacheService;
     private final RateLimitService rateLimitService;
+    private final BatchScanService batchScanService;
+    private final ScanJobService scanJobService;
+    private final ScanStreamService scanStreamService;
+    private final ProbeScheduler probeScheduler;
+    private final NetworkScanService networkScanService;
 
     public ScanController(
-            SSLService sslService,
-            HeaderService headerService,
-            ScoreService scoreService,
-            HttpFetchService httpFetchService,
+            ScanPipelineService scanPipelineService,
             ReportService reportService,
-            ErrorDisclosureService errorDisclosureService,
-            PortScanService portScanService,
-            XssProbeService xssProbeService,
             PdfReportService pdfReportService,
-            ScanCacheService scanCacheService,
-            RateLimitService rateLimitService
+            RateLimitService rateLimitService,
+            BatchScanService batchScanService,
+            ScanJobService scanJobService,
+            ScanStreamService scanStreamService,
+            ProbeScheduler probeScheduler,
+            NetworkScanService networkScanService
     ) {
-        this.sslService = sslService;
-        this.headerService = headerService;
-        this.scoreService = scoreService;
-        this.httpFetchService = httpFetchService;
+        this.scanPipelineService = scanPipelineService;
         this.reportService = reportService;
-        this.errorDisclosureService = errorDisclosureService;
-        this.portScanService = portScanService;
-        this.xssProbeService = xssProbeService;
         this.pdfReportService = pdfReportService;
-        this.scanCacheService = scanCacheService;
         this.rateLimitService = rateLimitService;
+        this.batchScanService = batchScanService;
+        this.scanJobService = scanJobService;
+        this.scanStreamService = scanStreamService;
+        this.probeScheduler = probeScheduler;
+        this.networkScanService = networkScanService;
     }
 
     @GetMapping
     public ScanResult scan(@RequestParam String url,
                            @RequestParam(defaultValue = "false") boolean active,
+                           @RequestParam(defaultValue = "quick") String ports,
+                           @RequestParam(required = false) String portRanges,
+                           @RequestParam(defaultValue = "false") boolean allAddresses,
+                           @RequestParam(defaultValue = "false") boolean udp,
+                           @RequestParam(defaultValue = "false") boolean crawl,
                            HttpServletRequest request) {
-        return doScan(url, active, request);
+        return doScan(url, active, optionsOf(ports, portRanges, allAddresses, udp, crawl), request);
     }
 
     @GetMapping(value = "/report", produces = "text/plain; charset=UTF-8")
     public String scanReport(@RequestParam String url,
                              @RequestParam(defaultValue = "false") boolean active,
+                             @RequestParam(defaultValue = "quick") String ports,
+                             @RequestParam(required = false) String portRanges,
+                             @RequestParam(defaultValue = "false") boolean allAddresses,
+                             @RequestParam(defaultValue = "false") boolean udp,
+                             @RequestParam(defaultValue = "false") boolean crawl,
                              HttpServletRequest request) {
-        ScanResult result = doScan(url, active, request);
+        ScanResult result = doScan(url, active, optionsOf(ports, portRanges, allAddresses, udp, crawl), request);
         return reportService.generateReport(result);
     }
 
     @GetMapping(value = "/report/pdf", produces = "application/pdf")
     public byte[] scanReportPdf(@RequestParam String url,
                                 @RequestParam(defaultValue = "false") boolean active,
+                                @RequestParam(defaultValue = "quick") String ports,
+                                @RequestParam(required = false) String portRanges,
+                                @RequestParam(defaultValue = "false") boolean allAddresses,
+                                @RequestParam(defaultValue = "false") boolean udp,
+                                @RequestParam(defaultValue = "false") boolean crawl,
                                 HttpServletRequest request) {
-        ScanResult result = doScan(url, active, request);
+        ScanResult result = doScan(url, active, optionsOf(ports, portRanges, allAddresses, udp, crawl), request);
         String reportText = reportService.generateReport(result);
         return pdfReportService.generatePdf(result, reportText);
     }
 
-    private ScanResult doScan(String url, boolean active, HttpServletRequest request) {
+    // SSE: eventos parciais por stage assim que cada um termina
+    @GetMapping(value = "/stream", produces = "text/event-stream")
+    public SseEmitter scanStream(@RequestParam String url,
+                                 @RequestParam(defaultValue = "false") boolean active,
+                                 @RequestParam(defaultValue = "quick") String ports,
+                                 @RequestParam(required = false) String portRanges,
+                                 @RequestParam(defaultValue = "false") boolean allAddresses,
+                                 @RequestParam(defaultValue = "false") boolean udp,
+                                 @RequestParam(defaultValue = "false") boolean crawl,
+                                 HttpServletRequest request) {
+        checkRateLimit(request);
+        return scanStreamService.stream(url, active, optionsOf(ports, portRanges, allAddresses, udp, crawl),
+                tenantOf(request));
+    }
 
-        // 🔒 Rate limit: 10 requisições por 60s por IP
-        if (!rateLimitService.allow(request.getRemoteAddr(), 10, 60_000)) {
+    // Batch: body com 1 URL por linha; responde NDJSON (1 ScanResult por linha, na ordem em que terminam)
+    @PostMapping(value = "/batch", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> scanBatch(@RequestParam(defaultValue = "false") boolean active,
+                                                           @RequestParam(defaultValue = "quick") String ports,
+                                                           @RequestParam(required = false) String portRanges,
+                                                           @RequestParam(defaultValue = "false") boolean allAddresses,
+                                                           @RequestParam(defaultValue = "false") boolean udp,
+                                                           @RequestParam(defaultValue = "false") boolean crawl,
+                                                           HttpServletRequest request) throws IOException {
+
+        // 🔒 Rate limit próprio: o batch conta 1x, não 1x por URL
+        if (!rateLimitService.allow("batch:" + request.getRemoteAddr(), 2, 60_000)) {
             throw new ResponseStatusException(
                     HttpStatus.TOO_MANY_REQUESTS,
-                    "Muitas requisições. Tente novamente em alguns segundos."
+                    "Muitos batches. Tente novamente em alguns segundos."
             );
         }
 
-        String inputUrl = normalizeUrl(url);
-
-        // 🔁 Cache (por host + active)
-        String hostForCache = extractHostSafe(inputUrl);
-        String cacheKey = "scan:" + (hostForCache != null ? hostForCache : inputUrl) + ":active=" + active;
-
-        ScanResult cached = scanCacheService.get(cacheKey, ScanResult.class);
-        if (cached != null) {
-            return cached;
-        }
-
-        // 1) Verifica redirect HTTP -> HTTPS
-        String httpProbeUrl = inputUrl.startsWith("https://")
-                ? "http://" + inputUrl.substring("https://".length())
-                : inputUrl;
+        InputStream body = request.getInputStream();
+        ScanOptions options = optionsOf(ports, portRanges, allAddresses, udp, crawl);
+        String tenant = tenantOf(request);
+        StreamingResponseBody stream = out -> batchScanService.streamBatch(body, out, active, options, tenant);
 
-        boolean redirectsToHttps = httpFetchService.traceRedirectToHttps(httpProbeUrl);
-
-        // 2) SSL check em HTTPS (se possível)
-        String httpsUrl = toHttps(inputUrl);
-        SSLInfo sslInfo = sslService.checkSSL(httpsUrl);
-        boolean supportsHttps = sslInfo.isHttps() && sslInfo.isValid();
-
-        // 3) Decide URL para analisar headers
-        String analysisUrl = supportsHttps ? httpsUrl : inputUrl;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(stream);
+    }
 
-        HttpFetchResult fetch = httpFetchService.fetchHeaders(analysisUrl);
+    // Faixas de rede: cidr=10.0.0.0/24,192.168.1.10; responde NDJSON (1 linha por host + resumo no fim)
+    @PostMapping(value = "/network", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> scanNetwork(@RequestParam String cidr,
+                                                             @RequestParam(defaultValue = "quick") String ports,
+                                                             @RequestParam(required = false) String portRanges,
+                                                             HttpServletRequest request) {
 
-        Map<String, String> analyzedHeaders;
-        if (fetch.getError() != null) {
-            analyzedHeaders = Map.of("error", fetch.getError());
-        } else {
-            analyzedHeaders = headerService.analyzeSecurityHeaders(fetch.getHeaders());
+        // 🔒 Rate limit próprio: 1 varredura de rede conta como muitas
+        if (!rateLimitService.allow("network:" + request.getRemoteAddr(), 2, 60_000)) {
+            throw new ResponseStatusException(
+                    HttpStatus.TOO_MANY_REQUESTS,
+                    "Muitas varreduras de rede. Tente novamente em alguns segundos."
+            );
         }
 
-        // target final (usa finalUrl quando existir)
-        String target = (fetch.getFinalUrl() != null) ? fetch.getFinalUrl() : analysisUrl;
+        List<NetworkScanService.Block> blocks;
+        PortProfile profile;
+        try {
+            blocks = networkScanService.parse(cidr);
+            profile = PortProfile.resolve(ports, portRanges);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
 
-        // PASSIVO: só detecta superfície de entrada
-        boolean inputSurfaceDetected = errorDisclosureService.hasQueryParams(target);
+        String tenant = tenantOf(request);
+        StreamingResponseBody stream = out -> networkScanService.streamNetwork(blocks, profile, tenant, out);
 
-        // XSS (ACTIVE + somente se tiver superfície)
-        boolean xssProbePerformed = false;
-        boolean reflectedXssSuspected = false;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(stream);
+    }
 
-        if (active && inputSurfaceDetected) {
-            xssProbePerformed = true;
-            reflectedXssSuspected = xssProbeService.reflectedMarkerAppears(target);
+    // Jobs assíncronos: retorna o id na hora; o scan roda no pool de workers
+    @PostMapping("/jobs")
+    public ResponseEntity<ScanJob> submitJob(@RequestParam String url,
+                                             @RequestParam(defaultValue = "false") boolean active,
+                                             @RequestParam(defaultValue = "quick") String ports,
+                                             @RequestParam(required = false) String portRanges,
+                                             @RequestParam(defaultValue = "false") boolean allAddresses,
+                                             @RequestParam(defaultValue = "false") boolean udp,
+                                             @RequestParam(defaultValue = "false") boolean crawl,
+                                             @RequestParam(defaultValue = "0") int priority,
+                                             HttpServletRequest request) {
+        checkRateLimit(request);
+
+        ScanJob job = scanJobService.submit(url, active, priority,
+                optionsOf(ports, portRanges, allAddresses, udp, crawl), tenantOf(request));
+        if (job == null) {
+            throw new ResponseStatusException(
+                    HttpStatus.SERVICE_UNAVAILABLE,
+                    "Fila de scans cheia. Tente novamente em alguns segundos."
+            );
         }
+        return ResponseEntity.accepted().body(job);
+    }
 
-        // DB error leakage (ACTIVE)
-        boolean dbErrorLeakageSuspected = false;
-        if (active) {
-            dbErrorLeakageSuspected = errorDisclosureService.detectsDbErrorLeakage(target);
+    @GetMapping("/jobs/{id}")
+    public ScanJob getJob(@PathVariable String id) {
+        ScanJob job = scanJobService.get(id);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Job não encontrado ou expirado.");
         }
+        return job;
+    }
 
-        // Port scan (ACTIVE)
-        java.util.List<PortFinding> openPorts = java.util.List.of();
-        if (active) {
-            String host = extractHostSafe(target);
-            if (host != null && !host.isBlank()) {
-                openPorts = portScanService.scanCommonPorts(host);
-            }
-        }
+    // Fila e tempo de espera do agendador de probes (por cliente)
+    @GetMapping("/scheduler")
+    public Map<String, Object> schedulerStats() {
+        return probeScheduler.stats();
+    }
 
-        // Score
-        ScoreResult score = scoreService.calculate(
-                sslInfo,
-                analyzedHeaders,
-                redirectsToHttps,
-                active,
-                inputSurfaceDetected,
-                dbErrorLeakageSuspected,
-                xssProbePerformed,
-                reflectedXssSuspected,
-                openPorts
-        );
-
-        ScanResult result = new ScanResult(
-                inputUrl,
-                fetch.getFinalUrl(),
-                fetch.getStatusCode(),
-                redirectsToHttps,
-                active,
-                inputSurfaceDetected,
-                dbErrorLeakageSuspected,
-                xssProbePerformed,
-                reflectedXssSuspected,
-                sslInfo,
-                analyzedHeaders,
-                score,
-                openPorts
-        );
-
-        // salva no cache (2 minutos)
-        scanCacheService.put(cacheKey, result, 120_000);
-
-        return result;
+    private ScanResult doScan(String url, boolean active, ScanOptions options, HttpServletRequest request) {
+        checkRateLimit(request);
+        return ProbeScheduler.callAs(tenantOf(request), () -> scanPipelineService.scan(url, active, options));
     }
 
-    private String normalizeUrl(String url) {
-        String u = url.trim();
-        if (!u.startsWith("http://") && !u.startsWith("https://")) {
-            u = "https://" + u;
+    // Perfil de portas: quick | top100 | top1000 | full, ou faixas custom em portRanges ("22,80,8000-8100")
+    private ScanOptions optionsOf(String ports, String portRanges, boolean allAddresses, boolean udp, boolean crawl) {
+        try {
+            PortProfile.resolve(ports, portRanges);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         }
-        return u;
+        return new ScanOptions(ports, portRanges, allAddresses, udp, crawl);
     }
 
-    private String toHttps(String url) {
-        if (url.startsWith("https://")) return url;
-        if (url.startsWith("http://")) return "https://" + url.substring("http://".length());
-        return "https://" + url;
+    // Cliente para a fila justa: API key configurada em cyberaudit.scheduler.weights, senão o IP
+    private String tenantOf(HttpServletRequest request) {
+        return probeScheduler.tenantFor(request.getHeader("X-Api-Key"), request.getRemoteAddr());
     }
 
-    private String extractHostSafe(String url) {
-        try {
-            return java.net.URI.create(url).getHost();
-        } catch (Exception e) {
-            return null;
+    private void checkRateLimit(HttpServletRequest request) {
+        // 🔒 Rate limit: 10 requisições por 60s por IP
+        if (!rateLimitService.allow(request.getRemoteAddr(), 10, 60_000)) {
+            throw new ResponseStatusException(
+                    HttpStatus.TOO_MANY_REQUESTS,
+                    "Muitas requisições. Tente novamente em alguns segundos."
+            );
         }
     }
-}
\ No newline at end of file
+}
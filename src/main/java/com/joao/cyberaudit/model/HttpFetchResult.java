@@ -3,6 +3,7 @@ package com.joao.cyberaudit.model;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
+import java.util.List;
 import java.util.Map;
 
 @Data
@@ -12,4 +13,10 @@ public class HttpFetchResult {
     private String finalUrl;
     private Map<String, String> headers;
     private String error;
+
+    // certificado/handshake do 1º hop HTTPS (null para URL http)
+    private SSLInfo tls;
+
+    // todos os hops percorridos, na ordem (o último é a resposta final)
+    private List<RedirectHop> chain;
 }
@@ -0,0 +1,8 @@
+package com.joao.cyberaudit.model;
+
+public enum JobStatus {
+    QUEUED,
+    RUNNING,
+    DONE,
+    FAILED
+}
@@ -14,5 +14,12 @@ public class PortFinding {
     private String severity;
     private Long latencyMs;
     private String evidence;
+    // IP efetivamente varrido (host com vários A/AAAA pode aparecer com mais de um)
+    private String address;
+    // identificação pela resposta do serviço (FingerprintService), ex.: OpenSSH / 8.9p1
+    private String product;
+    private String version;
+    // tcp | udp
+    private String protocol;
 }
 
@@ -0,0 +1,16 @@
+package com.joao.cyberaudit.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+public class RedirectHop {
+    private String url;
+    private int statusCode;
+    private String location;
+    private String scheme;
+    private Map<String, String> headers;
+}
@@ -0,0 +1,18 @@
+package com.joao.cyberaudit.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Resposta com parâmetro mutado comparada à resposta original (baseline) do mesmo alvo
+@Data
+@AllArgsConstructor
+public class ResponseDiff {
+    // endpoint testado (a URL analisada ou um achado pelo crawl)
+    private String url;
+    private int baselineStatus;
+    private int mutatedStatus;
+    // bytes a mais (ou a menos) na resposta mutada; null se algum dos tamanhos é desconhecido
+    private Long lengthDelta;
+    // simhash sobre o mesmo trecho inicial dos dois corpos: 1.0 = igual, ~0.5 = outra página
+    private double similarity;
+}
@@ -12,4 +12,8 @@ public class SSLInfo {
     private String expirationDate;
     private long daysRemaining;
     private String message;
+
+    // dados do handshake (null quando não houve conexão TLS)
+    private String protocol;
+    private String cipherSuite;
 }
@@ -0,0 +1,22 @@
+package com.joao.cyberaudit.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ScanJob {
+
+    private String id;
+    private String url;
+    private boolean activeMode;
+    private int priority;
+    private JobStatus status;
+
+    private String submittedAt;
+    private String startedAt;
+    private String finishedAt;
+
+    private ScanResult result;
+    private String error;
+}
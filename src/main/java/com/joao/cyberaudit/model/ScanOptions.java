@@ -0,0 +1,20 @@
+package com.joao.cyberaudit.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Opções do scan vindas do request (entram na chave do cache)
+@Data
+@AllArgsConstructor
+public class ScanOptions {
+    // quick | top100 | top1000 | full
+    private String portProfile;
+    // faixas custom, ex.: "22,80,8000-8100" (tem prioridade sobre portProfile)
+    private String portRanges;
+    // varre todos os A/AAAA do host (senão só o endereço que responde primeiro)
+    private boolean allAddresses;
+    // inclui o scan UDP (DNS, NTP, SNMP...) nos mesmos endereços do TCP
+    private boolean udp;
+    // crawl do próprio site atrás de endpoints com parâmetros (alimenta os probes de XSS e DB)
+    private boolean crawl;
+}
@@ -16,14 +16,29 @@ public class ScanResult {
 
     private boolean activeMode;
     private boolean inputSurfaceDetected;
+    // endpoints com parâmetros achados pelo crawl (null = crawl não pedido)
+    private List<String> crawledEndpoints;
     private boolean dbErrorLeakageSuspected;
+    // assinaturas que confirmaram o vazamento (SGBD, peso, offset no corpo)
+    private List<SignatureMatch> dbErrorMatches;
+    // resposta mutada x baseline (status, tamanho, similaridade); null sem probe ou sem baseline
+    private ResponseDiff dbErrorResponseDiff;
 
     private boolean xssProbePerformed;
     private boolean reflectedXssSuspected;
+    // parâmetro + contexto (HTML_TEXT, ATTRIBUTE, URL, SCRIPT...) de cada marcador refletido
+    private List<XssReflection> xssReflections;
 
     private SSLInfo sslInfo;
+    // configuração TLS (protocolos, suites, chave, cadeia); null no modo passivo ou sem HTTPS
+    private TlsReport tlsReport;
     private Map<String, String> headers;
     private ScoreResult score;
 
     private List<PortFinding> openPorts;
+
+    private List<RedirectHop> redirectChain;
+
+    // deadline do scan cortou algum stage (ex.: port scan devolveu só as portas achadas até ali); não vai pro cache
+    private boolean partial;
 }
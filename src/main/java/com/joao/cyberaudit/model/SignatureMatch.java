@@ -0,0 +1,16 @@
+package com.joao.cyberaudit.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Assinatura que casou no corpo da resposta (ex.: DB error leakage)
+@Data
+@AllArgsConstructor
+public class SignatureMatch {
+    // SGBD / família (MySQL, PostgreSQL, MSSQL, Generic...)
+    private String category;
+    private String signature;
+    private int weight;
+    // offset (em bytes) do início do trecho no corpo
+    private long offset;
+}
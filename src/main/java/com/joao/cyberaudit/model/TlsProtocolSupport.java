@@ -0,0 +1,18 @@
+package com.joao.cyberaudit.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+// Resultado de 1 versão de protocolo no servidor (TLSv1.3, TLSv1.2...)
+@Data
+@AllArgsConstructor
+public class TlsProtocolSupport {
+    private String protocol;
+    // ACCEPTED | REJECTED | UNTESTABLE (a JVM do scanner não consegue oferecer) | UNKNOWN (timeout/erro)
+    private String status;
+    // suites aceitas nessa versão (só as que a JVM consegue oferecer)
+    private List<String> cipherSuites;
+    private String note;
+}
@@ -0,0 +1,33 @@
+package com.joao.cyberaudit.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+// Configuração TLS do servidor (modo ativo): protocolos, suites, chave, assinatura, cadeia e nome
+@Data
+@AllArgsConstructor
+public class TlsReport {
+    // IP:porta analisado (o resultado fica em cache por endereço)
+    private String address;
+    // nome enviado no SNI e checado no certificado
+    private String serverName;
+
+    private List<TlsProtocolSupport> protocols;
+
+    // certificado do servidor
+    private String keyAlgorithm;
+    private int keySize;
+    private String signatureAlgorithm;
+
+    private int chainLength;
+    // cada certificado emitido pelo seguinte e o último emitido por uma raiz conhecida (sem buscar intermediário)
+    private boolean chainComplete;
+    // cadeia válida no truststore padrão da JVM (inclui validade)
+    private boolean chainTrusted;
+    private boolean hostnameMatches;
+
+    // null = análise feita; senão, por que não deu
+    private String error;
+}
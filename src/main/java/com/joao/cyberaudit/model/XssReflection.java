@@ -0,0 +1,17 @@
+package com.joao.cyberaudit.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Parâmetro cujo marcador voltou cru na resposta, e em que contexto do HTML
+@Data
+@AllArgsConstructor
+public class XssReflection {
+    // endpoint testado (a URL analisada ou um achado pelo crawl)
+    private String url;
+    private String parameter;
+    // HTML_TEXT | ATTRIBUTE | URL | SCRIPT | STYLE | COMMENT
+    private String context;
+    // offset (em bytes) do marcador no corpo
+    private long offset;
+}
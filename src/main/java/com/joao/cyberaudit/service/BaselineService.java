@@ -0,0 +1,152 @@
+package com.joao.cyberaudit.service;
+
+import com.joao.cyberaudit.util.SimHash;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * Resposta original (sem mutação) de cada alvo dos probes ativos: buscada 1x e compartilhada por todos os probes
+ * daquele alvo (single-flight + TTL curto). Serve de referência para só reportar o que muda depois da mutação.
+ * Guarda o corpo até o teto dos probes: cada probe procura nele as próprias assinaturas e compara o mesmo trecho.
+ */
+@Service
+public class BaselineService {
+
+    static final class Baseline {
+        final int status;
+        final byte[] body;  // até o teto de bytes
+        final long length;  // tamanho total; -1 = passou do teto sem Content-Length
+        final long simhash; // do corpo guardado inteiro
+
+        Baseline(int status, byte[] body, long length, long simhash) {
+            this.status = status;
+            this.body = body;
+            this.length = length;
+            this.simhash = simhash;
+        }
+
+        // simhash só dos primeiros "prefix" bytes (probe que parou de ler cedo compara o mesmo trecho)
+        long simhash(long prefix) {
+            if (prefix >= body.length) return simhash;
+            SimHash h = new SimHash();
+            h.update(body, 0, (int) prefix);
+            return h.value();
+        }
+    }
+
+    private static final class Entry {
+        final CompletableFuture<Baseline> baseline = new CompletableFuture<>();
+        final long expiresAt;
+
+        Entry(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final HttpTransportService transport;
+    private final long maxBodyBytes;
+    private final long ttlMs;
+
+    // LRU limitado: cada entrada pode ter até max-body-bytes
+    private final Map<String, Entry> cache;
+
+    public BaselineService(
+            HttpTransportService transport,
+            @Value("${cyberaudit.probe.max-body-bytes:524288}") long maxBodyBytes,
+            @Value("${cyberaudit.baseline.ttl-seconds:120}") long ttlSeconds,
+            @Value("${cyberaudit.baseline.max-entries:64}") int maxEntries
+    ) {
+        this.transport = transport;
+        this.maxBodyBytes = Math.max(1024, maxBodyBytes);
+        this.ttlMs = Math.max(1, ttlSeconds) * 1000;
+        int limit = Math.max(1, maxEntries);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > limit;
+            }
+        };
+    }
+
+    // baseline da URL (busca na 1ª vez; concorrentes esperam a mesma busca); null se o alvo não respondeu
+    Baseline get(String url) {
+        long now = System.currentTimeMillis();
+        Entry existing;
+        Entry mine = null;
+        synchronized (cache) {
+            existing = cache.get(url);
+            if (existing != null && now > existing.expiresAt) {
+                cache.remove(url);
+                existing = null;
+            }
+            if (existing == null) {
+                mine = new Entry(now + ttlMs);
+                cache.put(url, mine);
+            }
+        }
+
+        if (mine == null) {
+            try {
+                return existing.baseline.join();
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        Baseline b = fetch(url);
+        // falha não fica em cache: o próximo probe tenta de novo
+        if (b == null) {
+            synchronized (cache) {
+                cache.remove(url, mine);
+            }
+        }
+        mine.baseline.complete(b);
+        return b;
+    }
+
+    private Baseline fetch(String url) {
+        try {
+            HttpRequest req = HttpRequest.newBuilder(URI.create(url))
+                    .GET()
+                    .timeout(Duration.ofSeconds(12))
+                    .header("User-Agent", HttpTransportService.USER_AGENT)
+                    .header("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,/;q=0.8")
+                    .build();
+
+            HttpResponse<InputStream> resp = transport.send(req, HttpResponse.BodyHandlers.ofInputStream(), true);
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            SimHash simhash = new SimHash();
+            boolean complete;
+            // fechar o stream antes do fim cancela o resto do corpo
+            try (InputStream in = resp.body()) {
+                byte[] buf = new byte[8192];
+                int n;
+                while (body.size() < maxBodyBytes
+                        && (n = in.read(buf, 0, (int) Math.min(buf.length, maxBodyBytes - body.size()))) > 0) {
+                    simhash.update(buf, 0, n);
+                    body.write(buf, 0, n);
+                }
+                complete = in.read() < 0;
+            }
+
+            long length = complete
+                    ? body.size()
+                    : resp.headers().firstValueAsLong("Content-Length").orElse(-1);
+            return new Baseline(resp.statusCode(), body.toByteArray(), length, simhash.value());
+
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.joao.cyberaudit.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.joao.cyberaudit.model.ScanOptions;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Service
+public class BatchScanService {
+
+    // scans simultâneos no nó inteiro (somando todos os batches)
+    private static final int GLOBAL_CONCURRENCY = 32;
+
+    // scans simultâneos por host dentro dos batches
+    private static final int PER_HOST_CONCURRENCY = 2;
+
+    // linhas maiores que isso são descartadas (evita estourar memória com input malicioso)
+    private static final int MAX_LINE_CHARS = 2048;
+
+    private static class HostGate {
+        final Semaphore sem = new Semaphore(PER_HOST_CONCURRENCY);
+        int refs;
+    }
+
+    private final ScanPipelineService scanPipelineService;
+    private final ObjectMapper objectMapper;
+
+    private final Semaphore globalSlots = new Semaphore(GLOBAL_CONCURRENCY);
+    private final Map<String, HostGate> hostGates = new ConcurrentHashMap<>();
+    private final ExecutorService pool =
+            Executors.newFixedThreadPool(GLOBAL_CONCURRENCY, ScanStageExecutor.daemonFactory("scan-batch-"));
+
+    public BatchScanService(ScanPipelineService scanPipelineService, ObjectMapper objectMapper) {
+        this.scanPipelineService = scanPipelineService;
+        this.objectMapper = objectMapper;
+    }
+
+    /*
+     * Lê URLs (1 por linha) do body e escreve 1 linha NDJSON por resultado assim que cada scan termina.
+     * Só lê a próxima URL quando há vaga global -> memória constante, independente do tamanho do batch.
+     */
+    public void streamBatch(InputStream body, OutputStream out, boolean active, ScanOptions options, String tenant)
+            throws IOException {
+        Reader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        AtomicBoolean clientGone = new AtomicBoolean(false);
+        Phaser pending = new Phaser(1);
+
+        try {
+            String line;
+            while (!clientGone.get() && (line = readBoundedLine(reader)) != null) {
+                String url = cleanLine(line);
+                if (url == null) continue;
+
+                globalSlots.acquire();
+                pending.register();
+                try {
+                    pool.execute(() -> {
+                        try {
+                            scanOne(url, active, options, tenant, out, clientGone);
+                        } finally {
+                            globalSlots.release();
+                            pending.arriveAndDeregister();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    globalSlots.release();
+                    pending.arriveAndDeregister();
+                    throw new IOException("Batch executor indisponível", e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // espera os scans em andamento deste batch
+            pending.arriveAndAwaitAdvance();
+        }
+    }
+
+    private void scanOne(String url, boolean active, ScanOptions options, String tenant,
+                         OutputStream out, AtomicBoolean clientGone) {
+        if (clientGone.get()) return;
+
+        Object line;
+        String host = hostOf(url);
+        HostGate gate = acquireHost(host);
+        try {
+            line = ProbeScheduler.callAs(tenant, () -> scanPipelineService.scan(url, active, options));
+        } catch (Exception e) {
+            Map<String, Object> err = new LinkedHashMap<>();
+            err.put("url", url);
+            err.put("error", "Falha no scan: " + e.getMessage());
+            line = err;
+        } finally {
+            releaseHost(host, gate);
+        }
+
+        writeLine(line, out, clientGone);
+    }
+
+    private void writeLine(Object value, OutputStream out, AtomicBoolean clientGone) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(value);
+            synchronized (out) {
+                out.write(json);
+                out.write('\n');
+                out.flush();
+            }
+        } catch (IOException e) {
+            // cliente desconectou: para de ler novas URLs
+            clientGone.set(true);
+        }
+    }
+
+    private HostGate acquireHost(String host) {
+        HostGate gate = hostGates.compute(host, (k, g) -> {
+            if (g == null) g = new HostGate();
+            g.refs++;
+            return g;
+        });
+        gate.sem.acquireUninterruptibly();
+        return gate;
+    }
+
+    private void releaseHost(String host, HostGate gate) {
+        gate.sem.release();
+        // remove o gate quando ninguém mais usa (mapa só guarda hosts em andamento)
+        hostGates.computeIfPresent(host, (k, g) -> --g.refs == 0 ? null : g);
+    }
+
+    private String readBoundedLine(Reader reader) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        boolean overflow = false;
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == '\n') return overflow ? "" : sb.toString();
+            if (sb.length() < MAX_LINE_CHARS) sb.append((char) c);
+            else overflow = true;
+        }
+        if (sb.length() == 0 && !overflow) return null;
+        return overflow ? "" : sb.toString();
+    }
+
+    // aceita "url", "url," e linhas de um JSON array formatado 1 por linha
+    private String cleanLine(String line) {
+        String u = line.trim();
+        if (u.endsWith(",")) u = u.substring(0, u.length() - 1).trim();
+        if (u.startsWith("\"") && u.endsWith("\"") && u.length() >= 2) u = u.substring(1, u.length() - 1).trim();
+        if (u.isEmpty() || u.startsWith("#") || u.equals("[") || u.equals("]")) return null;
+        return u;
+    }
+
+    private String hostOf(String url) {
+        try {
+            String u = scanPipelineService.normalizeUrl(url);
+            String host = java.net.URI.create(u).getHost();
+            return host != null ? host.toLowerCase() : u;
+        } catch (Exception e) {
+            return url;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,155 @@
+package com.joao.cyberaudit.service;
+
+import com.joao.cyberaudit.util.ByteAhoCorasick;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/*
+ * Corpo de resposta dos probes ativos: casa os padrões chunk a chunk, conforme os bytes chegam,
+ * sem montar String do corpo. Para de ler (cancela o stream) quando o listener decide (por padrão, no 1º match)
+ * ou ao atingir o teto de bytes, então página de vários MB custa no máximo o teto — e normalmente bem menos.
+ */
+final class BoundedMatchSubscriber implements HttpResponse.BodySubscriber<BoundedMatchSubscriber.Match> {
+
+    // match com offset no corpo inteiro; false encerra a leitura
+    @FunctionalInterface
+    interface Listener {
+        boolean onMatch(int patternId, long endOffset);
+    }
+
+    /*
+     * Vê todos os bytes lidos, na ordem; recebe bytes até o fim de cada match antes do listener
+     * (ex.: tokenizer HTML sabe o contexto exato onde o match caiu).
+     */
+    interface Observer {
+        void consume(ByteBuffer buf, int from, int to);
+    }
+
+    private static final Observer NO_OBSERVER = (buf, from, to) -> { };
+
+    static final class Match {
+        final int patternId;  // match em que a leitura parou; -1 = leu até o fim/teto
+        final long endOffset; // offset (no corpo) logo após o último byte casado
+        final long bytesRead;
+        final boolean truncated; // parou no teto antes do fim do corpo
+
+        Match(int patternId, long endOffset, long bytesRead, boolean truncated) {
+            this.patternId = patternId;
+            this.endOffset = endOffset;
+            this.bytesRead = bytesRead;
+            this.truncated = truncated;
+        }
+
+        boolean found() {
+            return patternId >= 0;
+        }
+    }
+
+    private final ByteAhoCorasick matcher;
+    private final long maxBytes;
+    private final Listener listener;
+    private final Observer observer;
+    private final CompletableFuture<Match> result = new CompletableFuture<>();
+
+    // chamadas do Flow são seriais: sem lock
+    private Flow.Subscription subscription;
+    private int state;
+    private long read;
+    private int matchedId = -1;
+    private long matchedEnd = -1;
+    private int observed; // índice (no chunk atual) até onde o observer já leu
+
+    BoundedMatchSubscriber(ByteAhoCorasick matcher, long maxBytes, Listener listener, Observer observer) {
+        this.matcher = matcher;
+        this.maxBytes = maxBytes;
+        this.listener = listener;
+        this.observer = observer;
+    }
+
+    // para no 1º match
+    static HttpResponse.BodyHandler<Match> handler(ByteAhoCorasick matcher, long maxBytes) {
+        return handler(matcher, maxBytes, (id, end) -> false);
+    }
+
+    // listener recebe todos os matches e decide quando parar (listener novo por request: não é compartilhado)
+    static HttpResponse.BodyHandler<Match> handler(ByteAhoCorasick matcher, long maxBytes, Listener listener) {
+        return handler(matcher, maxBytes, listener, NO_OBSERVER);
+    }
+
+    static HttpResponse.BodyHandler<Match> handler(ByteAhoCorasick matcher, long maxBytes, Listener listener,
+                                                   Observer observer) {
+        return info -> new BoundedMatchSubscriber(matcher, maxBytes, listener, observer);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> chunks) {
+        if (result.isDone()) return;
+
+        for (ByteBuffer chunk : chunks) {
+            long allowed = maxBytes - read;
+            ByteBuffer window = chunk;
+            if (chunk.remaining() > allowed) {
+                window = chunk.duplicate();
+                window.limit(window.position() + (int) allowed);
+            }
+
+            long base = read - window.position();
+            ByteBuffer current = window;
+            observed = window.position();
+            state = matcher.scan(state, window, (id, end) -> {
+                if (end > observed) {
+                    observer.consume(current, observed, end);
+                    observed = end;
+                }
+                if (listener.onMatch(id, base + end)) return true;
+                matchedId = id;
+                matchedEnd = base + end;
+                return false;
+            });
+            if (state >= 0 && observed < window.limit()) observer.consume(window, observed, window.limit());
+            read += window.remaining();
+
+            if (matchedId >= 0) {
+                finish(false);
+                return;
+            }
+            if (read >= maxBytes) {
+                finish(true);
+                return;
+            }
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        result.complete(new Match(matchedId, matchedEnd, read, false));
+    }
+
+    @Override
+    public CompletionStage<Match> getBody() {
+        return result;
+    }
+
+    // resposta já decidida: o resto do corpo não interessa, fecha o stream
+    private void finish(boolean truncated) {
+        result.complete(new Match(matchedId, matchedEnd, read, truncated));
+        subscription.cancel();
+    }
+}
@@ -0,0 +1,252 @@
+package com.joao.cyberaudit.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Motor de connect TCP não-bloqueante, compartilhado por todos os scans.
+ * Poucas threads de Selector seguram milhares de connects em andamento (sem 1 thread por socket).
+ */
+@Service
+public class ConnectEngine {
+
+    public static final int OPEN = 0;
+    public static final int CLOSED = 1;
+    public static final int TIMEOUT = 2;
+    public static final int ERROR = 3;
+
+    /*
+     * Chamado na thread do selector: não pode bloquear.
+     * Em OPEN o canal já está fora do selector (pode virar blocking) e passa a ser de quem recebeu.
+     */
+    @FunctionalInterface
+    public interface Callback {
+        void onResult(int outcome, SocketChannel channel, long latencyMs, Exception error);
+    }
+
+    private static final int SELECTOR_THREADS = 2;
+
+    private static final class Pending implements Comparable<Pending> {
+        final SocketChannel channel;
+        final Callback callback;
+        final long startNanos;
+        final long deadlineNanos;
+        boolean done;
+
+        Pending(SocketChannel channel, Callback callback, long startNanos, long deadlineNanos) {
+            this.channel = channel;
+            this.callback = callback;
+            this.startNanos = startNanos;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        long latencyMs() {
+            return (System.nanoTime() - startNanos) / 1_000_000;
+        }
+
+        @Override
+        public int compareTo(Pending o) {
+            return Long.compare(deadlineNanos, o.deadlineNanos);
+        }
+    }
+
+    private final Loop[] loops = new Loop[SELECTOR_THREADS];
+    private final AtomicInteger next = new AtomicInteger(0);
+
+    public ConnectEngine() throws IOException {
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new Loop(i);
+            loops[i].thread.start();
+        }
+    }
+
+    // Inicia um connect; o resultado chega no callback (nunca lança exceção)
+    public void connect(InetSocketAddress address, int timeoutMs, Callback callback) {
+        long start = System.nanoTime();
+        SocketChannel ch = null;
+        try {
+            ch = SocketChannel.open();
+            ch.configureBlocking(false);
+
+            if (ch.connect(address)) {
+                deliver(callback, OPEN, ch, (System.nanoTime() - start) / 1_000_000, null);
+                return;
+            }
+
+            Pending p = new Pending(ch, callback, start, start + timeoutMs * 1_000_000L);
+            loops[Math.floorMod(next.getAndIncrement(), loops.length)].submit(p);
+
+        } catch (ConnectException e) {
+            closeQuietly(ch);
+            deliver(callback, CLOSED, null, (System.nanoTime() - start) / 1_000_000, e);
+        } catch (Exception e) {
+            closeQuietly(ch);
+            deliver(callback, ERROR, null, (System.nanoTime() - start) / 1_000_000, e);
+        }
+    }
+
+    public int inFlight() {
+        int n = 0;
+        for (Loop l : loops) n += l.inFlight;
+        return n;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Loop l : loops) l.stop();
+    }
+
+    private final class Loop implements Runnable {
+
+        final Selector selector;
+        final Thread thread;
+        final Queue<Pending> incoming = new ConcurrentLinkedQueue<>();
+
+        // só acessados pela thread do loop
+        final PriorityQueue<Pending> deadlines = new PriorityQueue<>();
+        final List<Pending> opened = new ArrayList<>();
+
+        volatile int inFlight;
+        volatile boolean running = true;
+
+        Loop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "connect-engine-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        void submit(Pending p) {
+            incoming.add(p);
+            selector.wakeup();
+        }
+
+        void stop() {
+            running = false;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    registerIncoming();
+                    selector.select(waitMs());
+                    processReady();
+                    expireTimeouts();
+                    handOffOpened();
+                    inFlight = deadlines.size();
+                } catch (Exception e) {
+                    // loop do selector não pode morrer por um canal com problema
+                }
+            }
+            for (SelectionKey k : selector.keys()) closeQuietly(k.channel());
+            closeQuietly(selector);
+        }
+
+        private void registerIncoming() {
+            Pending p;
+            while ((p = incoming.poll()) != null) {
+                try {
+                    p.channel.register(selector, SelectionKey.OP_CONNECT, p);
+                    deadlines.add(p);
+                } catch (Exception e) {
+                    p.done = true;
+                    closeQuietly(p.channel);
+                    deliver(p.callback, ERROR, null, p.latencyMs(), e);
+                }
+            }
+        }
+
+        private long waitMs() {
+            Pending first = deadlines.peek();
+            if (first == null) return 0; // 0 = espera até wakeup
+            long ms = (first.deadlineNanos - System.nanoTime()) / 1_000_000;
+            return Math.max(1, ms);
+        }
+
+        private void processReady() {
+            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey key = it.next();
+                it.remove();
+
+                Pending p = (Pending) key.attachment();
+                if (p == null || p.done) continue;
+
+                try {
+                    if (p.channel.finishConnect()) {
+                        p.done = true;
+                        key.cancel();
+                        opened.add(p); // entregue depois que o canal sair do selector
+                    }
+                } catch (ConnectException e) {
+                    p.done = true;
+                    closeQuietly(p.channel);
+                    deliver(p.callback, CLOSED, null, p.latencyMs(), e);
+                } catch (IOException e) {
+                    p.done = true;
+                    closeQuietly(p.channel);
+                    deliver(p.callback, ERROR, null, p.latencyMs(), e);
+                }
+            }
+        }
+
+        private void expireTimeouts() {
+            long now = System.nanoTime();
+            while (!deadlines.isEmpty()) {
+                Pending p = deadlines.peek();
+                if (p.done) {
+                    deadlines.poll();
+                    continue;
+                }
+                if (p.deadlineNanos > now) break;
+
+                deadlines.poll();
+                p.done = true;
+                closeQuietly(p.channel);
+                deliver(p.callback, TIMEOUT, null, p.latencyMs(), null);
+            }
+        }
+
+        private void handOffOpened() throws IOException {
+            if (opened.isEmpty()) return;
+
+            // flush das keys canceladas: o canal fica livre para configureBlocking(true)
+            selector.selectNow();
+            for (Pending p : opened) {
+                deliver(p.callback, OPEN, p.channel, p.latencyMs(), null);
+            }
+            opened.clear();
+        }
+    }
+
+    private static void deliver(Callback cb, int outcome, SocketChannel ch, long latencyMs, Exception error) {
+        try {
+            cb.onResult(outcome, ch, latencyMs, error);
+        } catch (Exception e) {
+            if (ch != null) closeQuietly(ch);
+        }
+    }
+
+    static void closeQuietly(AutoCloseable c) {
+        if (c == null) return;
+        try {
+            c.close();
+        } catch (Exception ignored) {
+        }
+    }
+}
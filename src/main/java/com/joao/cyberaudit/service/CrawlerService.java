@@ -0,0 +1,271 @@
+package com.joao.cyberaudit.service;
+
+import com.joao.cyberaudit.util.BloomFilter;
+import com.joao.cyberaudit.util.ByteAhoCorasick;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/*
+ * Crawl opt-in para achar endpoints com parâmetros (links com query e formulários GET) além da URL digitada.
+ * Só o host do alvo (nada de terceiros), BFS com limite de profundidade, páginas e tempo.
+ * Memória fixa por crawl, mesmo em site com milhões de links:
+ *   - URLs já vistas num filtro de Bloom (tamanho fixo; falso positivo só pula uma página)
+ *   - URLs com a mesma "forma" (path + nomes dos parâmetros, valores ignorados) contam 1x: ?id=1..?id=99999 = 1 endpoint
+ *   - fila de páginas com teto; link que não cabe é descartado
+ * Fetch concorrente, com intervalo mínimo entre requests ao mesmo host (compartilhado entre crawls).
+ */
+@Service
+public class CrawlerService {
+
+    // Bloom para ~100 mil URLs a 1% (~120 KB); passando disso só aumenta o falso positivo
+    private static final int BLOOM_EXPECTED = 100_000;
+    private static final double BLOOM_FPP = 0.01;
+    private static final int MAX_FRONTIER = 1_000;
+    private static final int POOL_THREADS = 16;
+
+    private static final String[] STATIC_EXTENSIONS = {
+            ".css", ".js", ".png", ".jpg", ".jpeg", ".gif", ".svg", ".ico", ".webp", ".woff", ".woff2", ".ttf",
+            ".pdf", ".zip", ".gz", ".mp4", ".mp3", ".xml", ".json"
+    };
+
+    // nenhum padrão: o subscriber só limita os bytes e entrega o corpo ao tokenizer
+    private static final ByteAhoCorasick NO_PATTERNS = ByteAhoCorasick.compile(List.of(), false);
+
+    private final HttpTransportService transport;
+    private final int maxPages;
+    private final int maxDepth;
+    private final int maxEndpoints;
+    private final int concurrency;
+    private final long delayNanos;
+    private final long budgetMs;
+    private final long maxPageBytes;
+
+    // próximo horário livre por host (politeness entre todos os crawls)
+    private final Map<String, long[]> hostSlots = new ConcurrentHashMap<>();
+
+    private final ExecutorService pool =
+            Executors.newFixedThreadPool(POOL_THREADS, ScanStageExecutor.daemonFactory("crawler-"));
+
+    public CrawlerService(
+            HttpTransportService transport,
+            @Value("${cyberaudit.crawl.max-pages:50}") int maxPages,
+            @Value("${cyberaudit.crawl.max-depth:3}") int maxDepth,
+            @Value("${cyberaudit.crawl.max-endpoints:10}") int maxEndpoints,
+            @Value("${cyberaudit.crawl.concurrency:4}") int concurrency,
+            @Value("${cyberaudit.crawl.delay-ms:100}") long delayMs,
+            @Value("${cyberaudit.crawl.budget-ms:20000}") long budgetMs,
+            @Value("${cyberaudit.probe.max-body-bytes:524288}") long maxPageBytes
+    ) {
+        this.transport = transport;
+        this.maxPages = Math.max(1, maxPages);
+        this.maxDepth = Math.max(0, maxDepth);
+        this.maxEndpoints = Math.max(1, maxEndpoints);
+        this.concurrency = Math.max(1, Math.min(concurrency, POOL_THREADS));
+        this.delayNanos = Math.max(0, delayMs) * 1_000_000L;
+        this.budgetMs = Math.max(1000, budgetMs);
+        this.maxPageBytes = Math.max(1024, maxPageBytes);
+    }
+
+    // tempo máximo de um crawl (entra no deadline do scan)
+    public long budgetMs() {
+        return budgetMs;
+    }
+
+    // teto de endpoints devolvidos por crawl (dimensiona o tempo dos probes)
+    public int maxEndpoints() {
+        return maxEndpoints;
+    }
+
+    /*
+     * Endpoints com parâmetros achados a partir de startUrl (1 por forma, na ordem em que apareceram),
+     * incluindo a própria startUrl se ela tiver query. Bloqueia até acabar a fila, o limite de páginas ou o tempo.
+     */
+    public List<String> discover(String startUrl) {
+        try {
+            URI start = URI.create(startUrl);
+            if (start.getHost() == null) return List.of();
+
+            Crawl crawl = new Crawl(start, ProbeScheduler.currentTenant());
+            crawl.offer(start.toASCIIString(), 0);
+            crawl.pump();
+            try {
+                crawl.done.get(budgetMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // estourou o tempo: fica com o que já achou
+            }
+            return crawl.endpoints();
+
+        } catch (Exception e) {
+            return List.of();
+        }
+    }
+
+    private final class Crawl {
+        final String host;
+        final String tenant;
+        final long deadline = System.currentTimeMillis() + budgetMs;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        // estado do crawl: protegido pelo monitor do próprio Crawl
+        final BloomFilter seen = new BloomFilter(BLOOM_EXPECTED, BLOOM_FPP);
+        final ArrayDeque<Object[]> frontier = new ArrayDeque<>(); // {url, profundidade}
+        final Map<String, String> endpoints = new LinkedHashMap<>(); // forma -> 1ª URL
+        int inFlight;
+        int fetched;
+
+        Crawl(URI start, String tenant) {
+            this.host = start.getHost().toLowerCase();
+            this.tenant = tenant;
+        }
+
+        synchronized List<String> endpoints() {
+            return new ArrayList<>(endpoints.values());
+        }
+
+        // fora do escopo, estático, repetido ou de forma já conhecida: descarta
+        synchronized void offer(String url, int depth) {
+            URI u;
+            try {
+                u = URI.create(url);
+            } catch (IllegalArgumentException e) {
+                return;
+            }
+            if (u.getHost() == null || !u.getHost().equalsIgnoreCase(host) || isStatic(u.getRawPath())) return;
+
+            if (u.getRawQuery() != null && !u.getRawQuery().isEmpty()) {
+                String shape = shapeOf(u);
+                if (!seen.add("shape:" + shape)) return;
+                if (endpoints.size() < maxEndpoints) endpoints.putIfAbsent(shape, url);
+            } else if (!seen.add("url:" + url)) {
+                return;
+            }
+
+            if (depth <= maxDepth && frontier.size() < MAX_FRONTIER) frontier.add(new Object[]{url, depth});
+        }
+
+        // dispara fetches até o limite de concorrência; encerra quando não há nada em voo nem na fila
+        synchronized void pump() {
+            boolean expired = System.currentTimeMillis() > deadline;
+            while (!expired && inFlight < concurrency && fetched < maxPages && !frontier.isEmpty()) {
+                Object[] next = frontier.poll();
+                inFlight++;
+                fetched++;
+                try {
+                    pool.execute(() -> ProbeScheduler.callAs(tenant, () -> {
+                        try {
+                            fetch((String) next[0], (int) next[1]);
+                        } finally {
+                            finished();
+                        }
+                        return null;
+                    }));
+                } catch (RejectedExecutionException e) {
+                    inFlight--;
+                    break;
+                }
+            }
+            boolean exhausted = frontier.isEmpty() || fetched >= maxPages || expired;
+            if (inFlight == 0 && exhausted) {
+                frontier.clear();
+                done.complete(null);
+            }
+        }
+
+        synchronized void finished() {
+            inFlight--;
+            pump();
+        }
+
+        private void fetch(String url, int depth) {
+            try {
+                politeWait(host);
+                if (System.currentTimeMillis() > deadline) return;
+
+                HttpRequest req = HttpRequest.newBuilder(URI.create(url))
+                        .GET()
+                        .timeout(Duration.ofSeconds(10))
+                        .header("User-Agent", HttpTransportService.USER_AGENT)
+                        .header("Accept", "text/html,application/xhtml+xml")
+                        .build();
+
+                // links saem da página direto para a fila, enquanto o corpo chega
+                HtmlLinkExtractor links = new HtmlLinkExtractor(req.uri(), link -> offer(link, depth + 1));
+                HtmlContextTokenizer tokenizer = new HtmlContextTokenizer(links);
+                HttpResponse.BodyHandler<BoundedMatchSubscriber.Match> handler = info -> isHtml(info)
+                        ? BoundedMatchSubscriber.handler(NO_PATTERNS, maxPageBytes, (id, end) -> true,
+                                tokenizer::consume).apply(info)
+                        : HttpResponse.BodySubscribers.replacing(null);
+
+                // redirect não é seguido aqui: o destino entra na fila e passa pelo mesmo filtro de escopo
+                HttpResponse<BoundedMatchSubscriber.Match> resp = transport.send(req, handler, false);
+                if (HttpTransportService.isRedirect(resp.statusCode())) {
+                    resp.headers().firstValue("Location").ifPresent(loc ->
+                            offer(HttpTransportService.resolveRedirect(req.uri(), loc).toASCIIString(), depth));
+                    return;
+                }
+                if (resp.body() != null) links.finish();
+
+            } catch (Exception e) {
+                // página com erro só não contribui com links
+            }
+        }
+    }
+
+    // reserva o próximo horário livre do host e espera por ele (thread do pool do crawler)
+    private void politeWait(String host) throws InterruptedException {
+        long now = System.nanoTime();
+        long at;
+        long[] slot = hostSlots.computeIfAbsent(host, k -> new long[]{now});
+        synchronized (slot) {
+            at = Math.max(now, slot[0]);
+            slot[0] = at + delayNanos;
+        }
+        if (hostSlots.size() > 1024) hostSlots.values().removeIf(s -> s[0] < now - 60_000_000_000L);
+        if (at > now) TimeUnit.NANOSECONDS.sleep(at - now);
+    }
+
+    // path com segmentos numéricos normalizados + nomes dos parâmetros em ordem
+    static String shapeOf(URI u) {
+        StringBuilder sb = new StringBuilder()
+                .append(u.getScheme()).append("://").append(u.getHost().toLowerCase()).append(':').append(u.getPort());
+        String path = u.getRawPath() == null || u.getRawPath().isEmpty() ? "/" : u.getRawPath();
+        for (String seg : path.split("/", -1)) {
+            if (sb.charAt(sb.length() - 1) != '/') sb.append('/');
+            sb.append(seg.matches("\\d+") ? "{n}" : seg);
+        }
+
+        TreeSet<String> names = new TreeSet<>();
+        for (String part : u.getRawQuery().split("&")) {
+            if (!part.isEmpty()) names.add(part.split("=", 2)[0]);
+        }
+        return sb.append('?').append(String.join("&", names)).toString();
+    }
+
+    private static boolean isStatic(String path) {
+        if (path == null) return false;
+        String p = path.toLowerCase();
+        for (String ext : STATIC_EXTENSIONS) {
+            if (p.endsWith(ext)) return true;
+        }
+        return false;
+    }
+
+    private static boolean isHtml(HttpResponse.ResponseInfo info) {
+        if (info.statusCode() >= 300) return false;
+        String type = info.headers().firstValue("Content-Type").orElse("text/html").toLowerCase();
+        return type.contains("html");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,157 @@
+package com.joao.cyberaudit.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/*
+ * Resolver DNS compartilhado por todos os serviços.
+ * - async num pool pequeno, com single-flight por nome (scans simultâneos do mesmo host = 1 lookup)
+ * - cache com TTL (positivo e negativo): scans repetidos não tocam no DNS
+ * - devolve todos os A/AAAA já na ordem happy eyeballs (RFC 8305: famílias intercaladas)
+ *
+ * O HttpClient do JDK resolve por conta própria (sem API de resolver no Java 17); o TTL do cache
+ * interno do JDK é alinhado ao nosso e o lookup daqui já deixa esse cache aquecido.
+ */
+@Service
+public class DnsResolverService {
+
+    private static final int RESOLVER_THREADS = 8;
+
+    // cache não cresce sem limite em batch/network scan
+    private static final int MAX_ENTRIES = 20_000;
+
+    private static class Entry {
+        final List<InetAddress> addresses; // vazio = negativo
+        final String error;
+        final long expiresAt;
+
+        Entry(List<InetAddress> addresses, String error, long expiresAt) {
+            this.addresses = addresses;
+            this.error = error;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final long ttlMs;
+    private final long negativeTtlMs;
+    private final boolean preferIpv6;
+
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<List<InetAddress>>> inFlight = new ConcurrentHashMap<>();
+
+    private final ExecutorService pool =
+            Executors.newFixedThreadPool(RESOLVER_THREADS, ScanStageExecutor.daemonFactory("dns-resolver-"));
+
+    public DnsResolverService(
+            @Value("${cyberaudit.dns.ttl-seconds:60}") int ttlSeconds,
+            @Value("${cyberaudit.dns.negative-ttl-seconds:10}") int negativeTtlSeconds,
+            @Value("${cyberaudit.dns.prefer-ipv6:true}") boolean preferIpv6
+    ) {
+        this.ttlMs = ttlSeconds * 1000L;
+        this.negativeTtlMs = negativeTtlSeconds * 1000L;
+        this.preferIpv6 = preferIpv6;
+
+        // cache interno do JDK (usado pelo HttpClient) com o mesmo TTL
+        if (Security.getProperty("networkaddress.cache.ttl") == null) {
+            Security.setProperty("networkaddress.cache.ttl", String.valueOf(ttlSeconds));
+        }
+    }
+
+    // Todos os endereços do host em ordem happy eyeballs; completa com UnknownHostException se não resolver
+    public CompletableFuture<List<InetAddress>> resolveAsync(String host) {
+        String key = host.toLowerCase();
+
+        Entry e = cache.get(key);
+        if (e != null && System.currentTimeMillis() <= e.expiresAt) {
+            return e.error == null
+                    ? CompletableFuture.completedFuture(e.addresses)
+                    : CompletableFuture.failedFuture(new UnknownHostException(e.error));
+        }
+
+        CompletableFuture<List<InetAddress>> mine = new CompletableFuture<>();
+        CompletableFuture<List<InetAddress>> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) return existing;
+
+        try {
+            pool.execute(() -> lookup(key, mine));
+        } catch (RejectedExecutionException ex) {
+            inFlight.remove(key, mine);
+            mine.completeExceptionally(new UnknownHostException("resolver indisponível"));
+        }
+        return mine;
+    }
+
+    // Versão bloqueante; lança UnknownHostException (inclusive em timeout)
+    public List<InetAddress> resolve(String host, long timeoutMs) throws UnknownHostException {
+        try {
+            return resolveAsync(host).get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UnknownHostException u) throw u;
+            throw new UnknownHostException(host);
+        } catch (TimeoutException e) {
+            throw new UnknownHostException(host + " (timeout de DNS)");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnknownHostException(host);
+        }
+    }
+
+    private void lookup(String key, CompletableFuture<List<InetAddress>> out) {
+        try {
+            List<InetAddress> ordered = happyEyeballsOrder(InetAddress.getAllByName(key));
+            put(key, new Entry(ordered, null, System.currentTimeMillis() + ttlMs));
+            out.complete(ordered);
+        } catch (UnknownHostException e) {
+            String msg = e.getMessage() != null ? e.getMessage() : key;
+            put(key, new Entry(List.of(), msg, System.currentTimeMillis() + negativeTtlMs));
+            out.completeExceptionally(e);
+        } catch (Exception e) {
+            out.completeExceptionally(new UnknownHostException(key));
+        } finally {
+            inFlight.remove(key, out);
+        }
+    }
+
+    private void put(String key, Entry entry) {
+        if (cache.size() >= MAX_ENTRIES) {
+            long now = System.currentTimeMillis();
+            cache.values().removeIf(x -> x.expiresAt < now);
+            if (cache.size() >= MAX_ENTRIES) cache.clear();
+        }
+        cache.put(key, entry);
+    }
+
+    // RFC 8305 §4: intercala famílias começando pela preferida (v6, v4, v6, v4...)
+    private List<InetAddress> happyEyeballsOrder(InetAddress[] all) {
+        List<InetAddress> v6 = new ArrayList<>();
+        List<InetAddress> v4 = new ArrayList<>();
+        for (InetAddress a : all) {
+            if (a instanceof Inet6Address) v6.add(a);
+            else v4.add(a);
+        }
+
+        List<InetAddress> first = preferIpv6 ? v6 : v4;
+        List<InetAddress> second = preferIpv6 ? v4 : v6;
+        List<InetAddress> out = new ArrayList<>(all.length);
+        for (int i = 0; i < Math.max(first.size(), second.size()); i++) {
+            if (i < first.size()) out.add(first.get(i));
+            if (i < second.size()) out.add(second.get(i));
+        }
+        return List.copyOf(out);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
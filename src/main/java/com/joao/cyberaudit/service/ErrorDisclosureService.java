@@ -1,54 +1,167 @@
 package com.joao.cyberaudit.service;
 
+import com.joao.cyberaudit.model.ResponseDiff;
+import com.joao.cyberaudit.model.SignatureMatch;
+import com.joao.cyberaudit.util.ByteAhoCorasick;
+import com.joao.cyberaudit.util.SimHash;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 @Service
 public class ErrorDisclosureService {
 
-    private final HttpClient client = HttpClient.newBuilder()
-            .followRedirects(HttpClient.Redirect.ALWAYS)
-            .connectTimeout(Duration.ofSeconds(8))
-            .build();
+    private static final String SIGNATURES = "/signatures/db-errors.txt";
+
+    private static final class Signature {
+        final String category;
+        final String text;
+        final int weight;
+
+        Signature(String category, String text, int weight) {
+            this.category = category;
+            this.text = text;
+            this.weight = weight;
+        }
+    }
+
+    // assinaturas novas (ausentes na baseline) + comparação das duas respostas; diff null = baseline indisponível
+    public static final class DbErrorProbe {
+        static final DbErrorProbe NONE = new DbErrorProbe(List.of(), null);
+
+        final List<SignatureMatch> matches;
+        final ResponseDiff diff;
+
+        DbErrorProbe(List<SignatureMatch> matches, ResponseDiff diff) {
+            this.matches = matches;
+            this.diff = diff;
+        }
+
+        public List<SignatureMatch> getMatches() {
+            return matches;
+        }
+
+        public ResponseDiff getDiff() {
+            return diff;
+        }
+    }
+
+    private final HttpTransportService transport;
+    private final BaselineService baselines;
+    private final long maxBodyBytes;
+    private final int threshold;
+
+    // pacote inteiro num automato só: 1 passada nos bytes, custo por byte igual com 15 ou 1.500 assinaturas
+    private final List<Signature> signatures;
+    private final ByteAhoCorasick matcher;
+
+    public ErrorDisclosureService(
+            HttpTransportService transport,
+            BaselineService baselines,
+            @Value("${cyberaudit.probe.max-body-bytes:524288}") long maxBodyBytes,
+            @Value("${cyberaudit.dberror.threshold:5}") int threshold
+    ) throws IOException {
+        this.transport = transport;
+        this.baselines = baselines;
+        this.maxBodyBytes = Math.max(1024, maxBodyBytes);
+        this.threshold = Math.max(1, threshold);
+        this.signatures = load();
+
+        List<byte[]> patterns = new ArrayList<>(signatures.size());
+        for (Signature sig : signatures) patterns.add(sig.text.getBytes(StandardCharsets.UTF_8));
+        this.matcher = ByteAhoCorasick.compile(patterns, true);
+    }
 
     // PASSIVO: só diz se há parâmetros (superfície de entrada)
     public boolean hasQueryParams(String url) {
         return url != null && url.contains("?") && url.indexOf('?') < url.length() - 1;
     }
 
-    // ATIVO (opt-in): faz 1 request extra e busca padrões de erro de banco/SQL na resposta
-    public boolean detectsDbErrorLeakage(String urlWithParams) {
+    /*
+     * ATIVO (opt-in): 1 request mutado (+ a baseline, compartilhada entre probes) e busca de assinaturas de erro
+     * de banco/SQL na resposta. matches = assinaturas que casaram (categoria, peso, offset no corpo) quando a soma
+     * dos pesos atinge o limiar; termo genérico sozinho ("exception", "jdbc") não basta.
+     * Diferencial: a resposta mutada é comparada com a baseline (resposta sem mutação, compartilhada pelos probes).
+     * Assinatura que já está na baseline é texto normal da página (fórum de MySQL, log de "exception"...) e não conta;
+     * só o que aparece depois da mutação soma para o limiar. Sem baseline, vale a resposta mutada sozinha.
+     */
+    public DbErrorProbe probeDbErrors(String urlWithParams) {
         try {
-            if (!hasQueryParams(urlWithParams)) return false;
+            if (!hasQueryParams(urlWithParams)) return DbErrorProbe.NONE;
+
+            BaselineService.Baseline baseline = baselines.get(urlWithParams);
+            boolean[] inBaseline = new boolean[signatures.size()];
+            if (baseline != null) {
+                matcher.scan(ByteBuffer.wrap(baseline.body), (id, end) -> {
+                    inBaseline[id] = true;
+                    return true;
+                });
+            }
 
             String mutated = mutateFirstParamValue(urlWithParams);
 
             HttpRequest req = HttpRequest.newBuilder(URI.create(mutated))
                     .GET()
                     .timeout(Duration.ofSeconds(12))
-                    .header("User-Agent", "CyberAuditScanner/1.0")
+                    .header("User-Agent", HttpTransportService.USER_AGENT)
                     .header("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,/;q=0.8")
                     .build();
 
-            HttpResponse<String> resp = client.send(req, HttpResponse.BodyHandlers.ofString());
-            String body = resp.body() == null ? "" : resp.body().toLowerCase();
-
-            return containsDbErrorPatterns(body);
+            // cada assinatura conta 1x; a leitura em streaming para assim que o limiar é atingido (ou no teto)
+            boolean[] seen = new boolean[signatures.size()];
+            List<SignatureMatch> hits = new ArrayList<>();
+            int[] total = {0};
+            SimHash simhash = new SimHash();
+
+            HttpResponse<BoundedMatchSubscriber.Match> resp = transport.send(req,
+                    BoundedMatchSubscriber.handler(matcher, maxBodyBytes, (id, end) -> {
+                        if (seen[id] || inBaseline[id]) return true;
+                        seen[id] = true;
+                        Signature sig = signatures.get(id);
+                        hits.add(new SignatureMatch(sig.category, sig.text, sig.weight,
+                                end - matcher.patternLength(id)));
+                        total[0] += sig.weight;
+                        return total[0] < threshold;
+                    }, simhash::update), true);
+
+            ResponseDiff diff = baseline != null ? diff(urlWithParams, baseline, resp, simhash.value()) : null;
+            if (total[0] < threshold) return new DbErrorProbe(List.of(), diff);
+            hits.sort(Comparator.comparingInt(SignatureMatch::getWeight).reversed());
+            return new DbErrorProbe(hits, diff);
 
         } catch (Exception e) {
-            return false; // no scanner, erro não deve “quebrar” a análise
+            return DbErrorProbe.NONE; // no scanner, erro não deve “quebrar” a análise
         }
     }
 
+    // leitura pode ter parado cedo (limiar/teto): simhash compara o mesmo trecho inicial das duas respostas
+    private static ResponseDiff diff(String url, BaselineService.Baseline baseline,
+                                     HttpResponse<BoundedMatchSubscriber.Match> resp, long simhash) {
+        BoundedMatchSubscriber.Match m = resp.body();
+        long length = !m.found() && !m.truncated
+                ? m.bytesRead
+                : resp.headers().firstValueAsLong("Content-Length").orElse(-1);
+        Long lengthDelta = length >= 0 && baseline.length >= 0 ? length - baseline.length : null;
+        long compared = m.found() ? m.endOffset : m.bytesRead;
+        double similarity = SimHash.similarity(baseline.simhash(compared), simhash);
+        return new ResponseDiff(url, baseline.status, resp.statusCode(), lengthDelta, similarity);
+    }
+
     private String mutateFirstParamValue(String url) {
         int q = url.indexOf('?');
         String base = url.substring(0, q);
@@ -70,28 +183,29 @@ public class ErrorDisclosureService {
         return base + "?" + key + "=" + encoded + rest;
     }
 
-    private boolean containsDbErrorPatterns(String body) {
-        List<String> patterns = List.of(
-                "sql syntax",
-                "you have an error in your sql syntax",
-                "unclosed quotation mark",
-                "syntax error at or near",
-                "sqlstate",
-                "jdbc",
-                "mysql",
-                "mysqli",
-                "postgresql",
-                "psql",
-                "sqlite",
-                "ora-",
-                "odbc",
-                "exception",
-                "stack trace"
-        );
-
-        for (String p : patterns) {
-            if (body.contains(p)) return true;
+    // "<categoria> <peso> <padrão até o fim da linha>"; # = comentário
+    private static List<Signature> load() throws IOException {
+        InputStream in = ErrorDisclosureService.class.getResourceAsStream(SIGNATURES);
+        if (in == null) throw new IOException("Assinaturas não encontradas: " + SIGNATURES);
+
+        List<Signature> out = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String raw;
+            int lineNo = 0;
+            while ((raw = br.readLine()) != null) {
+                lineNo++;
+                String l = raw.trim();
+                if (l.isEmpty() || l.startsWith("#")) continue;
+
+                String[] parts = l.split("\\s+", 3);
+                try {
+                    if (parts.length < 3) throw new IllegalArgumentException("esperado: <categoria> <peso> <padrão>");
+                    out.add(new Signature(parts[0], parts[2], Integer.parseInt(parts[1])));
+                } catch (RuntimeException e) {
+                    throw new IOException(SIGNATURES + ":" + lineNo + ": " + e.getMessage(), e);
+                }
+            }
         }
-        return false;
+        return List.copyOf(out);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,393 @@
+package com.joao.cyberaudit.service;
+
+import com.joao.cyberaudit.util.ByteAhoCorasick;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/*
+ * Identificação de serviço por assinaturas (fingerprints/signatures.txt):
+ * manda o probe do protocolo no socket já conectado e casa a resposta com um automato
+ * Aho-Corasick por probe, direto sobre um ByteBuffer reutilizado por thread (sem String por linha).
+ */
+@Service
+public class FingerprintService {
+
+    private static final String SIGNATURES = "/fingerprints/signatures.txt";
+
+    // resposta lida por probe (banner, headers HTTP, INFO do Redis...)
+    private static final int MAX_RESPONSE_BYTES = 4096;
+    private static final int MAX_VERSION_BYTES = 40;
+
+    // depois do 1º pedaço da resposta, espera pouco pelo resto
+    private static final int TAIL_READ_TIMEOUT_MS = 150;
+
+    // 1 buffer por thread do pool de evidência: alocação por probe limitada
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(MAX_RESPONSE_BYTES));
+
+    public static final class Result {
+        private final String service;
+        private final String product;
+        private final String version;
+        private final String evidence;
+
+        Result(String service, String product, String version, String evidence) {
+            this.service = service;
+            this.product = product;
+            this.version = version;
+            this.evidence = evidence;
+        }
+
+        public String getService() {
+            return service;
+        }
+
+        public String getProduct() {
+            return product;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public String getEvidence() {
+            return evidence;
+        }
+
+        static Result evidenceOnly(String evidence) {
+            return new Result(null, null, null, evidence);
+        }
+
+        Result appendEvidence(String extra) {
+            return new Result(service, product, version, evidence != null ? evidence + " | " + extra : extra);
+        }
+    }
+
+    private static final class Rule {
+        final String service;
+        final String product;
+        boolean captureVersion;
+        boolean atStart;      // padrão no início da resposta
+        boolean exact;        // resposta é exatamente o padrão (ex.: 1 byte do PostgreSQL)
+        BitSet ports = new BitSet(); // vazio = qualquer porta
+
+        Rule(String service, String product) {
+            this.service = service;
+            this.product = product;
+        }
+
+        // padrão que terminou em "end" (len bytes) vale para esta porta e esta resposta?
+        boolean accepts(int port, ByteBuffer buf, int end, int len) {
+            if (!ports.isEmpty() && !ports.get(port)) return false;
+            boolean first = end - len == buf.position();
+            if (atStart && !first) return false;
+            return !exact || first && end == buf.limit();
+        }
+    }
+
+    private static final class Probe {
+        final String name;
+        final String mode; // banner | direct | fallback
+        final BitSet ports; // vazio = qualquer porta
+        final String payload;
+        final List<byte[]> patterns = new ArrayList<>();
+        final List<Rule> rules = new ArrayList<>();
+        ByteAhoCorasick matcher;
+
+        Probe(String name, String mode, BitSet ports, String payload) {
+            this.name = name;
+            this.mode = mode;
+            this.ports = ports;
+            this.payload = payload;
+        }
+
+        boolean appliesTo(int port) {
+            return ports.isEmpty() || ports.get(port);
+        }
+    }
+
+    private final List<Probe> probes;
+
+    public FingerprintService() throws IOException {
+        this.probes = load();
+    }
+
+    /*
+     * Roda no socket já conectado (blocking, com SO_TIMEOUT configurado).
+     * Porta com probe "direct" -> envia direto; senão lê banner e, se nada chegar, tenta o fallback.
+     */
+    public Result identify(Socket socket, String host, int port) throws IOException {
+        ByteBuffer buf = BUFFER.get();
+
+        Probe direct = find("direct", port);
+        if (direct != null) {
+            return exchange(socket, host, port, direct, buf);
+        }
+
+        Probe banner = find("banner", port);
+        if (banner != null) {
+            Result r = exchange(socket, host, port, banner, buf);
+            if (r != null) return r;
+        }
+
+        Probe fallback = find("fallback", port);
+        return fallback != null ? exchange(socket, host, port, fallback, buf) : null;
+    }
+
+    private Result exchange(Socket socket, String host, int port, Probe probe, ByteBuffer buf) throws IOException {
+        if (!probe.payload.isEmpty()) {
+            OutputStream os = socket.getOutputStream();
+            os.write(payloadBytes(probe.payload, host));
+            os.flush();
+        }
+
+        if (!readResponse(socket, buf)) return null;
+        return match(probe, port, buf);
+    }
+
+    // lê até encher o buffer, EOF ou silêncio; false se nada chegou
+    private boolean readResponse(Socket socket, ByteBuffer buf) throws IOException {
+        buf.clear();
+        InputStream in = socket.getInputStream();
+        int originalTimeout = socket.getSoTimeout();
+        try {
+            while (buf.hasRemaining()) {
+                int n;
+                try {
+                    n = in.read(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+                } catch (SocketTimeoutException e) {
+                    break;
+                }
+                if (n < 0) break;
+                buf.position(buf.position() + n);
+                socket.setSoTimeout(TAIL_READ_TIMEOUT_MS);
+            }
+        } finally {
+            socket.setSoTimeout(originalTimeout);
+        }
+        buf.flip();
+        return buf.hasRemaining();
+    }
+
+    // primeira regra (ordem do arquivo) cujo padrão aparece e cujas condições (porta, início, exato) valem
+    private Result match(Probe probe, int port, ByteBuffer buf) {
+        String evidence = evidenceOf(probe, buf);
+
+        int[] best = {-1, -1};
+        probe.matcher.scan(buf, (id, end) -> {
+            if ((best[0] < 0 || id < best[0])
+                    && probe.rules.get(id).accepts(port, buf, end, probe.matcher.patternLength(id))) {
+                best[0] = id;
+                best[1] = end;
+            }
+            return best[0] != 0; // id 0 não tem como ser superado
+        });
+        if (best[0] < 0) {
+            return new Result(null, null, null, evidence);
+        }
+
+        Rule rule = probe.rules.get(best[0]);
+        String version = rule.captureVersion ? captureVersion(buf, best[1]) : null;
+        return new Result(rule.service, rule.product, version, evidence);
+    }
+
+    private String captureVersion(ByteBuffer buf, int from) {
+        int to = from;
+        int limit = Math.min(buf.limit(), from + MAX_VERSION_BYTES);
+        while (to < limit) {
+            byte b = buf.get(to);
+            if (b == ' ' || b == '\r' || b == '\n' || b == '"' || b == ',' || b == ')' || b == '\t' || b == 0) break;
+            to++;
+        }
+        if (to == from) return null;
+        return printable(buf, from, to);
+    }
+
+    // HTTP: "status | Server: x"; demais: "Banner: <1ª linha>"
+    private String evidenceOf(Probe probe, ByteBuffer buf) {
+        String first = line(buf, buf.position());
+        if (first == null) return null;
+
+        if (first.startsWith("HTTP/")) {
+            String server = headerLine(buf, "server:");
+            return trim(first, 80) + (server != null ? " | " + trim(server, 120) : "");
+        }
+        return "Banner: " + trim(first, 140);
+    }
+
+    private String headerLine(ByteBuffer buf, String lowerName) {
+        int i = buf.position();
+        while (i < buf.limit()) {
+            String l = line(buf, i);
+            if (l == null || l.isEmpty()) return null;
+            if (l.toLowerCase(Locale.ROOT).startsWith(lowerName)) return l;
+            int next = indexOf(buf, (byte) '\n', i);
+            if (next < 0) return null;
+            i = next + 1;
+        }
+        return null;
+    }
+
+    private String line(ByteBuffer buf, int from) {
+        if (from >= buf.limit()) return null;
+        int nl = indexOf(buf, (byte) '\n', from);
+        int to = nl < 0 ? buf.limit() : nl;
+        if (to > from && buf.get(to - 1) == '\r') to--;
+        return printable(buf, from, to).trim();
+    }
+
+    private int indexOf(ByteBuffer buf, byte b, int from) {
+        for (int i = from; i < buf.limit(); i++) {
+            if (buf.get(i) == b) return i;
+        }
+        return -1;
+    }
+
+    // bytes binários viram '.', evidência sempre legível
+    private String printable(ByteBuffer buf, int from, int to) {
+        StringBuilder sb = new StringBuilder(to - from);
+        for (int i = from; i < to; i++) {
+            int c = buf.get(i) & 0xFF;
+            sb.append(c >= 0x20 && c < 0x7F ? (char) c : '.');
+        }
+        return sb.toString();
+    }
+
+    private Probe find(String mode, int port) {
+        for (Probe p : probes) {
+            if (p.mode.equals(mode) && p.appliesTo(port)) return p;
+        }
+        return null;
+    }
+
+    private byte[] payloadBytes(String payload, String host) {
+        return unescape(payload.replace("{host}", host));
+    }
+
+    private String trim(String s, int max) {
+        if (s == null) return null;
+        s = s.trim();
+        return s.length() <= max ? s : s.substring(0, max);
+    }
+
+    // ===== carga das assinaturas =====
+
+    private List<Probe> load() throws IOException {
+        InputStream in = FingerprintService.class.getResourceAsStream(SIGNATURES);
+        if (in == null) throw new IOException("Assinaturas não encontradas: " + SIGNATURES);
+
+        Map<String, Probe> byName = new LinkedHashMap<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String raw;
+            int lineNo = 0;
+            while ((raw = br.readLine()) != null) {
+                lineNo++;
+                String l = raw.trim();
+                if (l.isEmpty() || l.startsWith("#")) continue;
+
+                List<String> t = tokens(l);
+                try {
+                    if (t.get(0).equals("probe") && t.size() == 5) {
+                        byName.put(t.get(1), new Probe(t.get(1), t.get(3), ports(t.get(2)), t.get(4)));
+                    } else if (t.get(0).equals("match") && t.size() >= 5) {
+                        Probe p = byName.get(t.get(1));
+                        if (p == null) throw new IllegalArgumentException("probe desconhecido: " + t.get(1));
+                        p.patterns.add(unescape(t.get(4)));
+                        p.rules.add(rule(t));
+                    } else {
+                        throw new IllegalArgumentException("linha não reconhecida");
+                    }
+                } catch (RuntimeException e) {
+                    throw new IOException(SIGNATURES + ":" + lineNo + ": " + e.getMessage(), e);
+                }
+            }
+        }
+
+        List<Probe> out = new ArrayList<>(byName.values());
+        for (Probe p : out) {
+            p.matcher = ByteAhoCorasick.compile(p.patterns, true);
+        }
+        return List.copyOf(out);
+    }
+
+    private Rule rule(List<String> t) {
+        Rule r = new Rule(t.get(2), t.get(3).equals("-") ? null : t.get(3));
+        for (String opt : t.subList(5, t.size())) {
+            if (opt.equals("version")) r.captureVersion = true;
+            else if (opt.equals("start")) r.atStart = true;
+            else if (opt.equals("exact")) r.exact = true;
+            else if (opt.startsWith("ports=")) r.ports = ports(opt.substring("ports=".length()));
+            else throw new IllegalArgumentException("opção desconhecida: " + opt);
+        }
+        return r;
+    }
+
+    private BitSet ports(String spec) {
+        BitSet bits = new BitSet();
+        if (spec.equals("*")) return bits;
+        for (String s : spec.split(",")) bits.set(Integer.parseInt(s.trim()));
+        return bits;
+    }
+
+    // palavras separadas por espaço; "..." é 1 token (escapes ficam para o unescape)
+    private List<String> tokens(String line) {
+        List<String> out = new ArrayList<>();
+        int i = 0;
+        while (i < line.length()) {
+            char c = line.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            StringBuilder sb = new StringBuilder();
+            if (c == '"') {
+                i++;
+                while (i < line.length() && line.charAt(i) != '"') {
+                    if (line.charAt(i) == '\\' && i + 1 < line.length()) sb.append(line.charAt(i++));
+                    sb.append(line.charAt(i++));
+                }
+                i++; // aspas de fechamento
+            } else {
+                while (i < line.length() && !Character.isWhitespace(line.charAt(i))) sb.append(line.charAt(i++));
+            }
+            out.add(sb.toString());
+        }
+        return out;
+    }
+
+    // \r \n \t \0 \xHH \\ \"
+    static byte[] unescape(String s) {
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c != '\\' || i + 1 >= s.length()) {
+                byte[] b = String.valueOf(c).getBytes(StandardCharsets.UTF_8);
+                out.write(b, 0, b.length);
+                continue;
+            }
+            char e = s.charAt(++i);
+            switch (e) {
+                case 'r' -> out.write('\r');
+                case 'n' -> out.write('\n');
+                case 't' -> out.write('\t');
+                case '0' -> out.write(0);
+                case 'x' -> {
+                    out.write(Integer.parseInt(s.substring(i + 1, i + 3), 16));
+                    i += 2;
+                }
+                default -> out.write(e);
+            }
+        }
+        return out.toByteArray();
+    }
+}
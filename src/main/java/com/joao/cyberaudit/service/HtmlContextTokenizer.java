@@ -0,0 +1,348 @@
+package com.joao.cyberaudit.service;
+
+import java.nio.ByteBuffer;
+
+/*
+ * Tokenizer HTML incremental (subconjunto do algoritmo do WHATWG): só acompanha em que contexto está o byte atual
+ * — texto, valor de atributo, script, style, comentário — sem montar DOM nem guardar o documento.
+ * Recebe o corpo em pedaços, na ordem, e mantém o estado entre eles.
+ * Com TagListener também entrega tags e valores de atributo (crawler: links e formulários).
+ */
+final class HtmlContextTokenizer {
+
+    enum Context { HTML_TEXT, ATTRIBUTE, URL, SCRIPT, STYLE, COMMENT }
+
+    // nomes em minúsculas (cortados em MAX_NAME); valor cru, sem decodificar entidades
+    interface TagListener {
+        void startTag(String tag);
+
+        void attribute(String tag, String name, String value);
+
+        void endTag(String tag);
+    }
+
+    private enum State {
+        DATA, TAG_OPEN, TAG_NAME, END_TAG, MARKUP_DECL, BOGUS_COMMENT, COMMENT,
+        BEFORE_ATTR, ATTR_NAME, AFTER_ATTR_NAME, BEFORE_ATTR_VALUE, ATTR_VALUE_DQ, ATTR_VALUE_SQ, ATTR_VALUE_UQ,
+        RAW_TEXT
+    }
+
+    // nomes só precisam do começo para classificar (script, style, href, onclick...)
+    private static final int MAX_NAME = 16;
+    // valor maior que isso (data: URI, JSON em atributo...) não é entregue ao listener
+    private static final int MAX_VALUE = 2048;
+
+    private static final String[] URL_ATTRS = {
+            "href", "src", "action", "formaction", "data", "poster", "background", "cite", "srcset", "xlink:href"
+    };
+
+    private final TagListener listener;
+
+    private State state = State.DATA;
+
+    private final StringBuilder tagName = new StringBuilder(MAX_NAME);
+    private final StringBuilder attrName = new StringBuilder(MAX_NAME);
+
+    // <script>/<style>: fim do raw text = "</" + nome da tag
+    private String rawTextTag;
+    private int rawCloseMatched;
+
+    // "<!-" / "-->"
+    private int dashes;
+
+    // só com listener
+    private final StringBuilder attrValue = new StringBuilder();
+    private boolean valueTooLong;
+    private final StringBuilder endTagName = new StringBuilder(MAX_NAME);
+
+    HtmlContextTokenizer() {
+        this(null);
+    }
+
+    HtmlContextTokenizer(TagListener listener) {
+        this.listener = listener;
+    }
+
+    void consume(ByteBuffer buf, int from, int to) {
+        for (int i = from; i < to; i++) step(buf.get(i) & 0xFF);
+    }
+
+    Context context() {
+        switch (state) {
+            case DATA:
+            case TAG_OPEN:
+            case END_TAG:
+                return Context.HTML_TEXT;
+            case COMMENT:
+            case BOGUS_COMMENT:
+            case MARKUP_DECL:
+                return Context.COMMENT;
+            case RAW_TEXT:
+                return "script".equals(rawTextTag) ? Context.SCRIPT : Context.STYLE;
+            case ATTR_VALUE_DQ:
+            case ATTR_VALUE_SQ:
+            case ATTR_VALUE_UQ:
+                return attributeContext();
+            default:
+                // dentro da tag (nome de tag/atributo)
+                return Context.ATTRIBUTE;
+        }
+    }
+
+    private Context attributeContext() {
+        String name = attrName.toString();
+        if (name.startsWith("on")) return Context.SCRIPT; // onclick, onerror...
+        if (name.equals("style")) return Context.STYLE;
+        for (String u : URL_ATTRS) {
+            if (u.equals(name)) return Context.URL;
+        }
+        return Context.ATTRIBUTE;
+    }
+
+    private void step(int c) {
+        switch (state) {
+            case DATA:
+                if (c == '<') state = State.TAG_OPEN;
+                break;
+
+            case TAG_OPEN:
+                if (c == '!') {
+                    state = State.MARKUP_DECL;
+                    dashes = 0;
+                } else if (c == '/') {
+                    state = State.END_TAG;
+                    endTagName.setLength(0);
+                } else if (isLetter(c)) {
+                    tagName.setLength(0);
+                    append(tagName, c);
+                    state = State.TAG_NAME;
+                } else if (c != '<') {
+                    state = State.DATA;
+                }
+                break;
+
+            case END_TAG:
+                if (c == '>') {
+                    state = State.DATA;
+                    if (listener != null && endTagName.length() > 0) listener.endTag(endTagName.toString());
+                } else if (listener != null && !isSpace(c)) {
+                    append(endTagName, c);
+                }
+                break;
+
+            case MARKUP_DECL:
+                // "<!--" abre comentário; "<!DOCTYPE"/"<![CDATA[" viram comentário falso até o '>'
+                if (c == '-' && ++dashes == 2) {
+                    state = State.COMMENT;
+                    dashes = 0;
+                } else if (c != '-') {
+                    state = c == '>' ? State.DATA : State.BOGUS_COMMENT;
+                }
+                break;
+
+            case BOGUS_COMMENT:
+                if (c == '>') state = State.DATA;
+                break;
+
+            case COMMENT:
+                if (c == '-') {
+                    dashes++;
+                } else if (c == '>' && dashes >= 2) {
+                    state = State.DATA;
+                } else {
+                    dashes = 0;
+                }
+                break;
+
+            case TAG_NAME:
+                if (isSpace(c)) {
+                    emitStartTag();
+                    state = State.BEFORE_ATTR;
+                } else if (c == '/') {
+                    emitStartTag();
+                    state = State.BEFORE_ATTR;
+                } else if (c == '>') {
+                    emitStartTag();
+                    endStartTag();
+                } else {
+                    append(tagName, c);
+                }
+                break;
+
+            case BEFORE_ATTR:
+                if (c == '>') {
+                    endStartTag();
+                } else if (!isSpace(c) && c != '/') {
+                    startAttr(c);
+                }
+                break;
+
+            case ATTR_NAME:
+                if (c == '=') {
+                    state = State.BEFORE_ATTR_VALUE;
+                } else if (isSpace(c)) {
+                    state = State.AFTER_ATTR_NAME;
+                } else if (c == '>') {
+                    endStartTag();
+                } else if (c == '/') {
+                    state = State.BEFORE_ATTR;
+                } else {
+                    append(attrName, c);
+                }
+                break;
+
+            case AFTER_ATTR_NAME:
+                if (c == '=') {
+                    state = State.BEFORE_ATTR_VALUE;
+                } else if (c == '>') {
+                    endStartTag();
+                } else if (c == '/') {
+                    state = State.BEFORE_ATTR;
+                } else if (!isSpace(c)) {
+                    startAttr(c);
+                }
+                break;
+
+            case BEFORE_ATTR_VALUE:
+                if (c == '"') {
+                    startValue();
+                    state = State.ATTR_VALUE_DQ;
+                } else if (c == '\'') {
+                    startValue();
+                    state = State.ATTR_VALUE_SQ;
+                } else if (c == '>') {
+                    endStartTag();
+                } else if (!isSpace(c)) {
+                    startValue();
+                    appendValue(c);
+                    state = State.ATTR_VALUE_UQ;
+                }
+                break;
+
+            case ATTR_VALUE_DQ:
+                if (c == '"') {
+                    emitAttribute();
+                    state = State.BEFORE_ATTR;
+                } else {
+                    appendValue(c);
+                }
+                break;
+
+            case ATTR_VALUE_SQ:
+                if (c == '\'') {
+                    emitAttribute();
+                    state = State.BEFORE_ATTR;
+                } else {
+                    appendValue(c);
+                }
+                break;
+
+            case ATTR_VALUE_UQ:
+                if (isSpace(c)) {
+                    emitAttribute();
+                    state = State.BEFORE_ATTR;
+                } else if (c == '>') {
+                    emitAttribute();
+                    endStartTag();
+                } else {
+                    appendValue(c);
+                }
+                break;
+
+            case RAW_TEXT:
+                stepRawText(c);
+                break;
+        }
+    }
+
+    // dentro de <script>/<style> só "</script" (ou "</style") encerra
+    private void stepRawText(int c) {
+        if (rawCloseMatched == 0) {
+            if (c == '<') rawCloseMatched = 1;
+            return;
+        }
+        if (rawCloseMatched == 1) {
+            rawCloseMatched = c == '/' ? 2 : (c == '<' ? 1 : 0);
+            return;
+        }
+        int idx = rawCloseMatched - 2;
+        if (idx < rawTextTag.length()) {
+            if (lower(c) == rawTextTag.charAt(idx)) {
+                rawCloseMatched++;
+            } else {
+                rawCloseMatched = c == '<' ? 1 : 0;
+            }
+            return;
+        }
+        // nome completo: precisa de separador depois ("</scripts" não fecha)
+        if (c == '>' || isSpace(c) || c == '/') {
+            state = c == '>' ? State.DATA : State.END_TAG;
+            endTagName.setLength(0);
+            if (listener != null) {
+                if (c == '>') listener.endTag(rawTextTag);
+                else endTagName.append(rawTextTag);
+            }
+            rawTextTag = null;
+        }
+        rawCloseMatched = 0;
+    }
+
+    private void startAttr(int c) {
+        attrName.setLength(0);
+        append(attrName, c);
+        state = State.ATTR_NAME;
+    }
+
+    private void emitStartTag() {
+        if (listener != null) listener.startTag(tagName.toString());
+    }
+
+    private void startValue() {
+        attrValue.setLength(0);
+        valueTooLong = false;
+    }
+
+    private void appendValue(int c) {
+        if (listener == null) return;
+        if (attrValue.length() < MAX_VALUE) {
+            attrValue.append((char) c);
+        } else {
+            valueTooLong = true;
+        }
+    }
+
+    // bytes viram char 1:1 (Latin-1): URLs com UTF-8 cru são re-codificadas por quem usa o valor
+    private void emitAttribute() {
+        if (listener != null && !valueTooLong) {
+            listener.attribute(tagName.toString(), attrName.toString(), attrValue.toString());
+        }
+    }
+
+    private void endStartTag() {
+        String name = tagName.toString();
+        if (name.equals("script") || name.equals("style")) {
+            rawTextTag = name;
+            rawCloseMatched = 0;
+            state = State.RAW_TEXT;
+        } else {
+            state = State.DATA;
+        }
+        attrName.setLength(0);
+    }
+
+    private static void append(StringBuilder sb, int c) {
+        if (sb.length() < MAX_NAME) sb.append((char) lower(c));
+    }
+
+    private static int lower(int c) {
+        return c >= 'A' && c <= 'Z' ? c | 0x20 : c;
+    }
+
+    private static boolean isLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+}
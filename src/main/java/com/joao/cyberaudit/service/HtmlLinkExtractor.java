@@ -0,0 +1,167 @@
+package com.joao.cyberaudit.service;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/*
+ * Links e formulários GET de uma página, extraídos em streaming pelos eventos do tokenizer (sem DOM).
+ * Cada URL sai absoluta (resolvida contra a página ou o <base href>), sem fragmento.
+ * Formulário GET vira action?campo1=&campo2=... (POST fica de fora: os probes só fazem GET).
+ */
+final class HtmlLinkExtractor implements HtmlContextTokenizer.TagListener {
+
+    // formulário com mais campos que isso: só os primeiros entram na URL
+    private static final int MAX_FIELDS = 20;
+
+    private static final String[] IGNORED_INPUTS = {"submit", "button", "image", "reset", "file"};
+
+    private URI base;
+    private final Consumer<String> out;
+
+    // <form> aberto (null fora de formulário)
+    private String formAction;
+    private boolean formGet;
+    private List<String> formFields;
+
+    // <input>/<select>/<textarea> em andamento: nome e tipo podem vir em qualquer ordem
+    private String fieldName;
+    private String fieldType;
+
+    HtmlLinkExtractor(URI page, Consumer<String> out) {
+        this.base = page;
+        this.out = out;
+    }
+
+    @Override
+    public void startTag(String tag) {
+        flushField();
+        switch (tag) {
+            case "form":
+                flushForm();
+                formAction = "";
+                formGet = true;
+                formFields = new ArrayList<>();
+                break;
+            case "input":
+            case "select":
+            case "textarea":
+                fieldType = tag.equals("input") ? "text" : tag;
+                fieldName = null;
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void attribute(String tag, String name, String value) {
+        switch (tag) {
+            case "a":
+            case "area":
+                if (name.equals("href")) emit(value);
+                break;
+            case "iframe":
+            case "frame":
+                if (name.equals("src")) emit(value);
+                break;
+            case "base":
+                if (name.equals("href")) {
+                    URI b = resolve(value);
+                    if (b != null) base = b;
+                }
+                break;
+            case "form":
+                if (formFields == null) break;
+                if (name.equals("action")) formAction = value;
+                if (name.equals("method")) formGet = value.trim().equalsIgnoreCase("get");
+                break;
+            case "input":
+            case "select":
+            case "textarea":
+                if (name.equals("name")) fieldName = decode(value);
+                if (name.equals("type")) fieldType = value.trim().toLowerCase();
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void endTag(String tag) {
+        flushField();
+        if (tag.equals("form")) flushForm();
+    }
+
+    // fim do corpo (ou do teto de bytes): fecha formulário sem </form>
+    void finish() {
+        flushField();
+        flushForm();
+    }
+
+    private void flushField() {
+        if (fieldName != null && formFields != null && formFields.size() < MAX_FIELDS && !fieldName.isBlank()) {
+            boolean ignored = false;
+            for (String t : IGNORED_INPUTS) {
+                if (t.equals(fieldType)) ignored = true;
+            }
+            if (!ignored && !formFields.contains(fieldName)) formFields.add(fieldName);
+        }
+        fieldName = null;
+        fieldType = null;
+    }
+
+    private void flushForm() {
+        if (formFields != null && formGet && !formFields.isEmpty()) {
+            URI action = resolve(formAction.isBlank() ? base.toString() : formAction);
+            if (action != null) {
+                StringBuilder q = new StringBuilder();
+                for (String f : formFields) {
+                    if (q.length() > 0) q.append('&');
+                    q.append(URLEncoder.encode(f, StandardCharsets.UTF_8)).append('=');
+                }
+                String a = withoutQuery(action);
+                out.accept(a + "?" + q);
+            }
+        }
+        formFields = null;
+    }
+
+    private void emit(String href) {
+        URI u = resolve(href);
+        if (u != null) out.accept(u.toASCIIString());
+    }
+
+    // absoluta, http(s), sem fragmento; null para javascript:, mailto:, âncora pura, URL inválida
+    private URI resolve(String raw) {
+        String v = decode(raw).trim();
+        if (v.isEmpty() || v.startsWith("#")) return null;
+        try {
+            URI u = base.resolve(v.replace(" ", "%20"));
+            String scheme = u.getScheme();
+            if (scheme == null || !(scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("https"))) return null;
+            if (u.getHost() == null) return null;
+            if (u.getRawFragment() == null) return u;
+            String s = u.toString();
+            return URI.create(s.substring(0, s.indexOf('#')));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String withoutQuery(URI u) {
+        String s = u.toASCIIString();
+        int q = s.indexOf('?');
+        return q >= 0 ? s.substring(0, q) : s;
+    }
+
+    // valor chega byte a byte como Latin-1: volta para UTF-8 e resolve as entidades comuns em URL
+    private static String decode(String raw) {
+        String s = new String(raw.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8);
+        if (s.indexOf('&') < 0) return s;
+        return s.replace("&amp;", "&").replace("&#38;", "&").replace("&quot;", "\"").replace("&#39;", "'");
+    }
+}
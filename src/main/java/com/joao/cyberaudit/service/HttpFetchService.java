@@ -1,135 +1,110 @@
 package com.joao.cyberaudit.service;
 
 import com.joao.cyberaudit.model.HttpFetchResult;
+import com.joao.cyberaudit.model.RedirectHop;
+import com.joao.cyberaudit.model.SSLInfo;
 import org.springframework.stereotype.Service;
 
+import javax.net.ssl.SSLSession;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
 @Service
 public class HttpFetchService {
 
-    private final HttpClient clientFollow = HttpClient.newBuilder()
-            .followRedirects(HttpClient.Redirect.ALWAYS)
-            .connectTimeout(Duration.ofSeconds(8))
-            .build();
+    private static final int MAX_REDIRECTS = 10;
 
-    private final HttpClient clientNoRedirect = HttpClient.newBuilder()
-            .followRedirects(HttpClient.Redirect.NEVER)
-            .connectTimeout(Duration.ofSeconds(8))
-            .build();
+    private final HttpTransportService transport;
+    private final SSLService sslService;
 
-    // Usa redirects automáticos (bom para pegar finalUrl + headers finais)
-    public HttpFetchResult fetchHeaders(String url) {
-        try {
-            URI uri = URI.create(url);
-
-            HttpResponse<Void> headResp = sendHeadFollow(uri);
-
-            // fallback se HEAD não for suportado
-            if (headResp.statusCode() == 405 || headResp.statusCode() == 501) {
-                HttpResponse<Void> getResp = sendGetFollow(uri);
-                return buildResult(getResp);
-            }
-
-            return buildResult(headResp);
-
-        } catch (Exception e) {
-            return new HttpFetchResult(0, url, Map.of(), "Erro ao conectar: " + e.getMessage());
-        }
+    public HttpFetchService(HttpTransportService transport, SSLService sslService) {
+        this.transport = transport;
+        this.sslService = sslService;
     }
 
-    // NOVO: segue manualmente redirects (sem auto-follow) e detecta se em algum passo vira HTTPS
-    public boolean traceRedirectToHttps(String httpUrl) {
+    /*
+     * Percorre a cadeia de redirects 1 vez (GET, sem auto-follow), registrando cada hop.
+     * O mesmo walk dá: redirect para HTTPS, resposta final (headers/finalUrl) e o certificado
+     * do 1º hop HTTPS (handshake reaproveitado, sem conexão extra).
+     */
+    public HttpFetchResult walk(String startUrl) {
+        List<RedirectHop> chain = new ArrayList<>();
+        SSLSession firstSession = null;
+        URI current = null;
+
         try {
-            URI current = URI.create(httpUrl);
-            boolean sawHttps = current.toString().startsWith("https://");
+            current = URI.create(startUrl);
 
-            for (int i = 0; i < 10; i++) {
+            for (int hops = 0; ; hops++) {
                 HttpRequest req = HttpRequest.newBuilder(current)
                         .GET() // GET para evitar comportamento diferente em HEAD
                         .timeout(Duration.ofSeconds(12))
-                        .header("User-Agent", "CyberAuditScanner/1.0")
+                        .header("User-Agent", HttpTransportService.USER_AGENT)
                         .header("Accept", "/")
                         .build();
 
-                HttpResponse<Void> resp = clientNoRedirect.send(req, HttpResponse.BodyHandlers.discarding());
-                int status = resp.statusCode();
-
-                // se não é redirect, acabou
-                if (status < 300 || status >= 400) {
-                    break;
+                HttpResponse<Void> resp = transport.send(req, HttpResponse.BodyHandlers.discarding(), false);
+                if (firstSession == null) {
+                    firstSession = resp.sslSession().orElse(null);
                 }
 
-                String location = resp.headers().firstValue("location").orElse(null);
-                if (location == null || location.isBlank()) {
-                    break;
-                }
-
-                URI next = resolveRedirect(current, location);
-                if (next.toString().startsWith("https://")) {
-                    sawHttps = true;
+                int status = resp.statusCode();
+                Map<String, String> headers = normalizeHeaders(resp);
+                String location = headers.get("location");
+                chain.add(new RedirectHop(current.toString(), status, location, current.getScheme(), headers));
+
+                // se não é redirect (ou acabou o limite), esta é a resposta final
+                if (!HttpTransportService.isRedirect(status) || location == null || location.isBlank()
+                        || hops == MAX_REDIRECTS) {
+                    return new HttpFetchResult(status, current.toString(), headers, null,
+                            tlsInfo(chain, firstSession, false, null), chain);
                 }
 
-                current = next;
+                current = HttpTransportService.resolveRedirect(current, location);
             }
 
-            return sawHttps;
-
         } catch (Exception e) {
-            return false;
+            // hop HTTPS que falhou no handshake também conta como tentativa TLS
+            boolean failedOnHttps = current != null && "https".equalsIgnoreCase(current.getScheme());
+            // ConnectException do HttpClient vem sem mensagem
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            return new HttpFetchResult(0, startUrl, Map.of(), "Erro ao conectar: " + error,
+                    tlsInfo(chain, firstSession, failedOnHttps, error), chain);
         }
     }
 
-    private URI resolveRedirect(URI base, String location) {
-        // location pode ser:
-        // - absoluta: https://...
-        // - relativa: /path
-        // - scheme-relative: //example.com/path
-        if (location.startsWith("//")) {
-            return URI.create(base.getScheme() + ":" + location);
+    // true se em algum passo da cadeia a URL virou HTTPS
+    public boolean reachesHttps(HttpFetchResult walk) {
+        if (walk.getChain() == null) return false;
+        for (RedirectHop hop : walk.getChain()) {
+            if ("https".equalsIgnoreCase(hop.getScheme())) return true;
         }
-        return base.resolve(location);
+        return false;
     }
 
-    private HttpResponse<Void> sendHeadFollow(URI uri) throws Exception {
-        HttpRequest req = HttpRequest.newBuilder(uri)
-                .method("HEAD", HttpRequest.BodyPublishers.noBody())
-                .timeout(Duration.ofSeconds(10))
-                .header("User-Agent", "CyberAuditScanner/1.0")
-                .build();
-
-        return clientFollow.send(req, HttpResponse.BodyHandlers.discarding());
-    }
-
-    private HttpResponse<Void> sendGetFollow(URI uri) throws Exception {
-        HttpRequest req = HttpRequest.newBuilder(uri)
-                .GET()
-                .timeout(Duration.ofSeconds(12))
-                .header("User-Agent", "CyberAuditScanner/1.0")
-                .header("Accept", "/")
-                .build();
-
-        return clientFollow.send(req, HttpResponse.BodyHandlers.discarding());
+    private SSLInfo tlsInfo(List<RedirectHop> chain, SSLSession firstSession, boolean failedOnHttps, String error) {
+        if (firstSession != null) return sslService.fromSession(firstSession);
+        if (failedOnHttps) return sslService.failed(error);
+        for (RedirectHop hop : chain) {
+            if ("https".equalsIgnoreCase(hop.getScheme())) return sslService.failed("sessão TLS indisponível");
+        }
+        return null; // cadeia só em http
     }
 
-    private HttpFetchResult buildResult(HttpResponse<Void> resp) {
-        int status = resp.statusCode();
-        String finalUrl = resp.uri().toString();
-
+    private Map<String, String> normalizeHeaders(HttpResponse<?> resp) {
         Map<String, String> normalized = new LinkedHashMap<>();
         resp.headers().map().forEach((k, v) -> {
             if (k == null) return;
             if (v == null || v.isEmpty()) return;
             normalized.put(k.toLowerCase(Locale.ROOT), v.get(0));
         });
-
-        return new HttpFetchResult(status, finalUrl, normalized, null);
+        return normalized;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,165 @@
+package com.joao.cyberaudit.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/*
+ * Transporte HTTP único para todos os serviços (fetch, XSS, DB leakage).
+ * Um só HttpClient = um só pool de conexões: keep-alive por origem, HTTP/2 (ALPN) quando o servidor suporta.
+ * Seguir redirect ou não é política por request, não um client separado.
+ * O SSLContext (e o cache de sessões TLS) é compartilhado: novos scans do mesmo host retomam a sessão.
+ */
+@Service
+public class HttpTransportService {
+
+    public static final String USER_AGENT = "CyberAuditScanner/1.0";
+
+    private static final int MAX_REDIRECTS = 10;
+
+    private static class OriginGate {
+        final Semaphore sem;
+        int refs;
+
+        OriginGate(int permits) {
+            this.sem = new Semaphore(permits);
+        }
+    }
+
+    private final ProbeScheduler probeScheduler;
+    private final SSLContext sslContext;
+    private final HttpClient client;
+    private final int maxPerOrigin;
+    private final Map<String, OriginGate> origins = new ConcurrentHashMap<>();
+
+    public HttpTransportService(
+            @Value("${cyberaudit.http.connect-timeout-ms:8000}") long connectTimeoutMs,
+            @Value("${cyberaudit.http.max-connections-per-origin:6}") int maxPerOrigin,
+            @Value("${cyberaudit.http.pool-size:0}") int poolSize,
+            @Value("${cyberaudit.http.keepalive-seconds:30}") int keepAliveSeconds,
+            @Value("${cyberaudit.tls.session-cache-size:5000}") int sessionCacheSize,
+            @Value("${cyberaudit.tls.session-timeout-seconds:3600}") int sessionTimeoutSeconds,
+            ProbeScheduler probeScheduler
+    ) throws Exception {
+        this.probeScheduler = probeScheduler;
+
+        // o pool interno do JDK só é configurável por system property (lida na criação do 1º client)
+        setIfAbsent("jdk.httpclient.connectionPoolSize", String.valueOf(poolSize));
+        setIfAbsent("jdk.httpclient.keepalive.timeout", String.valueOf(keepAliveSeconds));
+
+        this.sslContext = SSLContext.getInstance("TLS");
+        this.sslContext.init(null, null, null);
+        this.sslContext.getClientSessionContext().setSessionCacheSize(sessionCacheSize);
+        this.sslContext.getClientSessionContext().setSessionTimeout(sessionTimeoutSeconds);
+
+        this.maxPerOrigin = Math.max(1, maxPerOrigin);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .sslContext(sslContext)
+                .followRedirects(HttpClient.Redirect.NEVER) // redirects tratados aqui, por request
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+    }
+
+    public SSLContext sslContext() {
+        return sslContext;
+    }
+
+    // Envia 1 request; com followRedirects=true segue até 10 redirects (resp.uri() = URL final)
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler, boolean followRedirects)
+            throws IOException, InterruptedException {
+
+        if (!followRedirects) {
+            return sendOnce(request, handler);
+        }
+
+        // corpo de respostas intermediárias (3xx com Location) é descartado
+        HttpResponse.BodyHandler<T> hopHandler = info -> isRedirect(info.statusCode())
+                && info.headers().firstValue("location").isPresent()
+                ? HttpResponse.BodySubscribers.replacing(null)
+                : handler.apply(info);
+
+        HttpRequest current = request;
+        HttpResponse<T> resp = sendOnce(current, hopHandler);
+
+        for (int i = 0; i < MAX_REDIRECTS; i++) {
+            String location = resp.headers().firstValue("location").orElse(null);
+            if (!isRedirect(resp.statusCode()) || location == null || location.isBlank()) {
+                return resp;
+            }
+
+            URI next = resolveRedirect(current.uri(), location);
+            HttpRequest.Builder b = HttpRequest.newBuilder(current, (name, value) -> true).uri(next);
+            if (resp.statusCode() == 303 && !"HEAD".equals(current.method())) {
+                b.GET();
+            }
+            current = b.build();
+            resp = sendOnce(current, hopHandler);
+        }
+        return resp;
+    }
+
+    public static URI resolveRedirect(URI base, String location) {
+        // location pode ser:
+        // - absoluta: https://...
+        // - relativa: /path
+        // - scheme-relative: //example.com/path
+        if (location.startsWith("//")) {
+            return URI.create(base.getScheme() + ":" + location);
+        }
+        return base.resolve(location);
+    }
+
+    public static boolean isRedirect(int status) {
+        return status == 301 || status == 302 || status == 303 || status == 307 || status == 308;
+    }
+
+    private <T> HttpResponse<T> sendOnce(HttpRequest request, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        String origin = originOf(request.uri());
+        OriginGate gate = origins.compute(origin, (k, g) -> {
+            if (g == null) g = new OriginGate(maxPerOrigin);
+            g.refs++;
+            return g;
+        });
+        try {
+            gate.sem.acquire();
+            try {
+                // vaga global por último: quem espera a origem não segura orçamento do nó
+                String tenant = ProbeScheduler.currentTenant();
+                probeScheduler.acquireBlocking(tenant);
+                try {
+                    return client.send(request, handler);
+                } finally {
+                    probeScheduler.release(tenant);
+                }
+            } finally {
+                gate.sem.release();
+            }
+        } finally {
+            // mapa só guarda origens com requests em andamento
+            origins.computeIfPresent(origin, (k, g) -> --g.refs == 0 ? null : g);
+        }
+    }
+
+    private String originOf(URI uri) {
+        String scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase(Locale.ROOT);
+        String host = uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ROOT);
+        return scheme + "://" + host + ":" + uri.getPort();
+    }
+
+    private static void setIfAbsent(String key, String value) {
+        if (System.getProperty(key) == null) System.setProperty(key, value);
+    }
+}
@@ -0,0 +1,242 @@
+package com.joao.cyberaudit.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.joao.cyberaudit.model.PortFinding;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Scan de faixas de rede (CIDR): 1 linha NDJSON por host assim que ele termina.
+ * Os hosts não prendem thread: cada um é um HostScan assíncrono no ConnectEngine compartilhado,
+ * com N hosts simultâneos e início de hosts cadenciado (hosts/s).
+ */
+@Service
+public class NetworkScanService {
+
+    private static final int WRITER_THREADS = 4;
+
+    // 1 bloco CIDR (v4 ou v6) já validado
+    public static final class Block {
+        final byte[] network;
+        final long first;
+        final long last;
+
+        Block(byte[] network, long first, long last) {
+            this.network = network;
+            this.first = first;
+            this.last = last;
+        }
+
+        long size() {
+            return last - first + 1;
+        }
+
+        InetAddress at(long index) throws IOException {
+            byte[] b = network.clone();
+            long carry = index;
+            for (int i = b.length - 1; i >= 0 && carry > 0; i--) {
+                long sum = (b[i] & 0xFF) + (carry & 0xFF);
+                b[i] = (byte) sum;
+                carry = (carry >>> 8) + (sum >>> 8);
+            }
+            return InetAddress.getByAddress(b);
+        }
+    }
+
+    private final PortScanService portScanService;
+    private final ObjectMapper objectMapper;
+    private final int maxHosts;
+    private final int maxConcurrentHosts;
+    private final int hostsPerSecond;
+
+    // escrita das linhas fora da thread do selector (callbacks do scan não podem bloquear em I/O)
+    private final ExecutorService writers =
+            Executors.newFixedThreadPool(WRITER_THREADS, ScanStageExecutor.daemonFactory("network-writer-"));
+
+    public NetworkScanService(
+            PortScanService portScanService,
+            ObjectMapper objectMapper,
+            @Value("${cyberaudit.network.max-hosts:1024}") int maxHosts,
+            @Value("${cyberaudit.network.concurrent-hosts:16}") int maxConcurrentHosts,
+            @Value("${cyberaudit.network.hosts-per-second:50}") int hostsPerSecond
+    ) {
+        this.portScanService = portScanService;
+        this.objectMapper = objectMapper;
+        this.maxHosts = Math.max(1, maxHosts);
+        this.maxConcurrentHosts = Math.max(1, maxConcurrentHosts);
+        this.hostsPerSecond = Math.max(1, hostsPerSecond);
+    }
+
+    /*
+     * "10.0.0.0/24, 192.168.1.10, 2001:db8::/120" -> blocos. Valida antes do stream abrir
+     * (IllegalArgumentException com mensagem para o cliente).
+     */
+    public List<Block> parse(String cidrs) {
+        if (cidrs == null || cidrs.isBlank()) {
+            throw new IllegalArgumentException("Informe ao menos um bloco CIDR em cidr");
+        }
+
+        List<Block> blocks = new ArrayList<>();
+        long total = 0;
+        for (String part : cidrs.split("[,\\s]+")) {
+            if (part.isBlank()) continue;
+            Block b = parseBlock(part.trim());
+            total += b.size();
+            if (total > maxHosts) {
+                throw new IllegalArgumentException("Faixa grande demais: máximo de " + maxHosts + " hosts por request");
+            }
+            blocks.add(b);
+        }
+        if (blocks.isEmpty()) {
+            throw new IllegalArgumentException("Informe ao menos um bloco CIDR em cidr");
+        }
+        return blocks;
+    }
+
+    public void streamNetwork(List<Block> blocks, PortProfile profile, String tenant, OutputStream out) throws IOException {
+        AtomicBoolean clientGone = new AtomicBoolean(false);
+        AtomicInteger scanned = new AtomicInteger(0);
+        AtomicInteger withOpen = new AtomicInteger(0);
+        Semaphore hostSlots = new Semaphore(maxConcurrentHosts);
+
+        long started = System.currentTimeMillis();
+        long intervalNanos = 1_000_000_000L / hostsPerSecond;
+        long nextStart = System.nanoTime();
+
+        try {
+            for (Block block : blocks) {
+                for (long i = block.first; i <= block.last && !clientGone.get(); i++) {
+                    // cadência: no máximo hostsPerSecond inícios de host por segundo
+                    long wait = nextStart - System.nanoTime();
+                    if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+                    nextStart = Math.max(nextStart, System.nanoTime() - intervalNanos) + intervalNanos;
+
+                    hostSlots.acquire();
+                    InetAddress addr = block.at(i);
+                    long hostStart = System.currentTimeMillis();
+
+                    try {
+                        ProbeScheduler.callAs(tenant, () -> portScanService.scanAddressAsync(addr, profile, f -> { }))
+                                .whenCompleteAsync((ports, err) -> {
+                                    try {
+                                        scanned.incrementAndGet();
+                                        if (ports != null && !ports.isEmpty()) withOpen.incrementAndGet();
+                                        writeLine(hostLine(addr, ports, err, System.currentTimeMillis() - hostStart),
+                                                out, clientGone);
+                                    } finally {
+                                        hostSlots.release();
+                                    }
+                                }, writers);
+                    } catch (RuntimeException e) {
+                        // falhou antes do callback existir: devolve a vaga aqui, senão a espera final trava
+                        hostSlots.release();
+                        throw e;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RejectedExecutionException e) {
+            throw new IOException("Network scan executor indisponível", e);
+        } finally {
+            // espera os hosts em andamento deste request
+            hostSlots.acquireUninterruptibly(maxConcurrentHosts);
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("summary", true);
+        summary.put("hostsScanned", scanned.get());
+        summary.put("hostsWithOpenPorts", withOpen.get());
+        summary.put("durationMs", System.currentTimeMillis() - started);
+        writeLine(summary, out, clientGone);
+    }
+
+    private Map<String, Object> hostLine(InetAddress addr, List<PortFinding> ports, Throwable err, long durationMs) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("address", addr.getHostAddress());
+        line.put("openPorts", ports != null ? ports : List.of());
+        line.put("durationMs", durationMs);
+        if (err != null) line.put("error", "Falha no scan: " + err.getMessage());
+        return line;
+    }
+
+    private void writeLine(Object value, OutputStream out, AtomicBoolean clientGone) {
+        if (clientGone.get()) return;
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(value);
+            synchronized (out) {
+                out.write(json);
+                out.write('\n');
+                out.flush();
+            }
+        } catch (IOException e) {
+            // cliente desconectou: para de iniciar novos hosts
+            clientGone.set(true);
+        }
+    }
+
+    private Block parseBlock(String cidr) {
+        int slash = cidr.indexOf('/');
+        String ip = slash < 0 ? cidr : cidr.substring(0, slash);
+
+        // só literais: nada de DNS aqui
+        if (!ip.matches("[0-9a-fA-F:.]+")) {
+            throw new IllegalArgumentException("Endereço inválido: " + cidr);
+        }
+
+        byte[] bytes;
+        try {
+            bytes = InetAddress.getByName(ip).getAddress();
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Endereço inválido: " + cidr);
+        }
+
+        int bits = bytes.length * 8;
+        int prefix = bits;
+        if (slash >= 0) {
+            try {
+                prefix = Integer.parseInt(cidr.substring(slash + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Prefixo inválido: " + cidr);
+            }
+        }
+        if (prefix < 0 || prefix > bits) {
+            throw new IllegalArgumentException("Prefixo inválido: " + cidr);
+        }
+
+        int hostBits = bits - prefix;
+        if (hostBits > 30 || (1L << hostBits) > maxHosts + 2L) {
+            throw new IllegalArgumentException("Faixa grande demais: máximo de " + maxHosts + " hosts por request");
+        }
+
+        // zera os bits de host (10.0.0.7/24 -> 10.0.0.0)
+        for (int i = 0; i < bytes.length; i++) {
+            int keep = Math.max(0, Math.min(8, prefix - i * 8));
+            bytes[i] &= (byte) (0xFF << (8 - keep));
+        }
+
+        long count = 1L << hostBits;
+        // IPv4 até /30: sem endereço de rede e broadcast
+        if (bytes.length == 4 && hostBits >= 2) {
+            return new Block(bytes, 1, count - 2);
+        }
+        return new Block(bytes, 0, count - 1);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.shutdownNow();
+    }
+}
@@ -0,0 +1,171 @@
+package com.joao.cyberaudit.service;
+
+import java.util.BitSet;
+
+/*
+ * Conjunto de portas de um scan, guardado como bitset (a faixa inteira 1-65535 ocupa 8 KB).
+ * Perfis nomeados são compartilhados e nunca alterados; custom é montado por request.
+ */
+public final class PortProfile {
+
+    public static final String QUICK_NAME = "quick";
+    public static final String TOP100_NAME = "top100";
+    public static final String TOP1000_NAME = "top1000";
+    public static final String FULL_NAME = "full";
+    public static final String CUSTOM_NAME = "custom";
+
+    private static final int MAX_PORT = 65535;
+
+    // spec custom muito grande é erro do cliente (ex.: "1,2,3,...")
+    private static final int MAX_SPEC_LENGTH = 2048;
+
+    private static final int[] QUICK_PORTS = {
+            21, 22, 23, 25, 53, 80, 110, 143, 443, 465, 587,
+            993, 995, 1433, 1521, 3306, 5432, 6379, 8080, 8443, 9200, 27017
+    };
+
+    // portas TCP mais frequentes (ordem de frequência dos levantamentos públicos tipo nmap-services)
+    private static final int[] TOP100_PORTS = {
+            7, 9, 13, 21, 22, 23, 25, 26, 37, 53, 79, 80, 81, 88, 106, 110, 111, 113, 119, 135,
+            139, 143, 144, 179, 199, 389, 427, 443, 444, 445, 465, 513, 514, 515, 543, 544, 548, 554,
+            587, 631, 646, 873, 990, 993, 995, 1025, 1026, 1027, 1028, 1029, 1110, 1433, 1720, 1723,
+            1755, 1900, 2000, 2001, 2049, 2121, 2717, 3000, 3128, 3306, 3389, 3986, 4899, 5000, 5009,
+            5051, 5060, 5101, 5190, 5357, 5432, 5631, 5666, 5800, 5900, 6000, 6001, 6646, 7070, 8000,
+            8008, 8009, 8080, 8081, 8443, 8888, 9100, 9999, 10000, 32768, 49152, 49153, 49154,
+            49155, 49156, 49157
+    };
+
+    // top1000 (aproximado): portas privilegiadas 1-1024 + top100 + serviços altos comuns (DB, cache, admin, cloud)
+    private static final int[] HIGH_SERVICE_PORTS = {
+            1080, 1194, 1434, 1521, 1883, 2082, 2083, 2086, 2087, 2181, 2375, 2376, 2379, 2380,
+            3268, 3269, 3690, 4369, 4443, 4444, 4848, 5001, 5432, 5601, 5672, 5901, 5902, 5984,
+            5985, 5986, 6379, 6443, 6667, 7001, 7002, 7474, 7547, 8001, 8002, 8010, 8020, 8042,
+            8069, 8082, 8083, 8086, 8088, 8089, 8090, 8161, 8180, 8200, 8500, 8834, 8880, 8983,
+            9000, 9001, 9042, 9043, 9060, 9080, 9090, 9091, 9092, 9200, 9300, 9418, 9443, 9600,
+            10250, 10255, 11211, 15672, 16010, 27017, 27018, 28017, 50000, 50070
+    };
+
+    public static final PortProfile QUICK = named(QUICK_NAME, QUICK_PORTS);
+    public static final PortProfile TOP100 = named(TOP100_NAME, TOP100_PORTS);
+    public static final PortProfile TOP1000 = top1000();
+    public static final PortProfile FULL = full();
+
+    private final String name;
+    private final String key;
+    private final BitSet ports;
+    private final int size;
+
+    private PortProfile(String name, String key, BitSet ports) {
+        this.name = name;
+        this.key = key;
+        this.ports = ports;
+        this.size = ports.cardinality();
+    }
+
+    /*
+     * Resolve o perfil do request. Com customPorts (ex.: "22,80,8000-8100") o perfil é custom.
+     * Lança IllegalArgumentException com mensagem para o cliente.
+     */
+    public static PortProfile resolve(String profile, String customPorts) {
+        if (customPorts != null && !customPorts.isBlank()) {
+            return custom(customPorts);
+        }
+        String p = profile == null ? QUICK_NAME : profile.trim().toLowerCase();
+        return switch (p) {
+            case "", QUICK_NAME -> QUICK;
+            case TOP100_NAME -> TOP100;
+            case TOP1000_NAME -> TOP1000;
+            case FULL_NAME -> FULL;
+            default -> throw new IllegalArgumentException(
+                    "Perfil de portas inválido: " + profile + " (use quick, top100, top1000, full ou portRanges)");
+        };
+    }
+
+    public static PortProfile custom(String spec) {
+        if (spec.length() > MAX_SPEC_LENGTH) {
+            throw new IllegalArgumentException("Lista de portas muito longa (máx. " + MAX_SPEC_LENGTH + " caracteres)");
+        }
+
+        BitSet bits = new BitSet(MAX_PORT + 1);
+        for (String part : spec.split(",")) {
+            String token = part.trim();
+            if (token.isEmpty()) continue;
+
+            int dash = token.indexOf('-');
+            int from = parsePort(dash < 0 ? token : token.substring(0, dash), token);
+            int to = dash < 0 ? from : parsePort(token.substring(dash + 1), token);
+            if (to < from) {
+                throw new IllegalArgumentException("Faixa de portas invertida: " + token);
+            }
+            bits.set(from, to + 1);
+        }
+
+        if (bits.isEmpty()) {
+            throw new IllegalArgumentException("Nenhuma porta informada em portRanges");
+        }
+        return new PortProfile(CUSTOM_NAME, CUSTOM_NAME + ":" + canonical(bits), bits);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // identifica o conjunto de portas (perfis iguais -> mesma chave), usado em cache
+    public String key() {
+        return key;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // próxima porta >= from, ou -1
+    public int nextPort(int from) {
+        return ports.nextSetBit(from);
+    }
+
+    private static PortProfile named(String name, int[] list) {
+        BitSet bits = new BitSet(MAX_PORT + 1);
+        for (int p : list) bits.set(p);
+        return new PortProfile(name, name, bits);
+    }
+
+    private static PortProfile top1000() {
+        BitSet bits = new BitSet(MAX_PORT + 1);
+        bits.set(1, 1025);
+        for (int p : TOP100_PORTS) bits.set(p);
+        for (int p : QUICK_PORTS) bits.set(p);
+        for (int p : HIGH_SERVICE_PORTS) bits.set(p);
+        return new PortProfile(TOP1000_NAME, TOP1000_NAME, bits);
+    }
+
+    private static PortProfile full() {
+        BitSet bits = new BitSet(MAX_PORT + 1);
+        bits.set(1, MAX_PORT + 1);
+        return new PortProfile(FULL_NAME, FULL_NAME, bits);
+    }
+
+    private static int parsePort(String raw, String token) {
+        try {
+            int port = Integer.parseInt(raw.trim());
+            if (port >= 1 && port <= MAX_PORT) return port;
+        } catch (NumberFormatException ignored) {
+            // cai na mensagem abaixo
+        }
+        throw new IllegalArgumentException("Porta inválida em portRanges: " + token);
+    }
+
+    // "22,80,8000-8100": forma canônica, independente da ordem/repetição no request
+    private static String canonical(BitSet bits) {
+        StringBuilder sb = new StringBuilder();
+        int start = bits.nextSetBit(0);
+        while (start >= 0) {
+            int end = bits.nextClearBit(start) - 1;
+            if (sb.length() > 0) sb.append(',');
+            sb.append(start);
+            if (end > start) sb.append('-').append(end);
+            start = bits.nextSetBit(end + 1);
+        }
+        return sb.toString();
+    }
+}
@@ -1,250 +1,550 @@
 package com.joao.cyberaudit.service;
 
 import com.joao.cyberaudit.model.PortFinding;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.net.ssl.SSLSession;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.net.*;
-import java.nio.charset.StandardCharsets;
+import java.nio.channels.SocketChannel;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 @Service
 public class PortScanService {
 
-    private static final List<Integer> COMMON_PORTS = List.of(
-            21, 22, 23, 25, 53, 80, 110, 143, 443, 465, 587,
-            993, 995, 1433, 1521, 3306, 5432, 6379, 8080, 8443, 9200
-    );
+    // scan por host: connects simultâneos em andamento (a janela anda conforme cada porta termina)
+    private static final int MAX_IN_FLIGHT_PER_HOST = 16;
+    // perfis grandes (top1000/full) usam janela maior; o orçamento global fica no ProbeScheduler
+    private static final int MAX_IN_FLIGHT_LARGE = 64;
+    private static final int MAX_IN_FLIGHT_FULL = 256;
+
+    // timeout total do scan (não fica preso); perfis grandes escalam a partir daqui
+    private static final long SCAN_TIMEOUT_MS = 12_000;
+    private static final long MAX_SCAN_TIMEOUT_MS = 10 * 60_000;
+
+    private static final int EVIDENCE_THREADS = 32;
+
+    private static final long DNS_TIMEOUT_MS = 5_000;
+
+    // host com muitos A/AAAA: limite de endereços varridos
+    private static final int MAX_ADDRESSES = 8;
+
+    // happy eyeballs: porta usada para achar o endereço alcançável, e vantagem de cada tentativa
+    private static final int REACH_PORT = 443;
+    private static final long ATTEMPT_DELAY_MS = 250;
+    private static final int REACH_TIMEOUT_MS = 2_000;
+
+    private final ConnectEngine connectEngine;
+    private final ProbeScheduler probeScheduler;
+    private final HttpTransportService transport;
+    private final DnsResolverService dnsResolver;
+    private final ScanCacheService scanCacheService;
+    private final FingerprintService fingerprintService;
+    private final UdpScanService udpScanService;
+    private final ScanPacer pacer;
+
+    // resultado de port scan por IP + perfil (independe do hostname)
+    private static final class CachedPorts {
+        final List<PortFinding> findings;
+
+        CachedPorts(List<PortFinding> findings) {
+            this.findings = findings;
+        }
+    }
+
+    private final long portCacheTtlMs;
+    private final Map<String, CompletableFuture<List<PortFinding>>> inFlightScans = new ConcurrentHashMap<>();
+
+    // novas tentativas para portas em TIMEOUT (só quando o host já respondeu alguma porta)
+    private final int retries;
+
+    // banner/HEAD em portas abertas é I/O bloqueante curto: pool próprio, compartilhado entre scans
+    private final ThreadPoolExecutor evidencePool = newEvidencePool();
+
+    public PortScanService(
+            ConnectEngine connectEngine,
+            ProbeScheduler probeScheduler,
+            HttpTransportService transport,
+            DnsResolverService dnsResolver,
+            ScanCacheService scanCacheService,
+            FingerprintService fingerprintService,
+            UdpScanService udpScanService,
+            ScanPacer pacer,
+            @Value("${cyberaudit.portscan.retries:1}") int retries,
+            @Value("${cyberaudit.portscan.cache-ttl-seconds:600}") int cacheTtlSeconds
+    ) {
+        this.connectEngine = connectEngine;
+        this.probeScheduler = probeScheduler;
+        this.transport = transport;
+        this.dnsResolver = dnsResolver;
+        this.scanCacheService = scanCacheService;
+        this.fingerprintService = fingerprintService;
+        this.udpScanService = udpScanService;
+        this.pacer = pacer;
+        this.portCacheTtlMs = cacheTtlSeconds * 1000L;
+        this.retries = Math.max(0, Math.min(retries, 3));
+    }
+
+    private static ThreadPoolExecutor newEvidencePool() {
+        ThreadPoolExecutor p = new ThreadPoolExecutor(
+                EVIDENCE_THREADS, EVIDENCE_THREADS,
+                30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                ScanStageExecutor.daemonFactory("port-evidence-"));
+        p.allowCoreThreadTimeOut(true);
+        return p;
+    }
 
     public List<PortFinding> scanCommonPorts(String host) {
-        // 1) Resolve DNS 1x (fail-fast)
-        InetAddress addr;
+        return scanPorts(host, PortProfile.QUICK, false, f -> { });
+    }
+
+    /*
+     * onOpen é chamado para cada porta OPEN assim que ela termina (streaming).
+     * allAddresses=true varre todos os A/AAAA do host; senão só o endereço que responder primeiro (happy eyeballs).
+     */
+    public List<PortFinding> scanPorts(String host, PortProfile profile, boolean allAddresses, Consumer<PortFinding> onOpen) {
+        return scanPorts(host, profile, allAddresses, false, onOpen);
+    }
+
+    // udp=true: portas UDP conhecidas nos mesmos endereços, em paralelo com o TCP
+    public List<PortFinding> scanPorts(String host, PortProfile profile, boolean allAddresses, boolean udp,
+                                       Consumer<PortFinding> onOpen) {
+        // 1) Resolve DNS (cache compartilhado; fail-fast)
+        List<InetAddress> addresses;
         try {
-            addr = InetAddress.getByName(host);
+            addresses = dnsResolver.resolve(host, DNS_TIMEOUT_MS);
         } catch (Exception e) {
             return Collections.emptyList();
         }
+        if (addresses.isEmpty()) return Collections.emptyList();
 
-        // 2) Paralelismo controlado
-        int threads = 24;
-        ExecutorService pool = Executors.newFixedThreadPool(threads);
-
-        // limita conexões simultâneas “de verdade”
-        int maxConcurrentConnects = 12;
-        Semaphore sem = new Semaphore(maxConcurrentConnects);
+        String tenant = ProbeScheduler.currentTenant();
+        List<InetAddress> targets = allAddresses
+                ? addresses.subList(0, Math.min(MAX_ADDRESSES, addresses.size()))
+                : List.of(cachedOrReachable(addresses, profile, tenant));
 
-        // 3) Observa “saúde” do host para ajustar timeout
-        AtomicInteger timeoutCount = new AtomicInteger(0);
+        List<CompletableFuture<List<PortFinding>>> scans = new ArrayList<>(targets.size());
+        for (InetAddress addr : targets) {
+            scans.add(scanShared(addr, host, profile, tenant, onOpen));
+        }
+        if (udp) {
+            for (InetAddress addr : targets) {
+                scans.add(ProbeScheduler.callAs(tenant, () -> udpScanService.scanAsync(addr))
+                        .thenApply(findings -> {
+                            findings.forEach(onOpen);
+                            return findings;
+                        }));
+            }
+        }
 
-        try {
-            List<CompletableFuture<PortFinding>> futures = COMMON_PORTS.stream()
-                    .map(port -> CompletableFuture.supplyAsync(
-                            () -> scanOne(addr, host, port, sem, timeoutCount),
-                            pool
-                    ))
-                    .collect(Collectors.toList());
-
-            // 4) Timeout total do scan (não fica preso)
-            CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+        // se estourar tempo, seguimos com o que já terminou (deadline único para todos os endereços)
+        long deadline = System.currentTimeMillis() + budgetMs(profile, udp) + 1_000;
+        List<PortFinding> out = new ArrayList<>();
+        for (CompletableFuture<List<PortFinding>> scan : scans) {
             try {
-                all.get(12, TimeUnit.SECONDS);
+                // manter seu comportamento: mostrar só OPEN
+                out.addAll(scan.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
             } catch (Exception ignored) {
-                // se estourar tempo, seguimos com o que já terminou
+                // endereço sem resultado a tempo
             }
+        }
+        return out;
+    }
 
-            List<PortFinding> results = futures.stream()
-                    .map(f -> f.getNow(null))
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
+    /*
+     * Varre um IP já conhecido sem prender thread (network scan): completa quando todas as portas
+     * terminam ou no timeout do perfil, com o que já achou.
+     */
+    public CompletableFuture<List<PortFinding>> scanAddressAsync(InetAddress addr, PortProfile profile,
+                                                                 Consumer<PortFinding> onOpen) {
+        return scanShared(addr, addr.getHostAddress(), profile, ProbeScheduler.currentTenant(), onOpen);
+    }
 
-            // manter seu comportamento: mostrar só OPEN
-            return results.stream()
-                    .filter(r -> "OPEN".equals(r.getState()))
-                    .sorted(Comparator.comparingInt(PortFinding::getPort))
-                    .collect(Collectors.toList());
+    /*
+     * Resultado por IP + perfil: hostnames diferentes no mesmo IP (CDN, load balancer) reaproveitam
+     * o scan — do cache (TTL próprio) ou do scan em andamento (single-flight).
+     * Só scans completos vão pro cache; parcial por timeout não.
+     */
+    private CompletableFuture<List<PortFinding>> scanShared(InetAddress addr, String host, PortProfile profile,
+                                                            String tenant, Consumer<PortFinding> onOpen) {
+        String key = portCacheKey(addr, profile);
+
+        CachedPorts cached = scanCacheService.get(key, CachedPorts.class);
+        if (cached != null) {
+            cached.findings.forEach(onOpen);
+            return CompletableFuture.completedFuture(cached.findings);
+        }
 
-        } finally {
-            pool.shutdownNow();
+        CompletableFuture<List<PortFinding>> mine = new CompletableFuture<>();
+        CompletableFuture<List<PortFinding>> existing = inFlightScans.putIfAbsent(key, mine);
+        if (existing != null) {
+            // scan de outro hostname no mesmo IP: recebe os achados quando ele terminar
+            return existing.thenApply(findings -> {
+                findings.forEach(onOpen);
+                return findings;
+            });
         }
-    }
 
-    private PortFinding scanOne(
-            InetAddress addr,
-            String host,
-            int port,
-            Semaphore sem,
-            AtomicInteger timeoutCount
-    ) {
-        String guessedService = guessService(port);
+        HostScan scan = new HostScan(addr, host, profile, tenant, onOpen);
+        scan.start();
+        scan.done.completeOnTimeout(null, budgetMs(profile), TimeUnit.MILLISECONDS)
+                .whenComplete((v, err) -> {
+                    boolean complete = scan.remaining.getCount() == 0;
+                    scan.finished = true;
+                    List<PortFinding> findings = scan.openSorted();
+                    if (complete) scanCacheService.put(key, new CachedPorts(findings), portCacheTtlMs);
+                    inFlightScans.remove(key, mine);
+                    mine.complete(findings);
+                });
+        return mine;
+    }
 
-        int baseConnectTimeout = connectTimeoutFor(port);
-        int readTimeout = readTimeoutFor(port);
+    private String portCacheKey(InetAddress addr, PortProfile profile) {
+        return "ports:" + addr.getHostAddress() + ":" + profile.key();
+    }
 
-        // se o host está tendo muitos timeouts, dá uma folga no connect
-        int extra = timeoutCount.get() >= 4 ? 400 : 0;
-        int connectTimeout = baseConnectTimeout + extra;
+    // endereço com resultado em cache dispensa a corrida happy eyeballs
+    private InetAddress cachedOrReachable(List<InetAddress> candidates, PortProfile profile, String tenant) {
+        for (InetAddress a : candidates) {
+            if (scanCacheService.get(portCacheKey(a, profile), CachedPorts.class) != null) return a;
+        }
+        return pickReachable(candidates, tenant);
+    }
 
-        long start = System.currentTimeMillis();
+    /*
+     * Happy eyeballs (RFC 8305): tenta cada endereço com 250ms de vantagem sobre o próximo
+     * (falha rápida, ex.: rede v6 inalcançável, libera o próximo na hora).
+     * O primeiro que responde (SYN-ACK ou RST em REACH_PORT) é o alvo. Ninguém responde -> o 1º da ordem.
+     */
+    private InetAddress pickReachable(List<InetAddress> candidates, String tenant) {
+        if (candidates.size() == 1) return candidates.get(0);
 
-        boolean acquired = false;
+        CompletableFuture<InetAddress> winner = new CompletableFuture<>();
         try {
-            // throttle real
-            acquired = sem.tryAcquire(1, TimeUnit.SECONDS);
-            if (!acquired) {
-                long latency = System.currentTimeMillis() - start;
-                return new PortFinding(
-                        "Concorrência alta durante o scan.",
-                        "Tente novamente com menos paralelismo.",
-                        port, guessedService, "FILTERED", "INFO",
-                        Long.valueOf(latency),
-                        "Throttle: sem vaga no semáforo"
-                );
+            for (InetAddress a : candidates.subList(0, Math.min(MAX_ADDRESSES, candidates.size()))) {
+                if (winner.isDone()) break;
+                CompletableFuture<Void> attempt = new CompletableFuture<>();
+                probeScheduler.acquire(tenant, () -> {
+                    if (winner.isDone()) return false;
+                    connectEngine.connect(new InetSocketAddress(a, REACH_PORT), REACH_TIMEOUT_MS,
+                            (outcome, channel, latencyMs, error) -> {
+                                ConnectEngine.closeQuietly(channel);
+                                probeScheduler.release(tenant);
+                                if (outcome == ConnectEngine.OPEN || outcome == ConnectEngine.CLOSED) winner.complete(a);
+                                attempt.complete(null);
+                            });
+                    return true;
+                });
+                try {
+                    CompletableFuture.anyOf(winner, attempt).get(ATTEMPT_DELAY_MS, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // próximo endereço entra na corrida
+                }
+                if (winner.isDone()) return winner.join();
             }
+            return winner.get(REACH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return candidates.get(0);
+        } catch (Exception e) {
+            return candidates.get(0);
+        }
+    }
+
+    // tempo máximo de um scan do perfil (o pipeline estende o deadline a partir disso)
+    public long budgetMs(PortProfile profile) {
+        int window = windowFor(profile);
+        long rounds = (profile.size() + window - 1) / window;
+        // com cadência, o perfil inteiro não sai mais rápido que a taxa por IP permite
+        long paced = pacer.minDurationMs(profile.size()) + 2_000;
+        return Math.min(MAX_SCAN_TIMEOUT_MS, Math.max(SCAN_TIMEOUT_MS, Math.max(rounds * 1_200, paced)));
+    }
+
+    // UDP roda em paralelo: vale o maior dos dois
+    public long budgetMs(PortProfile profile, boolean udp) {
+        return udp ? Math.max(budgetMs(profile), udpScanService.budgetMs()) : budgetMs(profile);
+    }
 
-            try (Socket socket = new Socket()) {
-                socket.connect(new InetSocketAddress(addr, port), connectTimeout);
-                long latency = System.currentTimeMillis() - start;
-                socket.setSoTimeout(readTimeout);
+    private int windowFor(PortProfile profile) {
+        int size = profile.size();
+        if (size <= 100) return Math.min(MAX_IN_FLIGHT_PER_HOST, size);
+        if (size <= 2_000) return MAX_IN_FLIGHT_LARGE;
+        return MAX_IN_FLIGHT_FULL;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        evidencePool.shutdownNow();
+    }
 
-                String evidence = probeEvidence(host, port, socket);
-                String severity = classifySeverity(port, guessedService);
+    /*
+     * Estado de 1 scan de host: os connects rodam no ConnectEngine (sem thread por porta),
+     * só as portas abertas passam pelo pool de evidência.
+     * Cada connect (e o banner em seguida) ocupa 1 vaga do ProbeScheduler, pedida em nome do cliente.
+     * Portas vêm do bitset do perfil e os abertos ficam em arrays primitivos:
+     * um scan full (65k portas) não cria 1 objeto de resultado por porta.
+     * O timeout de connect acompanha o RTT medido do host (SYN-ACK/RST das portas que respondem):
+     * host rápido com firewall descartando pacotes não paga 1.2s por porta filtrada.
+     */
+    private final class HostScan implements ProbeScheduler.Grantee {
+
+        final InetAddress addr;
+        final String host;
+        final PortProfile profile;
+        final String tenant;
+        final Consumer<PortFinding> onOpen;
+
+        final CountDownLatch remaining;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        // próxima porta a tentar (guardado por this)
+        int nextFrom = 0;
+
+        // portas em TIMEOUT aguardando nova tentativa: (tentativa << 16) | porta (guardado por this)
+        int[] retryQueue = new int[16];
+        int retryHead = 0;
+        int retryCount = 0;
+
+        // portas abertas (guardado por this)
+        int openCount = 0;
+        int[] openPorts = new int[8];
+        long[] openLatency = new long[8];
+        FingerprintService.Result[] openFingerprint = new FingerprintService.Result[8];
+
+        // RTT do host: define o timeout dos próximos connects
+        final RttEstimator rtt = new RttEstimator();
+
+        // depois do timeout total não repassa mais achados
+        volatile boolean finished;
+
+        HostScan(InetAddress addr, String host, PortProfile profile, String tenant, Consumer<PortFinding> onOpen) {
+            this.addr = addr;
+            this.host = host;
+            this.profile = profile;
+            this.tenant = tenant;
+            this.onOpen = onOpen;
+            this.remaining = new CountDownLatch(profile.size());
+        }
 
-                String impact = impactFor(port, guessedService);
-                String recommendation = recommendationFor(port, guessedService);
+        void start() {
+            int window = windowFor(profile);
+            for (int i = 0; i < window; i++) requestNext();
+        }
 
-                return new PortFinding(
-                        impact, recommendation,
-                        port, guessedService, "OPEN", severity,
-                        Long.valueOf(latency),
-                        evidence
-                );
+        private void portDone() {
+            remaining.countDown();
+            if (remaining.getCount() == 0) done.complete(null);
+        }
+
+        List<PortFinding> openSorted() {
+            int n;
+            int[] ports;
+            long[] latency;
+            FingerprintService.Result[] fingerprint;
+            synchronized (this) {
+                n = openCount;
+                ports = Arrays.copyOf(openPorts, n);
+                latency = Arrays.copyOf(openLatency, n);
+                fingerprint = Arrays.copyOf(openFingerprint, n);
             }
 
-        } catch (ConnectException ce) {
-            long latency = System.currentTimeMillis() - start;
-            return new PortFinding(
-                    "N/A", "N/A",
-                    port, guessedService, "CLOSED", "INFO",
-                    Long.valueOf(latency),
-                    null
-            );
-
-        } catch (SocketTimeoutException te) {
-            timeoutCount.incrementAndGet();
-            long latency = System.currentTimeMillis() - start;
-            return new PortFinding(
-                    "Sem resposta no timeout (pode ser firewall/CDN/edge).",
-                    "Se for serviço esperado, liberar/ajustar regras; se não, manter bloqueado.",
-                    port, guessedService, "FILTERED", "INFO",
-                    Long.valueOf(latency),
-                    "Sem resposta no timeout (pode ser firewall/CDN/edge)"
-            );
+            // ordena índices pela porta (só abertas, poucas)
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) order[i] = i;
+            Arrays.sort(order, Comparator.comparingInt(i -> ports[i]));
 
-        } catch (Exception e) {
-            long latency = System.currentTimeMillis() - start;
-            return new PortFinding(
-                    "Falha ao testar a porta (erro inesperado).",
-                    "Verifique DNS/conectividade e tente novamente.",
-                    port, guessedService, "FILTERED", "INFO",
-                    Long.valueOf(latency),
-                    "Erro: " + e.getClass().getSimpleName()
-            );
-
-        } finally {
-            if (acquired) sem.release();
+            List<PortFinding> out = new ArrayList<>(n);
+            for (int i : order) out.add(openFinding(addr, ports[i], latency[i], fingerprint[i]));
+            return out;
         }
-    }
 
-    private String probeEvidence(String host, int port, Socket socket) {
-        try {
-            if (port == 80 || port == 8080 || port == 8000) {
-                return httpHeadEvidence(host, port, false);
+        private synchronized boolean hasMorePorts() {
+            return profile.nextPort(nextFrom) >= 0 || retryCount > 0;
+        }
+
+        // próxima tentativa empacotada (tentativa << 16 | porta): portas novas primeiro, depois retries
+        private synchronized int takeNext() {
+            int port = profile.nextPort(nextFrom);
+            if (port >= 0) {
+                nextFrom = port + 1;
+                return port;
             }
-            if (port == 443 || port == 8443) {
-                return httpHeadEvidence(host, port, true);
+            if (retryCount == 0) return -1;
+            int packed = retryQueue[retryHead];
+            retryHead = (retryHead + 1) % retryQueue.length;
+            retryCount--;
+            return packed;
+        }
+
+        private synchronized void enqueueRetry(int port, int attempt) {
+            if (retryCount == retryQueue.length) {
+                int[] grown = new int[retryQueue.length * 2];
+                for (int i = 0; i < retryCount; i++) grown[i] = retryQueue[(retryHead + i) % retryQueue.length];
+                retryQueue = grown;
+                retryHead = 0;
             }
+            retryQueue[(retryHead + retryCount) % retryQueue.length] = (attempt << 16) | port;
+            retryCount++;
+        }
 
-            if (port == 21 || port == 25 || port == 110 || port == 143 || port == 587) {
-                BufferedReader br = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
-                String line = br.readLine();
-                if (line != null && !line.isBlank()) return "Banner: " + trim(line, 140);
+        // pede vaga para a próxima porta (sem porta pendente ou scan encerrado, não pede).
+        // Acima da taxa do IP ou da /24 o pedido é adiado pelo pacer — nunca vira FILTERED
+        private void requestNext() {
+            if (!finished && hasMorePorts()) {
+                pacer.submit(addr, () -> probeScheduler.acquire(tenant, this));
             }
+        }
 
-            return null;
-        } catch (Exception ignored) {
-            return null;
+        // vaga concedida: dispara o próximo connect; false devolve a vaga
+        @Override
+        public boolean granted() {
+            if (finished) return false;
+            int packed = takeNext();
+            if (packed < 0) return false;
+
+            int port = packed & 0xFFFF;
+            int attempt = packed >>> 16;
+            int connectTimeout = rtt.timeoutMs(connectTimeoutFor(port), attempt);
+
+            connectEngine.connect(new InetSocketAddress(addr, port), connectTimeout,
+                    (outcome, channel, latencyMs, error) -> onConnect(port, attempt, outcome, channel, latencyMs));
+            return true;
         }
-    }
 
-    private String httpHeadEvidence(String host, int port, boolean tls) {
-        try {
-            if (!tls) {
-                try (Socket s = new Socket()) {
-                    s.connect(new InetSocketAddress(host, port), 1200);
-                    s.setSoTimeout(1200);
-
-                    OutputStream os = s.getOutputStream();
-                    os.write(("HEAD / HTTP/1.1\r\nHost: " + host + "\r\nConnection: close\r\n\r\n")
-                            .getBytes(StandardCharsets.UTF_8));
-                    os.flush();
-
-                    BufferedReader br = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
-                    String line;
-                    String server = null;
-                    String status = null;
-                    while ((line = br.readLine()) != null) {
-                        if (status == null && line.startsWith("HTTP/")) status = line;
-                        if (line.toLowerCase().startsWith("server:")) server = line;
-                        if (line.isBlank()) break;
-                    }
-                    if (status != null || server != null) {
-                        return (status != null ? trim(status, 80) : "") +
-                                (server != null ? " | " + trim(server, 120) : "");
+        // roda na thread do selector: não bloqueia
+        private void onConnect(int port, int attempt, int outcome, SocketChannel channel, long latencyMs) {
+            // Karn: só a 1ª tentativa vira amostra (resposta de retry é ambígua)
+            boolean answered = outcome == ConnectEngine.OPEN || outcome == ConnectEngine.CLOSED;
+            if (attempt == 0 && answered) {
+                rtt.sample(latencyMs);
+            }
+            // retry que respondeu = o 1º SYN se perdeu: sinal de congestionamento para o pacer
+            pacer.feedback(addr, outcome == ConnectEngine.TIMEOUT, attempt > 0 && answered);
+
+            if (outcome == ConnectEngine.OPEN) {
+                if (finished) {
+                    ConnectEngine.closeQuietly(channel);
+                } else {
+                    try {
+                        // a vaga segue com o canal até o fim da evidência
+                        evidencePool.execute(() -> collectEvidence(port, channel, latencyMs));
+                        return;
+                    } catch (RejectedExecutionException e) {
+                        ConnectEngine.closeQuietly(channel);
+                        record(port, latencyMs, null);
                     }
                 }
-                return null;
+            } else if (outcome == ConnectEngine.TIMEOUT && attempt < retries && rtt.learned() && !finished) {
+                // host responde, então o timeout pode ter sido perda: tenta de novo com RTO dobrado
+                enqueueRetry(port, attempt + 1);
+            } else {
+                portDone();
             }
 
-            SSLSocketFactory factory = (SSLSocketFactory) SSLSocketFactory.getDefault();
-            try (SSLSocket ssl = (SSLSocket) factory.createSocket()) {
-                ssl.connect(new InetSocketAddress(host, port), 1500);
-                ssl.setSoTimeout(1500);
-                ssl.startHandshake();
-
-                OutputStream os = ssl.getOutputStream();
-                os.write(("HEAD / HTTP/1.1\r\nHost: " + host + "\r\nConnection: close\r\n\r\n")
-                        .getBytes(StandardCharsets.UTF_8));
-                os.flush();
-
-                BufferedReader br = new BufferedReader(new InputStreamReader(ssl.getInputStream(), StandardCharsets.UTF_8));
-                String line;
-                String server = null;
-                String status = null;
-                while ((line = br.readLine()) != null) {
-                    if (status == null && line.startsWith("HTTP/")) status = line;
-                    if (line.toLowerCase().startsWith("server:")) server = line;
-                    if (line.isBlank()) break;
+            probeScheduler.release(tenant);
+            requestNext();
+        }
+
+        private void collectEvidence(int port, SocketChannel channel, long latencyMs) {
+            FingerprintService.Result evidence = null;
+            try (channel) {
+                if (!finished) {
+                    channel.configureBlocking(true);
+                    Socket socket = channel.socket();
+                    socket.setSoTimeout(readTimeoutFor(port));
+                    evidence = probeEvidence(host, port, socket);
                 }
-                if (status != null || server != null) {
-                    return (status != null ? trim(status, 80) : "") +
-                            (server != null ? " | " + trim(server, 120) : "");
+            } catch (Exception ignored) {
+                // evidência é best-effort
+            }
+            record(port, latencyMs, evidence);
+
+            probeScheduler.release(tenant);
+            requestNext();
+        }
+
+        private void record(int port, long latencyMs, FingerprintService.Result evidence) {
+            if (!finished) {
+                synchronized (this) {
+                    if (openCount == openPorts.length) {
+                        int grown = openCount * 2;
+                        openPorts = Arrays.copyOf(openPorts, grown);
+                        openLatency = Arrays.copyOf(openLatency, grown);
+                        openFingerprint = Arrays.copyOf(openFingerprint, grown);
+                    }
+                    openPorts[openCount] = port;
+                    openLatency[openCount] = latencyMs;
+                    openFingerprint[openCount] = evidence;
+                    openCount++;
                 }
+                onOpen.accept(openFinding(addr, port, latencyMs, evidence));
+            }
+            portDone();
+        }
+    }
+
+    private PortFinding openFinding(InetAddress addr, int port, long latencyMs, FingerprintService.Result fp) {
+        // serviço identificado pela resposta vale mais que o palpite pela porta (inclusive para severidade/textos)
+        boolean identified = fp != null && fp.getService() != null;
+        String service = identified ? fp.getService() : guessService(port);
+        int profilePort = identified ? portForService(service, port) : port;
+        return new PortFinding(
+                impactFor(profilePort, service), recommendationFor(profilePort, service),
+                port, service, "OPEN", classifySeverity(profilePort, service),
+                Long.valueOf(latencyMs),
+                fp != null ? fp.getEvidence() : null,
+                addr.getHostAddress(),
+                fp != null ? fp.getProduct() : null,
+                fp != null ? fp.getVersion() : null,
+                "tcp"
+        );
+    }
+
+    // identificação pelo FingerprintService no socket já conectado (sem 2º connect nem novo DNS)
+    private FingerprintService.Result probeEvidence(String host, int port, Socket socket) {
+        try {
+            if (port == 443 || port == 8443) {
+                return tlsFingerprint(host, port, socket);
             }
+            return fingerprintService.identify(socket, host, port);
+        } catch (Exception ignored) {
             return null;
+        }
+    }
 
+    // TLS em cima do socket já conectado; SSLContext compartilhado (retoma sessão do fetch, se houver)
+    private FingerprintService.Result tlsFingerprint(String host, int port, Socket socket) {
+        SSLSocket ssl;
+        try {
+            SSLSocketFactory factory = transport.sslContext().getSocketFactory();
+            ssl = (SSLSocket) factory.createSocket(socket, host, port, true);
+            ssl.setSoTimeout(socket.getSoTimeout());
+            ssl.startHandshake();
         } catch (Exception e) {
-            return null;
+            String reason = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            return FingerprintService.Result.evidenceOnly("TLS handshake falhou: " + trim(reason, 120));
+        }
+
+        SSLSession session = ssl.getSession();
+        String tls = "TLS: " + session.getProtocol() + " " + session.getCipherSuite();
+        try (ssl) {
+            FingerprintService.Result r = fingerprintService.identify(ssl, host, port);
+            return r != null ? r.appendEvidence(tls) : FingerprintService.Result.evidenceOnly(tls);
+        } catch (Exception e) {
+            return FingerprintService.Result.evidenceOnly(tls);
         }
     }
 
-    private String guessService(int port) {
+    static String guessService(int port) {
         return switch (port) {
             case 21 -> "FTP";
             case 22 -> "SSH";
@@ -267,13 +567,47 @@ public class PortScanService {
             case 8080 -> "HTTP Alt";
             case 8443 -> "HTTPS Alt";
             case 9200 -> "Elasticsearch";
+            case 27017 -> "MongoDB";
+            case 11211 -> "Memcached";
+            case 3389 -> "RDP";
+            case 445 -> "SMB";
+            case 139 -> "NetBIOS";
+            case 5900 -> "VNC";
+            case 2375 -> "Docker API";
+            case 8000 -> "HTTP Alt";
             default -> "Unknown";
         };
     }
 
+    // porta padrão do serviço identificado: severidade e textos são por porta (ex.: Redis na 8080 conta como 6379)
+    // o ScoreService usa a mesma conta; para o palpite por porta (guessService) devolve a própria porta
+    static int portForService(String service, int port) {
+        if (service == null) return port;
+        String s = service.toUpperCase(Locale.ROOT);
+        // HTTP em porta web (inclusive 443/8443 via TLS) mantém a porta: HTTP x HTTPS muda a severidade
+        if (s.equals("HTTP") && guessService(port).startsWith("HTTP")) return port;
+        return switch (s) {
+            case "FTP" -> 21;
+            case "SSH" -> 22;
+            case "TELNET" -> 23;
+            case "SMTP" -> 25;
+            case "HTTP" -> 80;
+            case "POP3" -> 110;
+            case "IMAP" -> 143;
+            case "MYSQL" -> 3306;
+            case "POSTGRESQL" -> 5432;
+            case "VNC" -> 5900;
+            case "REDIS" -> 6379;
+            case "ELASTICSEARCH" -> 9200;
+            case "MEMCACHED" -> 11211;
+            default -> port;
+        };
+    }
+
     private String classifySeverity(int port, String service) {
         if (port == 21 || port == 23) return "HIGH";
         if (port == 1433 || port == 1521 || port == 3306 || port == 5432 || port == 6379 || port == 9200) return "HIGH";
+        if (port == 27017 || port == 11211 || port == 2375) return "HIGH";
         if (port == 22) return "MEDIUM";
         if (port == 80 || port == 8080) return "LOW";
         if (port == 443 || port == 8443) return "INFO";
@@ -281,7 +615,7 @@ public class PortScanService {
     }
 
     private int connectTimeoutFor(int port) {
-        if (port == 1433 || port == 1521 || port == 3306 || port == 5432 || port == 6379 || port == 9200) return 1800;
+        if (port == 1433 || port == 1521 || port == 3306 || port == 5432 || port == 6379 || port == 9200 || port == 27017) return 1800;
         if (port == 443 || port == 8443) return 1600;
         return 1200;
     }
@@ -301,7 +635,7 @@ public class PortScanService {
     private String impactFor(int port, String service) {
         if (port == 21) return "FTP exposto pode permitir vazamento de arquivos e credenciais (protocolo inseguro).";
         if (port == 23) return "Telnet exposto transmite credenciais em texto plano e facilita acesso indevido.";
-        if (port == 1433 || port == 1521 || port == 3306 || port == 5432)
+        if (port == 1433 || port == 1521 || port == 3306 || port == 5432 || port == 27017)
             return "Banco de dados exposto pode permitir acesso não autorizado, enumeração e vazamento de dados.";
         if (port == 6379) return "Redis exposto frequentemente permite leitura/escrita de dados e execução de comandos.";
         if (port == 9200) return "Elasticsearch exposto pode permitir leitura/alteração de índices e vazamento de dados.";
@@ -314,7 +648,7 @@ public class PortScanService {
     private String recommendationFor(int port, String service) {
         if (port == 21) return "Evite FTP: use SFTP/FTPS; restrinja por firewall/VPN e desabilite se não for necessário.";
         if (port == 23) return "Desabilite Telnet e use SSH; bloqueie a porta no firewall.";
-        if (port == 1433 || port == 1521 || port == 3306 || port == 5432)
+        if (port == 1433 || port == 1521 || port == 3306 || port == 5432 || port == 27017)
             return "Não exponha DB na internet: restrinja por firewall, permita apenas IPs internos/VPN e habilite autenticação forte.";
         if (port == 6379) return "Restrinja Redis a rede interna, exija auth/ACL e bloqueie acesso público.";
         if (port == 9200) return "Restrinja Elasticsearch, exija autenticação, e bloqueie acesso público; coloque atrás de VPN/rede interna.";
@@ -0,0 +1,351 @@
+package com.joao.cyberaudit.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+/*
+ * Agendador de probes de saída do nó inteiro (connects de porta, banner, requests HTTP).
+ * Orçamento global de conexões simultâneas + fila justa ponderada por cliente (deficit round robin):
+ * um cliente com muitos scans ativos não consegue esfomear os outros.
+ */
+@Service
+public class ProbeScheduler {
+
+    public static final String DEFAULT_TENANT = "anonymous";
+    public static final String API_KEY_PREFIX = "key:";
+    public static final String IP_PREFIX = "ip:";
+
+    // cliente do scan atual (propagado pelos stages do pipeline)
+    private static final ThreadLocal<String> CURRENT_TENANT = new ThreadLocal<>();
+
+    /*
+     * Quem espera por uma vaga. granted() roda fora do lock e não pode bloquear;
+     * retornar false devolve a vaga (ex.: o scan já terminou).
+     */
+    @FunctionalInterface
+    public interface Grantee {
+        boolean granted();
+    }
+
+    private static final class TenantQueue {
+        final String tenant;
+        final int weight;
+        final ArrayDeque<Grantee> waiting = new ArrayDeque<>();
+        long[] enqueuedAt = new long[16]; // ring paralelo à fila (sem objeto por entrada)
+        int head;
+
+        int deficit;
+        boolean inRing;
+
+        int inFlight;
+        long granted;
+        long totalWaitMs;
+        long maxWaitMs;
+
+        TenantQueue(String tenant, int weight) {
+            this.tenant = tenant;
+            this.weight = weight;
+        }
+
+        void push(Grantee g, long now) {
+            int size = waiting.size();
+            if (size == enqueuedAt.length) {
+                long[] grown = new long[size * 2];
+                for (int i = 0; i < size; i++) grown[i] = enqueuedAt[(head + i) % size];
+                enqueuedAt = grown;
+                head = 0;
+            }
+            enqueuedAt[(head + size) % enqueuedAt.length] = now;
+            waiting.addLast(g);
+        }
+
+        Grantee pop(long now) {
+            long waitMs = now - enqueuedAt[head];
+            head = (head + 1) % enqueuedAt.length;
+            granted++;
+            totalWaitMs += waitMs;
+            if (waitMs > maxWaitMs) maxWaitMs = waitMs;
+            return waiting.pollFirst();
+        }
+
+        // remove do meio da fila mantendo o ring de horários alinhado
+        boolean remove(Grantee g) {
+            int size = waiting.size();
+            int i = 0;
+            for (Iterator<Grantee> it = waiting.iterator(); it.hasNext(); i++) {
+                if (it.next() != g) continue;
+                it.remove();
+                for (int j = i; j < size - 1; j++) {
+                    enqueuedAt[(head + j) % enqueuedAt.length] = enqueuedAt[(head + j + 1) % enqueuedAt.length];
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private final int maxConcurrent;
+    private final Map<String, Integer> weights;
+
+    private final Object lock = new Object();
+    private final Map<String, TenantQueue> tenants = new HashMap<>();
+    private final ArrayDeque<TenantQueue> ring = new ArrayDeque<>();
+    private int inUse;
+    private int queued;
+
+    public ProbeScheduler(
+            @Value("${cyberaudit.scheduler.max-concurrent:512}") int maxConcurrent,
+            @Value("${cyberaudit.scheduler.weights:}") String weights
+    ) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.weights = parseWeights(weights);
+    }
+
+    // ===== contexto do cliente =====
+
+    public static String currentTenant() {
+        String t = CURRENT_TENANT.get();
+        return t != null ? t : DEFAULT_TENANT;
+    }
+
+    public static <T> T callAs(String tenant, Supplier<T> body) {
+        String previous = CURRENT_TENANT.get();
+        CURRENT_TENANT.set(tenant);
+        try {
+            return body.get();
+        } finally {
+            if (previous == null) CURRENT_TENANT.remove();
+            else CURRENT_TENANT.set(previous);
+        }
+    }
+
+    /*
+     * Cliente para a fila justa. A API key não é autenticada: só vale se estiver em cyberaudit.scheduler.weights,
+     * senão qualquer um ganharia uma fila nova por request (ou o peso de outro) trocando a chave.
+     */
+    public String tenantFor(String apiKey, String remoteAddr) {
+        if (apiKey != null && !apiKey.isBlank()) {
+            String tenant = API_KEY_PREFIX + apiKey.trim();
+            if (weights.containsKey(tenant)) return tenant;
+        }
+        return IP_PREFIX + remoteAddr;
+    }
+
+    // ===== vagas =====
+
+    // Pede 1 vaga; granted() é chamado quando ela sair (pode ser na hora, na thread atual)
+    public void acquire(String tenant, Grantee grantee) {
+        synchronized (lock) {
+            if (inUse < maxConcurrent && queued == 0) {
+                inUse++;
+                TenantQueue q = queue(tenant);
+                q.inFlight++;
+                q.granted++;
+            } else {
+                TenantQueue q = queue(tenant);
+                q.push(grantee, System.currentTimeMillis());
+                queued++;
+                if (!q.inRing) {
+                    q.inRing = true;
+                    ring.addLast(q);
+                }
+                return;
+            }
+        }
+        if (!grantee.granted()) release(tenant);
+    }
+
+    // Versão bloqueante (requests HTTP); respeita interrupção (deadline do scan)
+    public void acquireBlocking(String tenant) throws InterruptedException {
+        BlockingGrantee g = new BlockingGrantee();
+        acquire(tenant, g);
+        try {
+            g.latch.await();
+        } catch (InterruptedException e) {
+            if (g.cancel()) withdraw(tenant, g); // ainda na fila: sai dela
+            else release(tenant); // vaga já tinha saído: devolve
+            throw e;
+        }
+    }
+
+    public void release(String tenant) {
+        Grantee next;
+        String nextTenant;
+        while (true) {
+            synchronized (lock) {
+                TenantQueue owner = tenants.get(tenant);
+                if (owner != null) {
+                    owner.inFlight--;
+                    cleanup(owner);
+                }
+                inUse--;
+
+                TenantQueue q = pickNext();
+                if (q == null) return;
+
+                next = q.pop(System.currentTimeMillis());
+                queued--;
+                q.inFlight++;
+                inUse++;
+                nextTenant = q.tenant;
+                if (q.waiting.isEmpty()) {
+                    q.inRing = false;
+                    q.deficit = 0;
+                    ring.remove(q);
+                }
+            }
+            // vaga recusada vira um novo release (iterativo, sem recursão)
+            if (next.granted()) return;
+            tenant = nextTenant;
+        }
+    }
+
+    // Tira da fila quem desistiu antes da vaga sair (se já saiu, o granted() recusado devolve a vaga)
+    private void withdraw(String tenant, Grantee grantee) {
+        synchronized (lock) {
+            TenantQueue q = tenants.get(tenant);
+            if (q == null || !q.remove(grantee)) return;
+            queued--;
+            if (q.waiting.isEmpty()) {
+                q.inRing = false;
+                q.deficit = 0;
+                ring.remove(q);
+            }
+            cleanup(q);
+        }
+    }
+
+    // Deficit round robin: cada cliente ganha "weight" vagas por rodada
+    private TenantQueue pickNext() {
+        while (!ring.isEmpty()) {
+            TenantQueue q = ring.peekFirst();
+            if (q.waiting.isEmpty()) {
+                ring.pollFirst();
+                q.inRing = false;
+                q.deficit = 0;
+                continue;
+            }
+            if (q.deficit <= 0) {
+                q.deficit += q.weight;
+            }
+            q.deficit--;
+            if (q.deficit <= 0) {
+                ring.pollFirst();
+                ring.addLast(q);
+            }
+            return q;
+        }
+        return null;
+    }
+
+    private TenantQueue queue(String tenant) {
+        return tenants.computeIfAbsent(tenant, t -> new TenantQueue(t, weights.getOrDefault(t, 1)));
+    }
+
+    // cliente sem nada na fila e nada em andamento sai do mapa (só guarda ativos)
+    private void cleanup(TenantQueue q) {
+        if (q.inFlight <= 0 && q.waiting.isEmpty() && !q.inRing) {
+            tenants.remove(q.tenant);
+        }
+    }
+
+    // ===== métricas =====
+
+    public Map<String, Object> stats() {
+        synchronized (lock) {
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("maxConcurrent", maxConcurrent);
+            out.put("inUse", inUse);
+            out.put("queueDepth", queued);
+
+            // API keys (configuradas) uma a uma, mascaradas; clientes por IP só somados (endpoint é público)
+            long now = System.currentTimeMillis();
+            List<Map<String, Object>> perTenant = new ArrayList<>();
+            int ipClients = 0, ipQueued = 0, ipInFlight = 0;
+            long ipOldest = 0, ipGranted = 0, ipTotalWait = 0, ipMaxWait = 0;
+            for (TenantQueue q : tenants.values()) {
+                long oldest = q.waiting.isEmpty() ? 0 : now - q.enqueuedAt[q.head];
+                if (!q.tenant.startsWith(API_KEY_PREFIX)) {
+                    ipClients++;
+                    ipQueued += q.waiting.size();
+                    ipInFlight += q.inFlight;
+                    ipOldest = Math.max(ipOldest, oldest);
+                    ipGranted += q.granted;
+                    ipTotalWait += q.totalWaitMs;
+                    ipMaxWait = Math.max(ipMaxWait, q.maxWaitMs);
+                    continue;
+                }
+                Map<String, Object> t = new LinkedHashMap<>();
+                t.put("tenant", masked(q.tenant));
+                t.put("weight", q.weight);
+                t.put("queued", q.waiting.size());
+                t.put("inFlight", q.inFlight);
+                t.put("oldestWaitMs", oldest);
+                t.put("avgWaitMs", q.granted == 0 ? 0 : q.totalWaitMs / q.granted);
+                t.put("maxWaitMs", q.maxWaitMs);
+                perTenant.add(t);
+            }
+            out.put("tenants", perTenant);
+
+            Map<String, Object> ip = new LinkedHashMap<>();
+            ip.put("clients", ipClients);
+            ip.put("queued", ipQueued);
+            ip.put("inFlight", ipInFlight);
+            ip.put("oldestWaitMs", ipOldest);
+            ip.put("avgWaitMs", ipGranted == 0 ? 0 : ipTotalWait / ipGranted);
+            ip.put("maxWaitMs", ipMaxWait);
+            out.put("ipClients", ip);
+            return out;
+        }
+    }
+
+    // API key nunca aparece inteira nas métricas
+    private static String masked(String tenant) {
+        if (!tenant.startsWith(API_KEY_PREFIX)) return tenant;
+        String key = tenant.substring(API_KEY_PREFIX.length());
+        return API_KEY_PREFIX + (key.length() <= 4 ? "****" : key.substring(0, 4) + "****");
+    }
+
+    private static Map<String, Integer> parseWeights(String raw) {
+        // formato: "chaveA=4,chaveB=2" (API keys) ou "ip:10.0.0.5=2"
+        Map<String, Integer> out = new HashMap<>();
+        if (raw == null || raw.isBlank()) return out;
+        for (String part : raw.split(",")) {
+            String[] kv = part.trim().split("=", 2);
+            if (kv.length != 2) continue;
+            try {
+                String tenant = kv[0].trim();
+                if (!tenant.startsWith(IP_PREFIX)) tenant = API_KEY_PREFIX + tenant;
+                out.put(tenant, Math.max(1, Integer.parseInt(kv[1].trim())));
+            } catch (NumberFormatException ignored) {
+                // peso inválido: ignora a entrada
+            }
+        }
+        return out;
+    }
+
+    private static final class BlockingGrantee implements Grantee {
+        final CountDownLatch latch = new CountDownLatch(1);
+        private boolean cancelled;
+        private boolean done;
+
+        @Override
+        public synchronized boolean granted() {
+            if (cancelled) return false;
+            done = true;
+            latch.countDown();
+            return true;
+        }
+
+        // true se cancelou antes da vaga sair
+        synchronized boolean cancel() {
+            if (done) return false;
+            cancelled = true;
+            return true;
+        }
+    }
+}
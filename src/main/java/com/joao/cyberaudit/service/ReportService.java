@@ -1,8 +1,14 @@
 package com.joao.cyberaudit.service;
 
 import com.joao.cyberaudit.model.PortFinding;
+import com.joao.cyberaudit.model.RedirectHop;
+import com.joao.cyberaudit.model.ResponseDiff;
 import com.joao.cyberaudit.model.ScanResult;
 import com.joao.cyberaudit.model.SecurityIssue;
+import com.joao.cyberaudit.model.SignatureMatch;
+import com.joao.cyberaudit.model.TlsProtocolSupport;
+import com.joao.cyberaudit.model.TlsReport;
+import com.joao.cyberaudit.model.XssReflection;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -22,6 +28,7 @@ public class ReportService {
         report.append("URL analyzed: ").append(r.getUrl()).append("\n");
         report.append("Final URL: ").append(r.getFinalUrl()).append("\n");
         report.append("HTTP Status: ").append(r.getHttpStatus()).append("\n");
+        if (r.isPartial()) report.append("Partial: true (scan deadline reached; results may be incomplete)\n");
         report.append("Score: ")
                 .append(r.getScore().getScore())
                 .append("/100 (")
@@ -34,15 +41,76 @@ public class ReportService {
         report.append("Certificate valid: ").append(r.getSslInfo().isValid()).append("\n");
         report.append("Expiration: ").append(r.getSslInfo().getExpirationDate()).append("\n");
         report.append("Days remaining: ").append(r.getSslInfo().getDaysRemaining()).append("\n");
-        report.append("Forces HTTPS redirect: ").append(r.isRedirectsToHttps()).append("\n\n");
+        report.append("TLS protocol: ").append(r.getSslInfo().getProtocol()).append("\n");
+        report.append("Cipher suite: ").append(r.getSslInfo().getCipherSuite()).append("\n");
+        report.append("Forces HTTPS redirect: ").append(r.isRedirectsToHttps()).append("\n");
+        if (r.getRedirectChain() != null && r.getRedirectChain().size() > 1) {
+            report.append("Redirect chain:\n");
+            for (RedirectHop hop : r.getRedirectChain()) {
+                report.append("  ").append(hop.getStatusCode()).append(" ").append(hop.getUrl());
+                if (hop.getLocation() != null) report.append(" -> ").append(hop.getLocation());
+                report.append("\n");
+            }
+        }
+        report.append("\n");
+
+        // ===== TLS CONFIGURATION (modo ativo) =====
+        TlsReport tls = r.getTlsReport();
+        if (tls != null) {
+            report.append("== TLS Configuration ==\n");
+            report.append("Address: ").append(tls.getAddress()).append(" (SNI ").append(tls.getServerName()).append(")\n");
+            if (tls.getError() != null) report.append("Error: ").append(tls.getError()).append("\n");
+            for (TlsProtocolSupport p : tls.getProtocols()) {
+                report.append(p.getProtocol()).append(": ").append(p.getStatus());
+                if (p.getNote() != null) report.append(" (").append(p.getNote()).append(")");
+                report.append("\n");
+                for (String suite : p.getCipherSuites()) {
+                    report.append("  - ").append(suite).append("\n");
+                }
+            }
+            if (tls.getKeyAlgorithm() != null) {
+                report.append("Key: ").append(tls.getKeyAlgorithm()).append(" ").append(tls.getKeySize()).append(" bits\n");
+                report.append("Signature: ").append(tls.getSignatureAlgorithm()).append("\n");
+                report.append("Chain: ").append(tls.getChainLength()).append(" cert(s), complete ")
+                        .append(tls.isChainComplete()).append(", trusted ").append(tls.isChainTrusted()).append("\n");
+                report.append("Hostname matches: ").append(tls.isHostnameMatches()).append("\n");
+            }
+            report.append("\n");
+        }
 
         // ===== APPLICATION SECURITY =====
         report.append("== Application Security ==\n");
         report.append("Active mode: ").append(r.isActiveMode()).append("\n");
         report.append("Input surface detected: ").append(r.isInputSurfaceDetected()).append("\n");
+        if (r.getCrawledEndpoints() != null) {
+            report.append("Crawled endpoints: ").append(r.getCrawledEndpoints().size()).append("\n");
+            for (String e : r.getCrawledEndpoints()) {
+                report.append("  - ").append(e).append("\n");
+            }
+        }
         report.append("DB error leakage suspected: ").append(r.isDbErrorLeakageSuspected()).append("\n");
+        if (r.getDbErrorMatches() != null) {
+            for (SignatureMatch m : r.getDbErrorMatches()) {
+                report.append("  - [").append(m.getCategory()).append(", peso ").append(m.getWeight()).append("] \"")
+                        .append(m.getSignature()).append("\" @ byte ").append(m.getOffset()).append("\n");
+            }
+        }
+        ResponseDiff d = r.getDbErrorResponseDiff();
+        if (d != null) {
+            report.append("  Baseline x mutated (").append(d.getUrl()).append("): status ").append(d.getBaselineStatus()).append(" -> ")
+                    .append(d.getMutatedStatus())
+                    .append(", length ").append(d.getLengthDelta() == null ? "?" : String.format("%+d", d.getLengthDelta()))
+                    .append(" bytes, similarity ").append(String.format("%.0f%%", d.getSimilarity() * 100)).append("\n");
+        }
         report.append("XSS probe executed: ").append(r.isXssProbePerformed()).append("\n");
-        report.append("Reflected XSS suspected: ").append(r.isReflectedXssSuspected()).append("\n\n");
+        report.append("Reflected XSS suspected: ").append(r.isReflectedXssSuspected()).append("\n");
+        if (r.getXssReflections() != null) {
+            for (XssReflection x : r.getXssReflections()) {
+                report.append("  - param=").append(x.getParameter()).append(" context=").append(x.getContext())
+                        .append(" @ byte ").append(x.getOffset()).append(" (").append(x.getUrl()).append(")\n");
+            }
+        }
+        report.append("\n");
 
         // ===== NETWORK EXPOSURE =====
         report.append("== Network Exposure (Active Mode) ==\n");
@@ -51,12 +119,18 @@ public class ReportService {
         } else {
             for (PortFinding p : r.getOpenPorts()) {
                 report.append("- Port ").append(p.getPort())
+                        .append(UdpScanService.PROTOCOL.equals(p.getProtocol()) ? "/udp" : "")
                         .append(" (").append(p.getService()).append(")")
                         .append(" state=").append(p.getState())
                         .append(" severity=").append(p.getSeverity())
+                        .append(p.getAddress() != null ? " address=" + p.getAddress() : "")
                         .append("\n");
 
                 report.append("  Latency: ").append(p.getLatencyMs()).append("ms\n");
+                if (p.getProduct() != null) {
+                    report.append("  Product: ").append(p.getProduct())
+                            .append(p.getVersion() != null ? " " + p.getVersion() : "").append("\n");
+                }
 
                 if (p.getEvidence() != null && !p.getEvidence().isBlank()) {
                     report.append("  Evidence: ").append(p.getEvidence()).append("\n");
@@ -0,0 +1,48 @@
+package com.joao.cyberaudit.service;
+
+/*
+ * Estimativa de RTT de um host (RFC 6298): SRTT + RTTVAR a partir das portas que respondem
+ * (SYN-ACK ou RST). Enquanto não há amostras suficientes, vale o timeout estático da porta.
+ */
+final class RttEstimator {
+
+    // poucas amostras ainda não representam o host
+    private static final int MIN_SAMPLES = 3;
+
+    // piso: jitter de agendamento/selector; teto: links muito lentos continuam com margem
+    static final int MIN_TIMEOUT_MS = 200;
+    static final int MAX_TIMEOUT_MS = 5_000;
+
+    private double srtt;
+    private double rttvar;
+    private int samples;
+
+    synchronized void sample(long rttMs) {
+        double r = Math.max(1, rttMs);
+        if (samples == 0) {
+            srtt = r;
+            rttvar = r / 2;
+        } else {
+            rttvar = 0.75 * rttvar + 0.25 * Math.abs(srtt - r);
+            srtt = 0.875 * srtt + 0.125 * r;
+        }
+        samples++;
+    }
+
+    // timeout do connect: RTO = SRTT + 4*RTTVAR (attempt > 0 dobra, como retransmissão)
+    synchronized int timeoutMs(int staticTimeoutMs, int attempt) {
+        int base = samples < MIN_SAMPLES
+                ? staticTimeoutMs
+                : (int) Math.ceil(srtt + 4 * rttvar);
+        long rto = (long) base << Math.min(attempt, 4);
+        return (int) Math.max(MIN_TIMEOUT_MS, Math.min(MAX_TIMEOUT_MS, rto));
+    }
+
+    synchronized boolean learned() {
+        return samples >= MIN_SAMPLES;
+    }
+
+    synchronized long srttMs() {
+        return Math.round(srtt);
+    }
+}
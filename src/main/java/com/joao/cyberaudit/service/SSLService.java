@@ -3,8 +3,7 @@ package com.joao.cyberaudit.service;
 import com.joao.cyberaudit.model.SSLInfo;
 import org.springframework.stereotype.Service;
 
-import javax.net.ssl.HttpsURLConnection;
-import java.net.URL;
+import javax.net.ssl.SSLSession;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.time.LocalDate;
@@ -14,24 +13,15 @@ import java.time.temporal.ChronoUnit;
 @Service
 public class SSLService {
 
-    public SSLInfo checkSSL(String urlString) {
+    // Monta o SSLInfo a partir do handshake que o fetch HTTP já fez (sem abrir outra conexão)
+    public SSLInfo fromSession(SSLSession session) {
 
-        if (urlString == null || urlString.isBlank()) {
-            return new SSLInfo(false, false, null, 0, "URL vazia");
-        }
-
-        if (!urlString.startsWith("https://")) {
-            return new SSLInfo(false, false, null, 0, "Site não usa HTTPS");
+        if (session == null) {
+            return new SSLInfo(false, false, null, 0, "Site não usa HTTPS", null, null);
         }
 
         try {
-            URL url = new URL(urlString);
-            HttpsURLConnection connection = (HttpsURLConnection) url.openConnection();
-            connection.setConnectTimeout(8000);
-            connection.setReadTimeout(8000);
-            connection.connect();
-
-            Certificate[] certs = connection.getServerCertificates();
+            Certificate[] certs = session.getPeerCertificates();
             X509Certificate cert = (X509Certificate) certs[0];
 
             LocalDate expiration = cert.getNotAfter()
@@ -44,10 +34,16 @@ public class SSLService {
 
             String message = valid ? "Certificado válido" : "Certificado expirado";
 
-            return new SSLInfo(true, valid, expiration.toString(), daysRemaining, message);
+            return new SSLInfo(true, valid, expiration.toString(), daysRemaining, message,
+                    session.getProtocol(), session.getCipherSuite());
 
         } catch (Exception e) {
-            return new SSLInfo(true, false, null, 0, "Erro ao verificar certificado: " + e.getMessage());
+            return failed(e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    // Handshake falhou (certificado inválido, host sem HTTPS, timeout...)
+    public SSLInfo failed(String error) {
+        return new SSLInfo(true, false, null, 0, "Erro ao verificar certificado: " + error, null, null);
+    }
+}
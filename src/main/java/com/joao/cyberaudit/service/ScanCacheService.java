@@ -3,7 +3,11 @@ package com.joao.cyberaudit.service;
 import org.springframework.stereotype.Service;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 @Service
 public class ScanCacheService {
@@ -20,6 +24,9 @@ public class ScanCacheService {
 
     private final Map<String, Entry<Object>> cache = new ConcurrentHashMap<>();
 
+    // cálculos em andamento (single-flight): 1 loader por chave, o resto espera o mesmo future
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
     public <T> T get(String key, Class<T> type) {
         Entry<Object> e = cache.get(key);
         if (e == null) return null;
@@ -37,4 +44,46 @@ public class ScanCacheService {
     public void invalidate(String key) {
         cache.remove(key);
     }
-}
\ No newline at end of file
+
+    // Cache + single-flight: só o primeiro caller executa o loader; concorrentes aguardam o mesmo resultado
+    public <T> T getOrLoad(String key, Class<T> type, long ttlMs, Supplier<T> loader) {
+        return getOrLoad(key, type, ttlMs, loader, v -> true);
+    }
+
+    // Idem, mas só guarda o valor se "cacheable" aceitar (ex.: resultado parcial é entregue, não guardado)
+    public <T> T getOrLoad(String key, Class<T> type, long ttlMs, Supplier<T> loader, Predicate<T> cacheable) {
+        T cached = get(key, type);
+        if (cached != null) return cached;
+
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return type.cast(join(existing));
+        }
+
+        try {
+            // pode ter sido preenchido entre o get e o putIfAbsent
+            T value = get(key, type);
+            if (value == null) {
+                value = loader.get();
+                if (cacheable.test(value)) put(key, value, ttlMs);
+            }
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private Object join(CompletableFuture<Object> f) {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.joao.cyberaudit.service;
+
+import com.joao.cyberaudit.model.JobStatus;
+import com.joao.cyberaudit.model.ScanJob;
+import com.joao.cyberaudit.model.ScanOptions;
+import com.joao.cyberaudit.model.ScanResult;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class ScanJobService {
+
+    private static final int WORKERS = 8;
+    private static final int MAX_QUEUED = 500;
+
+    // jobs finalizados ficam disponíveis para polling por 10 minutos
+    private static final long RETENTION_MS = 10 * 60_000;
+
+    private class Job implements Runnable, Comparable<Job> {
+        final String id;
+        final String url;
+        final boolean active;
+        final int priority;
+        final ScanOptions options;
+        final String tenant;
+        final long seq;
+        final long submittedAt = System.currentTimeMillis();
+
+        volatile JobStatus status = JobStatus.QUEUED;
+        volatile long startedAt;
+        volatile long finishedAt;
+        volatile ScanResult result;
+        volatile String error;
+
+        Job(String id, String url, boolean active, int priority, ScanOptions options, String tenant, long seq) {
+            this.id = id;
+            this.url = url;
+            this.active = active;
+            this.priority = priority;
+            this.options = options;
+            this.tenant = tenant;
+            this.seq = seq;
+        }
+
+        @Override
+        public void run() {
+            runJob(this);
+        }
+
+        // maior prioridade primeiro; FIFO dentro da mesma prioridade
+        @Override
+        public int compareTo(Job o) {
+            if (priority != o.priority) return Integer.compare(o.priority, priority);
+            return Long.compare(seq, o.seq);
+        }
+    }
+
+    private final ScanPipelineService scanPipelineService;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong seq = new AtomicLong(0);
+
+    // PriorityBlockingQueue: execute() recebe o próprio Job (Comparable), nunca submit()
+    private final ThreadPoolExecutor workers = new ThreadPoolExecutor(
+            WORKERS, WORKERS,
+            0, TimeUnit.MILLISECONDS,
+            new PriorityBlockingQueue<>(),
+            ScanStageExecutor.daemonFactory("scan-job-"));
+
+    public ScanJobService(ScanPipelineService scanPipelineService) {
+        this.scanPipelineService = scanPipelineService;
+    }
+
+    // Enfileira e retorna na hora; null se a fila estiver cheia
+    public synchronized ScanJob submit(String url, boolean active, int priority, ScanOptions options, String tenant) {
+        evictExpired();
+
+        if (workers.getQueue().size() >= MAX_QUEUED) {
+            return null;
+        }
+
+        Job job = new Job(UUID.randomUUID().toString(), url, active, priority, options, tenant, seq.incrementAndGet());
+        jobs.put(job.id, job);
+        workers.execute(job);
+
+        return snapshot(job);
+    }
+
+    public ScanJob get(String id) {
+        Job job = jobs.get(id);
+        return job == null ? null : snapshot(job);
+    }
+
+    private void runJob(Job job) {
+        job.startedAt = System.currentTimeMillis();
+        job.status = JobStatus.RUNNING;
+        try {
+            job.result = ProbeScheduler.callAs(job.tenant, () -> scanPipelineService.scan(job.url, job.active, job.options));
+            job.status = JobStatus.DONE;
+        } catch (Exception e) {
+            job.error = "Falha no scan: " + e.getMessage();
+            job.status = JobStatus.FAILED;
+        } finally {
+            job.finishedAt = System.currentTimeMillis();
+        }
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        jobs.values().removeIf(j -> j.finishedAt > 0 && now - j.finishedAt > RETENTION_MS);
+    }
+
+    private ScanJob snapshot(Job j) {
+        return new ScanJob(
+                j.id,
+                j.url,
+                j.active,
+                j.priority,
+                j.status,
+                iso(j.submittedAt),
+                iso(j.startedAt),
+                iso(j.finishedAt),
+                j.result,
+                j.error
+        );
+    }
+
+    private String iso(long epochMs) {
+        return epochMs > 0 ? Instant.ofEpochMilli(epochMs).toString() : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+}
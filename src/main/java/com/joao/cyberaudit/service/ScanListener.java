@@ -0,0 +1,10 @@
+package com.joao.cyberaudit.service;
+
+// Recebe resultados parciais do pipeline à medida que cada stage termina
+@FunctionalInterface
+public interface ScanListener {
+
+    ScanListener NONE = (stage, payload) -> { };
+
+    void onStage(String stage, Object payload);
+}
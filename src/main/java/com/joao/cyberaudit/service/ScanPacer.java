@@ -0,0 +1,201 @@
+package com.joao.cyberaudit.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/*
+ * Cadência de connects por alvo: token bucket por IP e por rede (/24 no IPv4, /64 no IPv6).
+ * Probe acima da taxa é adiado (reserva o próximo horário livre), nunca descartado.
+ * A taxa do IP se ajusta como TCP (AIMD): sobe devagar enquanto o host aguenta e cai pela metade
+ * quando os timeouts disparam acima do normal do host ou quando um retry prova que houve perda.
+ */
+@Service
+public class ScanPacer {
+
+    // rajada permitida = 100ms de taxa (mínimo 1 probe)
+    private static final double BURST_SECONDS = 0.1;
+
+    // AIMD: janela de resultados avaliada por vez e salto de timeouts que conta como "pico"
+    private static final int FEEDBACK_WINDOW = 16;
+    private static final double SPIKE_MARGIN = 0.25;
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final int INCREASE_STEPS = 20; // volta do mínimo ao máximo em ~20 janelas limpas
+
+    // bucket sem uso por esse tempo sai do mapa
+    private static final long IDLE_EVICT_MS = 60_000;
+
+    private static final class Bucket {
+        final double maxRate;
+        final double minRate;
+        double rate;
+        long nextFreeNanos; // GCRA: horário teórico do próximo probe
+
+        // feedback (só bucket de IP)
+        int windowTotal;
+        int windowTimeouts;
+        double baselineTimeoutRatio = -1; // -1 = ainda sem janela de referência
+        volatile long lastUsedMs = System.currentTimeMillis();
+
+        Bucket(double maxRate, double minRate) {
+            this.maxRate = maxRate;
+            this.minRate = minRate;
+            this.rate = maxRate;
+        }
+
+        long intervalNanos() {
+            return (long) (1_000_000_000L / rate);
+        }
+
+        long burstNanos() {
+            return (long) (Math.max(1, rate * BURST_SECONDS) * intervalNanos());
+        }
+
+        // mais cedo que este bucket libera um probe pedido em "now"
+        long earliest(long now) {
+            return Math.max(now, nextFreeNanos - burstNanos() + intervalNanos());
+        }
+
+        void take(long at) {
+            nextFreeNanos = Math.max(nextFreeNanos, at) + intervalNanos();
+            lastUsedMs = System.currentTimeMillis();
+        }
+    }
+
+    private final double hostRate;
+    private final double subnetRate;
+    private final double minHostRate;
+
+    private final Map<String, Bucket> hosts = new ConcurrentHashMap<>();
+    private final Map<String, Bucket> subnets = new ConcurrentHashMap<>();
+
+    // dispara os probes adiados (só agenda; o trabalho em si roda em quem recebe)
+    private final ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(ScanStageExecutor.daemonFactory("scan-pacer-"));
+
+    public ScanPacer(
+            @Value("${cyberaudit.pacing.host-rate:300}") int hostRate,
+            @Value("${cyberaudit.pacing.subnet-rate:1000}") int subnetRate,
+            @Value("${cyberaudit.pacing.min-host-rate:20}") int minHostRate
+    ) {
+        this.hostRate = Math.max(1, hostRate);
+        this.subnetRate = Math.max(1, subnetRate);
+        this.minHostRate = Math.max(1, Math.min(minHostRate, this.hostRate));
+        timer.scheduleWithFixedDelay(this::evictIdle, IDLE_EVICT_MS, IDLE_EVICT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * Roda "task" assim que IP e rede tiverem vaga: na hora (thread atual) se já houver,
+     * senão no horário reservado. Quem chama não bloqueia.
+     */
+    public void submit(InetAddress addr, Runnable task) {
+        long delayNanos = reserve(addr);
+        if (delayNanos <= 0) {
+            task.run();
+            return;
+        }
+        try {
+            timer.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // desligando: segue sem cadência
+            task.run();
+        }
+    }
+
+    // reserva o próximo horário livre nos dois buckets; devolve quanto falta para ele
+    long reserve(InetAddress addr) {
+        Bucket host = hosts.computeIfAbsent(addr.getHostAddress(), k -> new Bucket(hostRate, minHostRate));
+        Bucket subnet = subnets.computeIfAbsent(subnetKey(addr), k -> new Bucket(subnetRate, subnetRate));
+
+        long now = System.nanoTime();
+        // ordem fixa dos locks (rede, depois IP): sem deadlock entre scans do mesmo /24
+        synchronized (subnet) {
+            synchronized (host) {
+                long at = Math.max(subnet.earliest(now), host.earliest(now));
+                subnet.take(at);
+                host.take(at);
+                return at - now;
+            }
+        }
+    }
+
+    /*
+     * Resultado de um connect do IP. timedOut = sem resposta; lossProven = retry que respondeu
+     * (o 1º envio se perdeu). Ajusta a taxa do IP ao fim de cada janela.
+     */
+    public void feedback(InetAddress addr, boolean timedOut, boolean lossProven) {
+        Bucket b = hosts.get(addr.getHostAddress());
+        if (b == null) return;
+
+        synchronized (b) {
+            if (lossProven) {
+                decrease(b);
+                return;
+            }
+
+            b.windowTotal++;
+            if (timedOut) b.windowTimeouts++;
+            if (b.windowTotal < FEEDBACK_WINDOW) return;
+
+            double ratio = (double) b.windowTimeouts / b.windowTotal;
+            b.windowTotal = 0;
+            b.windowTimeouts = 0;
+
+            // host todo filtrado tem 100% de timeout o tempo todo: isso é o normal dele, não congestionamento
+            if (b.baselineTimeoutRatio >= 0 && ratio > b.baselineTimeoutRatio + SPIKE_MARGIN) {
+                decrease(b);
+            } else {
+                b.rate = Math.min(b.maxRate, b.rate + b.maxRate / INCREASE_STEPS);
+            }
+            b.baselineTimeoutRatio = b.baselineTimeoutRatio < 0
+                    ? ratio
+                    : 0.75 * b.baselineTimeoutRatio + 0.25 * ratio;
+        }
+    }
+
+    private void decrease(Bucket b) {
+        b.rate = Math.max(b.minRate, b.rate * DECREASE_FACTOR);
+    }
+
+    // tempo mínimo para N connects num mesmo IP na taxa máxima (entra no orçamento do scan)
+    public long minDurationMs(int probes) {
+        return (long) Math.ceil(probes * 1000.0 / hostRate);
+    }
+
+    // taxa atual do IP (connects/s); a máxima se o IP ainda não foi varrido
+    public double currentRate(InetAddress addr) {
+        Bucket b = hosts.get(addr.getHostAddress());
+        if (b == null) return hostRate;
+        synchronized (b) {
+            return b.rate;
+        }
+    }
+
+    private static String subnetKey(InetAddress addr) {
+        byte[] b = addr.getAddress();
+        if (addr instanceof Inet4Address) {
+            return (b[0] & 0xFF) + "." + (b[1] & 0xFF) + "." + (b[2] & 0xFF) + ".0/24";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 8; i += 2) {
+            sb.append(Integer.toHexString(((b[i] & 0xFF) << 8) | (b[i + 1] & 0xFF))).append(':');
+        }
+        return sb.append(":/64").toString();
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - IDLE_EVICT_MS;
+        hosts.values().removeIf(b -> b.lastUsedMs < cutoff);
+        subnets.values().removeIf(b -> b.lastUsedMs < cutoff);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+}
@@ -0,0 +1,424 @@
+package com.joao.cyberaudit.service;
+
+import com.joao.cyberaudit.model.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Service
+public class ScanPipelineService {
+
+    // deadline total do scan: o pior caso passa a ser o caminho mais longo do DAG
+    private static final long SCAN_DEADLINE_MS = 25_000;
+    private static final String DEADLINE_MESSAGE = "tempo limite do scan excedido";
+
+    private final SSLService sslService;
+    private final HeaderService headerService;
+    private final ScoreService scoreService;
+    private final HttpFetchService httpFetchService;
+    private final ErrorDisclosureService errorDisclosureService;
+    private final PortScanService portScanService;
+    private final XssProbeService xssProbeService;
+    private final CrawlerService crawlerService;
+    private final TlsAnalyzerService tlsAnalyzerService;
+    private final ScanCacheService scanCacheService;
+    private final ScanStageExecutor stageExecutor;
+    private final DnsResolverService dnsResolver;
+    private final int endpointConcurrency;
+    private final long endpointBudgetMs;
+
+    public ScanPipelineService(
+            SSLService sslService,
+            HeaderService headerService,
+            ScoreService scoreService,
+            HttpFetchService httpFetchService,
+            ErrorDisclosureService errorDisclosureService,
+            PortScanService portScanService,
+            XssProbeService xssProbeService,
+            CrawlerService crawlerService,
+            TlsAnalyzerService tlsAnalyzerService,
+            ScanCacheService scanCacheService,
+            ScanStageExecutor stageExecutor,
+            DnsResolverService dnsResolver,
+            @Value("${cyberaudit.probe.endpoint-concurrency:4}") int endpointConcurrency,
+            @Value("${cyberaudit.probe.endpoint-budget-ms:15000}") long endpointBudgetMs
+    ) {
+        this.sslService = sslService;
+        this.headerService = headerService;
+        this.scoreService = scoreService;
+        this.httpFetchService = httpFetchService;
+        this.errorDisclosureService = errorDisclosureService;
+        this.portScanService = portScanService;
+        this.xssProbeService = xssProbeService;
+        this.crawlerService = crawlerService;
+        this.tlsAnalyzerService = tlsAnalyzerService;
+        this.scanCacheService = scanCacheService;
+        this.stageExecutor = stageExecutor;
+        this.dnsResolver = dnsResolver;
+        this.endpointConcurrency = Math.max(1, endpointConcurrency);
+        this.endpointBudgetMs = Math.max(1000, endpointBudgetMs);
+    }
+
+    public ScanResult scan(String url, boolean active) {
+        return scan(url, active, defaultOptions(), ScanListener.NONE);
+    }
+
+    public ScanResult scan(String url, boolean active, ScanOptions options) {
+        return scan(url, active, options, ScanListener.NONE);
+    }
+
+    // listener recebe cada stage assim que termina; em cache hit (ou scan coalescido) recebe o replay do resultado
+    public ScanResult scan(String url, boolean active, ScanOptions options, ScanListener listener) {
+        String inputUrl = normalizeUrl(url);
+        PortProfile profile = PortProfile.resolve(options.getPortProfile(), options.getPortRanges());
+        AtomicBoolean ranHere = new AtomicBoolean(false);
+
+        // 🔁 Cache (por host + active + perfil de portas) + single-flight: scans idênticos concorrentes
+        // esperam o scan que já está rodando em vez de abrir outro (2 minutos). Resultado parcial não vai pro cache
+        String key = cacheKey(inputUrl, active, profile, options);
+        ScanResult result = scanCacheService.getOrLoad(key, ScanResult.class, 120_000, () -> {
+            ranHere.set(true);
+            return runStages(inputUrl, active, profile, options, listener);
+        }, r -> !r.isPartial());
+
+        if (!ranHere.get()) {
+            replay(result, listener);
+        }
+        return result;
+    }
+
+    /*
+     * DAG de stages:
+     *
+     *   http walk ──> redirect ─────────────────────────────────┐
+     *             └─> https walk ──> ssl ──┬────────────────────┤
+     *                            │         └─> tls ─────────────┤
+     *                            └─> fetch ──> headers ─────────┤
+     *                                      ├─> crawl ─┬─> xss ──┼──> score
+     *                                      │          └─> db ───┤
+     *                                      └─> port scan ───────┘
+     *
+     * A cadeia de redirects é percorrida 1 vez a partir do http://. Se ela já termina em HTTPS,
+     * o mesmo walk dá headers finais + certificado e o walk HTTPS não faz request nenhum.
+     */
+    private ScanResult runStages(String inputUrl, boolean active, PortProfile profile, ScanOptions options,
+                                 ScanListener listener) {
+        String httpProbeUrl = inputUrl.startsWith("https://")
+                ? "http://" + inputUrl.substring("https://".length())
+                : inputUrl;
+        String httpsUrl = toHttps(inputUrl);
+
+        // DNS em paralelo com o 1º walk: aquece o cache compartilhado (port scan e HttpClient)
+        String inputHost = extractHostSafe(inputUrl);
+        if (inputHost != null) dnsResolver.resolveAsync(inputHost);
+
+        try (ScanStageExecutor.Run run = stageExecutor.newRun(deadlineMs(active, profile, options))) {
+
+            // 1) Walk a partir do HTTP: redirect HTTP -> HTTPS + cadeia de hops
+            CompletableFuture<HttpFetchResult> httpWalk = run.stage(timedOutFetch(httpProbeUrl),
+                    () -> httpFetchService.walk(httpProbeUrl));
+
+            CompletableFuture<Boolean> redirect = run.stage(false,
+                    () -> httpFetchService.reachesHttps(httpWalk.join()),
+                    httpWalk);
+            redirect.thenAccept(v -> listener.onStage("redirect", Map.of("redirectsToHttps", v)));
+
+            // 2) Walk em HTTPS só se o walk HTTP não terminou num HTTPS válido
+            CompletableFuture<HttpFetchResult> httpsWalk = run.stage(timedOutFetch(httpsUrl), () -> {
+                HttpFetchResult r = httpWalk.join();
+                boolean endedOnHttps = r.getError() == null && r.getFinalUrl().startsWith("https://");
+                if (endedOnHttps && r.getTls() != null && supportsHttps(r.getTls())) return r;
+                return httpFetchService.walk(httpsUrl);
+            }, httpWalk);
+
+            CompletableFuture<SSLInfo> ssl = run.stage(sslService.failed(DEADLINE_MESSAGE), () -> {
+                HttpFetchResult r = httpsWalk.join();
+                return r.getTls() != null ? r.getTls() : sslService.failed(r.getError());
+            }, httpsWalk);
+            ssl.thenAccept(v -> listener.onStage("ssl", v));
+
+            // 3) Headers: sem HTTPS válido, analisa a URL original (http já percorrido no passo 1)
+            CompletableFuture<HttpFetchResult> fetch = run.stage(timedOutFetch(inputUrl), () -> {
+                if (supportsHttps(ssl.join()) || inputUrl.equals(httpsUrl)) return httpsWalk.join();
+                return httpWalk.join();
+            }, httpWalk, httpsWalk, ssl);
+
+            CompletableFuture<Map<String, String>> headers = run.stage(
+                    Map.of("error", DEADLINE_MESSAGE),
+                    () -> analyzeHeaders(fetch.join()),
+                    fetch);
+            headers.thenAccept(v -> listener.onStage("headers",
+                    headersEvent(fetch.join().getFinalUrl(), fetch.join().getStatusCode(), v)));
+
+            // Crawl (opt-in): endpoints com parâmetros além da URL analisada
+            CompletableFuture<List<String>> crawl = run.stage(List.of(), () -> options.isCrawl()
+                    ? crawlerService.discover(fetch.join().getFinalUrl())
+                    : List.of(),
+                    fetch);
+            if (options.isCrawl()) crawl.thenAccept(v -> listener.onStage("crawl", Map.of("crawledEndpoints", v)));
+
+            // XSS e DB (ACTIVE): URL analisada + endpoints do crawl, 1 tarefa por endpoint com teto próprio;
+            // endpoint que estoura fica de fora, mas o que os outros acharam é mantido
+            CompletableFuture<List<XssReflection>> xss = run.fanOut(
+                    () -> active ? probeTargets(fetch.join().getFinalUrl(), crawl.join()) : List.<String>of(),
+                    xssProbeService::reflections, endpointConcurrency, endpointBudgetMs,
+                    fetch, crawl).thenApply(ScanPipelineService::flatten);
+            xss.thenAccept(v -> listener.onStage("xss", xssEvent(v)));
+
+            CompletableFuture<ErrorDisclosureService.DbErrorProbe> dbLeak = run.fanOut(
+                    () -> active ? probeTargets(fetch.join().getFinalUrl(), crawl.join()) : List.<String>of(),
+                    errorDisclosureService::probeDbErrors, endpointConcurrency, endpointBudgetMs,
+                    fetch, crawl).thenApply(ScanPipelineService::firstLeak);
+            dbLeak.thenAccept(v -> listener.onStage("dbLeakage", dbLeakEvent(v.matches, v.diff)));
+
+            // Port scan (ACTIVE); no deadline fica com as portas já transmitidas em vez de nenhuma
+            List<PortFinding> portsSoFar = new CopyOnWriteArrayList<>();
+            CompletableFuture<List<PortFinding>> ports = run.stageOr(() -> List.copyOf(portsSoFar), () -> {
+                if (!active) return List.of();
+                String host = extractHostSafe(fetch.join().getFinalUrl());
+                if (host == null || host.isBlank()) return List.of();
+                return portScanService.scanPorts(host, profile, options.isAllAddresses(), options.isUdp(), f -> {
+                    portsSoFar.add(f);
+                    listener.onStage("port", f);
+                });
+            }, fetch);
+
+            // Configuração TLS (ACTIVE + HTTPS): no host/porta que de fato serve HTTPS
+            CompletableFuture<TlsReport> tls = run.stage(null, () -> {
+                if (!active || !ssl.join().isHttps()) return null;
+                String finalUrl = fetch.join().getFinalUrl();
+                java.net.URI u = java.net.URI.create(finalUrl.startsWith("https://") ? finalUrl : httpsUrl);
+                if (u.getHost() == null) return null;
+                return tlsAnalyzerService.analyze(u.getHost(), u.getPort() > 0 ? u.getPort() : 443);
+            }, ssl, fetch);
+            tls.thenAccept(v -> {
+                if (v != null) listener.onStage("tls", v);
+            });
+
+            // espera o DAG (cada stage respeita o deadline, então o join é limitado)
+            CompletableFuture.allOf(redirect, headers, crawl, xss, dbLeak, ports, tls).join();
+
+            SSLInfo sslInfo = ssl.join();
+            HttpFetchResult fetchResult = fetch.join();
+            // target final (finalUrl do fetch, ou a própria URL analisada)
+            String target = fetchResult.getFinalUrl();
+
+            // PASSIVO: só detecta superfície de entrada (a URL analisada ou algum endpoint do crawl)
+            List<String> crawledEndpoints = options.isCrawl() ? crawl.join() : null;
+            boolean inputSurfaceDetected = !probeTargets(target, crawl.join()).isEmpty();
+            boolean xssProbePerformed = active && inputSurfaceDetected;
+
+            ScanResult result = buildResult(inputUrl, active, redirect.join(), sslInfo, tls.join(), fetchResult,
+                    headers.join(), inputSurfaceDetected, dbLeak.join(), xssProbePerformed, xss.join(), ports.join(),
+                    fetchResult.getChain(), crawledEndpoints);
+            result.setPartial(run.expired());
+
+            listener.onStage("score", result.getScore());
+            listener.onStage("result", result);
+            return result;
+        }
+    }
+
+    // Reenvia um resultado pronto como a mesma sequência de eventos de um scan ao vivo
+    private void replay(ScanResult r, ScanListener listener) {
+        if (listener == ScanListener.NONE) return;
+
+        listener.onStage("redirect", Map.of("redirectsToHttps", r.isRedirectsToHttps()));
+        listener.onStage("ssl", r.getSslInfo());
+        if (r.getTlsReport() != null) listener.onStage("tls", r.getTlsReport());
+        listener.onStage("headers", headersEvent(r.getFinalUrl(), r.getHttpStatus(), r.getHeaders()));
+        if (r.getCrawledEndpoints() != null) {
+            listener.onStage("crawl", Map.of("crawledEndpoints", r.getCrawledEndpoints()));
+        }
+        listener.onStage("xss", xssEvent(r.getXssReflections()));
+        listener.onStage("dbLeakage", dbLeakEvent(r.getDbErrorMatches(), r.getDbErrorResponseDiff()));
+        if (r.getOpenPorts() != null) {
+            for (PortFinding f : r.getOpenPorts()) listener.onStage("port", f);
+        }
+        listener.onStage("score", r.getScore());
+        listener.onStage("result", r);
+    }
+
+    private static List<XssReflection> flatten(List<List<XssReflection>> perEndpoint) {
+        List<XssReflection> out = new ArrayList<>();
+        perEndpoint.forEach(out::addAll);
+        return out;
+    }
+
+    // 1 vazamento confirmado basta; sem vazamento, fica o diff do 1º endpoint que respondeu
+    private static ErrorDisclosureService.DbErrorProbe firstLeak(List<ErrorDisclosureService.DbErrorProbe> probes) {
+        for (ErrorDisclosureService.DbErrorProbe p : probes) {
+            if (!p.matches.isEmpty()) return p;
+        }
+        return probes.isEmpty() ? ErrorDisclosureService.DbErrorProbe.NONE : probes.get(0);
+    }
+
+    private Map<String, Object> xssEvent(List<XssReflection> reflections) {
+        List<XssReflection> r = reflections != null ? reflections : List.of();
+        return Map.of("reflectedXssSuspected", XssProbeService.isSuspected(r), "xssReflections", r);
+    }
+
+    private Map<String, Object> dbLeakEvent(List<SignatureMatch> matches, ResponseDiff diff) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        List<SignatureMatch> m = matches != null ? matches : List.of();
+        event.put("dbErrorLeakageSuspected", !m.isEmpty());
+        event.put("dbErrorMatches", m);
+        event.put("dbErrorResponseDiff", diff);
+        return event;
+    }
+
+    private Map<String, Object> headersEvent(String finalUrl, int httpStatus, Map<String, String> analyzedHeaders) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("finalUrl", finalUrl);
+        event.put("httpStatus", httpStatus);
+        event.put("headers", analyzedHeaders);
+        return event;
+    }
+
+    private ScanResult buildResult(
+            String inputUrl,
+            boolean active,
+            boolean redirectsToHttps,
+            SSLInfo sslInfo,
+            TlsReport tlsReport,
+            HttpFetchResult fetch,
+            Map<String, String> analyzedHeaders,
+            boolean inputSurfaceDetected,
+            ErrorDisclosureService.DbErrorProbe dbError,
+            boolean xssProbePerformed,
+            List<XssReflection> xssReflections,
+            List<PortFinding> openPorts,
+            List<RedirectHop> redirectChain,
+            List<String> crawledEndpoints
+    ) {
+        boolean dbErrorLeakageSuspected = !dbError.matches.isEmpty();
+        boolean reflectedXssSuspected = XssProbeService.isSuspected(xssReflections);
+
+        // Score
+        ScoreResult score = scoreService.calculate(
+                sslInfo,
+                tlsReport,
+                analyzedHeaders,
+                redirectsToHttps,
+                active,
+                inputSurfaceDetected,
+                dbErrorLeakageSuspected,
+                xssProbePerformed,
+                reflectedXssSuspected,
+                openPorts
+        );
+
+        return new ScanResult(
+                inputUrl,
+                fetch.getFinalUrl(),
+                fetch.getStatusCode(),
+                redirectsToHttps,
+                active,
+                inputSurfaceDetected,
+                crawledEndpoints,
+                dbErrorLeakageSuspected,
+                dbError.matches,
+                dbError.diff,
+                xssProbePerformed,
+                reflectedXssSuspected,
+                xssReflections,
+                sslInfo,
+                tlsReport,
+                analyzedHeaders,
+                score,
+                openPorts,
+                redirectChain,
+                false
+        );
+    }
+
+    private Map<String, String> analyzeHeaders(HttpFetchResult fetch) {
+        if (fetch.getError() != null) {
+            return Map.of("error", fetch.getError());
+        }
+        return headerService.analyzeSecurityHeaders(fetch.getHeaders());
+    }
+
+    private boolean supportsHttps(SSLInfo sslInfo) {
+        return sslInfo.isHttps() && sslInfo.isValid();
+    }
+
+    private HttpFetchResult timedOutFetch(String url) {
+        SSLInfo tls = url.startsWith("https://") ? sslService.failed(DEADLINE_MESSAGE) : null;
+        return new HttpFetchResult(0, url, Map.of(), "Erro ao conectar: " + DEADLINE_MESSAGE, tls, List.of());
+    }
+
+    // perfis grandes de porta (top1000/full) e o crawl precisam de mais tempo que o deadline padrão
+    public long deadlineMs(boolean active, ScanOptions options) {
+        return deadlineMs(active, PortProfile.resolve(options.getPortProfile(), options.getPortRanges()), options);
+    }
+
+    private long deadlineMs(boolean active, PortProfile profile, ScanOptions options) {
+        // crawl vem antes dos probes (em série); port scan e análise TLS correm em paralelo com os dois
+        long crawl = options.isCrawl() ? crawlerService.budgetMs() : 0;
+        if (!active) return SCAN_DEADLINE_MS + crawl;
+        // com crawl, os endpoints são sondados em rodadas de endpointConcurrency, cada uma com o teto por endpoint
+        long probes = 0;
+        if (options.isCrawl()) {
+            int endpoints = crawlerService.maxEndpoints() + 1;
+            probes = (long) ((endpoints + endpointConcurrency - 1) / endpointConcurrency) * endpointBudgetMs;
+        }
+        // margem para fetch + evidência das últimas portas (e para o walk até o TLS)
+        long parallel = Math.max(portScanService.budgetMs(profile, options.isUdp()), tlsAnalyzerService.budgetMs());
+        return Math.max(SCAN_DEADLINE_MS + crawl + probes, parallel + 10_000);
+    }
+
+    // URL analisada (se tiver query) + endpoints do crawl, sem repetir
+    private List<String> probeTargets(String target, List<String> crawled) {
+        Set<String> out = new LinkedHashSet<>();
+        if (errorDisclosureService.hasQueryParams(target)) out.add(target);
+        out.addAll(crawled);
+        return new ArrayList<>(out);
+    }
+
+    public static ScanOptions defaultOptions() {
+        return new ScanOptions(PortProfile.QUICK_NAME, null, false, false, false);
+    }
+
+    private String cacheKey(String inputUrl, boolean active, PortProfile profile, ScanOptions options) {
+        String hostForCache = extractHostSafe(inputUrl);
+        String key = "scan:" + (hostForCache != null ? hostForCache : inputUrl) + ":active=" + active;
+        // crawl muda a superfície de entrada mesmo no modo passivo
+        if (options.isCrawl()) key += ":crawl";
+        // perfil/endereços só mudam o resultado no modo ativo (port scan)
+        return active
+                ? key + ":ports=" + profile.key() + ":all=" + options.isAllAddresses() + ":udp=" + options.isUdp()
+                : key;
+    }
+
+    public String normalizeUrl(String url) {
+        String u = url.trim();
+        if (!u.startsWith("http://") && !u.startsWith("https://")) {
+            u = "https://" + u;
+        }
+        return u;
+    }
+
+    private String toHttps(String url) {
+        if (url.startsWith("https://")) return url;
+        if (url.startsWith("http://")) return "https://" + url.substring("http://".length());
+        return "https://" + url;
+    }
+
+    private String extractHostSafe(String url) {
+        try {
+            return java.net.URI.create(url).getHost();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.joao.cyberaudit.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+@Service
+public class ScanStageExecutor {
+
+    // pool compartilhado por todos os scans (stages são I/O-bound; batch roda dezenas de scans juntos)
+    private static final int STAGE_THREADS = 256;
+
+    private final ThreadPoolExecutor pool = newStagePool();
+
+    private static ThreadPoolExecutor newStagePool() {
+        ThreadPoolExecutor p = new ThreadPoolExecutor(
+                STAGE_THREADS, STAGE_THREADS,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                daemonFactory("scan-stage-"));
+        p.allowCoreThreadTimeOut(true); // threads ociosas morrem
+        return p;
+    }
+
+    // Cria uma execução (DAG) com deadline total em ms; stages herdam o cliente da thread que criou
+    public Run newRun(long deadlineMs) {
+        return new Run(System.currentTimeMillis() + deadlineMs, ProbeScheduler.currentTenant());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public final class Run implements AutoCloseable {
+
+        private final long deadlineAt;
+        private final String tenant;
+        private final List<Future<?>> tasks = new CopyOnWriteArrayList<>();
+        // algum stage foi cortado pelo deadline global (resultado parcial)
+        private volatile boolean expired;
+
+        private Run(long deadlineAt, String tenant) {
+            this.deadlineAt = deadlineAt;
+            this.tenant = tenant;
+        }
+
+        public long remainingMs() {
+            return Math.max(0, deadlineAt - System.currentTimeMillis());
+        }
+
+        public boolean expired() {
+            return expired;
+        }
+
+        /*
+         * Registra um stage: roda assim que todas as dependências terminarem.
+         * Nunca completa com erro — falha, deadline ou cancelamento viram o fallback,
+         * então stages dependentes (e o score) sempre conseguem continuar.
+         */
+        public <T> CompletableFuture<T> stage(T fallback, Supplier<T> body, CompletableFuture<?>... deps) {
+            return stageOr(() -> fallback, body, deps);
+        }
+
+        // Idem, com fallback calculado na hora em que é usado (ex.: o que o stage já achou até o deadline)
+        public <T> CompletableFuture<T> stageOr(Supplier<T> fallback, Supplier<T> body, CompletableFuture<?>... deps) {
+            CompletableFuture<T> out = new CompletableFuture<>();
+
+            CompletableFuture.allOf(deps).whenComplete((ignored, err) -> {
+                if (out.isDone()) return;
+                if (remainingMs() <= 0) {
+                    expire(out, fallback);
+                    return;
+                }
+                try {
+                    tasks.add(pool.submit(() -> {
+                        try {
+                            out.complete(ProbeScheduler.callAs(tenant, body));
+                        } catch (Exception e) {
+                            out.complete(fallback.get()); // no scanner, erro de stage não derruba o scan
+                        }
+                    }));
+                } catch (RejectedExecutionException e) {
+                    out.complete(fallback.get());
+                }
+            });
+
+            // deadline global: o que não terminou a tempo vira fallback
+            CompletableFuture.delayedExecutor(remainingMs(), TimeUnit.MILLISECONDS).execute(() -> expire(out, fallback));
+            return out;
+        }
+
+        // marca antes de completar: quem acorda com o fallback já vê o run como parcial
+        // (stage que termina no mesmo instante pode sair parcial à toa; só deixa de ir para o cache)
+        private <T> void expire(CompletableFuture<T> out, Supplier<T> fallback) {
+            if (out.isDone()) return;
+            T value = fallback.get();
+            if (out.isDone()) return;
+            expired = true;
+            out.complete(value);
+        }
+
+        /*
+         * Stage com 1 tarefa por item (ex.: 1 por endpoint), no máximo "parallel" ao mesmo tempo.
+         * Cada item tem seu próprio teto (perItemMs, limitado ao deadline): item que estoura ou falha fica de fora,
+         * mas os que já terminaram voltam, na ordem dos itens. Nunca completa com erro nem descarta resultado pronto.
+         */
+        public <I, R> CompletableFuture<List<R>> fanOut(Supplier<List<I>> items, Function<I, R> body, int parallel,
+                                                        long perItemMs, CompletableFuture<?>... deps) {
+            FanOut<I, R> fan = new FanOut<>(body, Math.max(1, perItemMs));
+
+            CompletableFuture.allOf(deps).whenComplete((ignored, err) -> {
+                List<I> list;
+                try {
+                    list = remainingMs() > 0 ? ProbeScheduler.callAs(tenant, items) : List.of();
+                } catch (Exception e) {
+                    list = List.of();
+                }
+                fan.start(list, Math.max(1, parallel));
+            });
+
+            // deadline global: devolve o que já terminou
+            CompletableFuture.delayedExecutor(remainingMs(), TimeUnit.MILLISECONDS).execute(() -> fan.completePartial(true));
+            return fan.out;
+        }
+
+        private final class FanOut<I, R> {
+            final Function<I, R> body;
+            final long perItemMs;
+            final CompletableFuture<List<R>> out = new CompletableFuture<>();
+
+            // protegidos pelo monitor do FanOut
+            List<I> items = List.of();
+            Object[] results = new Object[0];
+            int next;
+            int pending;
+
+            FanOut(Function<I, R> body, long perItemMs) {
+                this.body = body;
+                this.perItemMs = perItemMs;
+            }
+
+            void start(List<I> items, int parallel) {
+                boolean empty;
+                synchronized (this) {
+                    this.items = items;
+                    this.results = new Object[items.size()];
+                    this.pending = items.size();
+                    for (int i = 0; i < parallel && next < items.size(); i++) launchNext();
+                    empty = pending == 0;
+                }
+                if (empty) completePartial(false);
+            }
+
+            // com o monitor; item sem tempo restante é pulado na hora
+            private void launchNext() {
+                while (next < items.size()) {
+                    int index = next++;
+                    long budget = Math.min(perItemMs, remainingMs());
+                    if (budget <= 0) {
+                        expired = true;
+                        pending--;
+                        continue;
+                    }
+
+                    I item = items.get(index);
+                    CompletableFuture<R> result = new CompletableFuture<>();
+                    Future<?> task;
+                    try {
+                        task = pool.submit(() -> {
+                            try {
+                                result.complete(ProbeScheduler.callAs(tenant, () -> body.apply(item)));
+                            } catch (Exception e) {
+                                result.complete(null);
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        pending--;
+                        continue;
+                    }
+                    tasks.add(task);
+                    result.completeOnTimeout(null, budget, TimeUnit.MILLISECONDS);
+                    result.whenComplete((v, e) -> {
+                        if (v == null) task.cancel(true); // estourou o teto do item: interrompe
+                        finished(index, v);
+                    });
+                    return;
+                }
+            }
+
+            void finished(int index, R value) {
+                boolean last;
+                synchronized (this) {
+                    results[index] = value;
+                    pending--;
+                    launchNext();
+                    last = pending == 0;
+                }
+                if (last) completePartial(false);
+            }
+
+            // listeners do stage rodam fora do monitor; deadline = cortado antes do último item (marca antes de completar)
+            @SuppressWarnings("unchecked")
+            void completePartial(boolean deadline) {
+                List<R> done = new ArrayList<>();
+                synchronized (this) {
+                    if (out.isDone()) return;
+                    for (Object r : results) {
+                        if (r != null) done.add((R) r);
+                    }
+                }
+                if (deadline) expired = true;
+                out.complete(done);
+            }
+        }
+
+        // Cancela (interrompe) tudo que ainda estiver rodando
+        @Override
+        public void close() {
+            for (Future<?> f : tasks) {
+                if (!f.isDone()) f.cancel(true);
+            }
+        }
+    }
+
+    static ThreadFactory daemonFactory(String prefix) {
+        AtomicInteger seq = new AtomicInteger(0);
+        return r -> {
+            Thread t = new Thread(r, prefix + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
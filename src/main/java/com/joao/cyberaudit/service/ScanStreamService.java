@@ -0,0 +1,69 @@
+package com.joao.cyberaudit.service;
+
+import com.joao.cyberaudit.model.ScanOptions;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Service
+public class ScanStreamService {
+
+    // folga sobre o deadline do scan para o evento final chegar
+    private static final long EMITTER_SLACK_MS = 35_000;
+
+    private static final int STREAM_THREADS = 32;
+
+    private final ScanPipelineService scanPipelineService;
+    private final ExecutorService pool =
+            Executors.newFixedThreadPool(STREAM_THREADS, ScanStageExecutor.daemonFactory("scan-stream-"));
+
+    public ScanStreamService(ScanPipelineService scanPipelineService) {
+        this.scanPipelineService = scanPipelineService;
+    }
+
+    // 1 evento SSE por stage (redirect, ssl, headers, xss, dbLeakage, port..., score, result)
+    public SseEmitter stream(String url, boolean active, ScanOptions options, String tenant) {
+        SseEmitter emitter = new SseEmitter(scanPipelineService.deadlineMs(active, options) + EMITTER_SLACK_MS);
+        AtomicBoolean clientGone = new AtomicBoolean(false);
+        emitter.onCompletion(() -> clientGone.set(true));
+        emitter.onTimeout(() -> clientGone.set(true));
+
+        try {
+            pool.execute(() -> {
+                try {
+                    ProbeScheduler.callAs(tenant, () ->
+                            scanPipelineService.scan(url, active, options, (stage, payload) -> send(emitter, clientGone, stage, payload)));
+                    emitter.complete();
+                } catch (Exception e) {
+                    send(emitter, clientGone, "error", Map.of("error", "Falha no scan: " + e.getMessage()));
+                    emitter.complete();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            emitter.completeWithError(e);
+        }
+
+        return emitter;
+    }
+
+    private void send(SseEmitter emitter, AtomicBoolean clientGone, String stage, Object payload) {
+        if (clientGone.get()) return; // o scan continua (e vai pro cache), só para de emitir
+        try {
+            emitter.send(SseEmitter.event().name(stage).data(payload));
+        } catch (IOException | IllegalStateException e) {
+            clientGone.set(true);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -12,6 +12,7 @@ public class ScoreService {
 
     public ScoreResult calculate(
             SSLInfo sslInfo,
+            TlsReport tlsReport,
             Map<String, String> headers,
             boolean redirectsToHttps,
             boolean activeMode,
@@ -100,6 +101,11 @@ public class ScoreService {
             ));
         }
 
+        // ===== CONFIGURAÇÃO TLS (modo ativo) =====
+        if (activeMode && tlsReport != null) {
+            score -= tlsPenalty(tlsReport, sslInfo, notes, issues);
+        }
+
         // ===== PASSIVO: superfície de entrada =====
         if (inputSurfaceDetected) {
             notes.add("Superfície de entrada detectada (parâmetros na URL): INFO");
@@ -243,6 +249,8 @@ public class ScoreService {
             int insecurePenalty = 0;    // FTP/TELNET
             int mailPlainPenalty = 0;   // POP3/IMAP plaintext
             int sshPenalty = 0;         // SSH exposto
+            int udpPenalty = 0;         // UDP: resolver aberto, SNMP public, amplificação
+            int udpNoReply = 0;         // UDP sem resposta (open|filtered)
 
             boolean looksLikeEdge = false;
 
@@ -252,10 +260,16 @@ public class ScoreService {
                 if (p == null) continue;
 
                 String state = (p.getState() == null) ? "OPEN" : p.getState().toUpperCase();
-                if (!"OPEN".equals(state)) continue;
+                boolean udp = UdpScanService.PROTOCOL.equals(p.getProtocol());
+                if (!"OPEN".equals(state)) {
+                    if (udp && UdpScanService.OPEN_FILTERED.equals(state)) udpNoReply++;
+                    continue;
+                }
 
                 int port = p.getPort();
                 String service = (p.getService() == null) ? "UNKNOWN" : p.getService();
+                // TCP: categoria pelo serviço identificado (Redis na 8080 conta como Redis, SSH na 2222 como SSH)
+                int profile = PortScanService.portForService(p.getService(), port);
 
                 String evidence = p.getEvidence();
                 if (evidence != null) {
@@ -271,38 +285,61 @@ public class ScoreService {
                 if (p.getLatencyMs() != null) extra += " latency=" + p.getLatencyMs() + "ms";
                 if (p.getEvidence() != null && !p.getEvidence().isBlank()) extra += " evidence=" + p.getEvidence();
 
+                // UDP: só conta com resposta real ao probe; a severidade vem do que o serviço respondeu
+                if (udp) {
+                    String severity = (p.getSeverity() == null) ? "LOW" : p.getSeverity();
+                    int penalty = "HIGH".equals(severity) ? 15 : "MEDIUM".equals(severity) ? 5 : 0;
+                    udpPenalty += penalty;
+                    notes.add("Serviço UDP exposto: " + port + "/udp (" + service + ")"
+                            + (penalty > 0 ? " => -" + penalty : " [informativo]")
+                            + (extra.isBlank() ? "" : " (" + extra.trim() + ")"));
+                    notes.add("↳ Impacto: " + p.getImpact());
+                    notes.add("↳ Recomendação: " + p.getRecommendation());
+
+                    if (penalty > 0 && countPortIssues(issues) < maxPortIssues) {
+                        issues.add(new SecurityIssue(
+                                "OPEN_UDP_PORT_" + port,
+                                "Serviço UDP exposto: " + port + "/udp (" + service + ")",
+                                severity,
+                                p.getImpact(),
+                                p.getRecommendation()
+                        ));
+                    }
+                    continue;
+                }
+
                 // Web comuns: OK (não penaliza)
-                if (port == 80 || port == 443 || port == 8080 || port == 8443) {
+                if (profile == 80 || profile == 443 || profile == 8080 || profile == 8443) {
                     notes.add("Porta web comum aberta: " + port + " (" + service + ") [OK]" + (extra.isBlank() ? "" : " (" + extra.trim() + ")"));
                     continue;
                 }
 
                 // DNS: normalmente infraestrutura (informativo)
-                if (port == 53) {
-                    notes.add("Porta aberta (informativo): 53 (DNS) — comum em infraestrutura DNS." + (extra.isBlank() ? "" : " (" + extra.trim() + ")"));
-                    notes.add("↳ Impacto: " + impactForPort(port, service));
-                    notes.add("↳ Recomendação: " + recommendationForPort(port, service));
+                if (profile == 53) {
+                    notes.add("Porta aberta (informativo): " + port + " (DNS) — comum em infraestrutura DNS." + (extra.isBlank() ? "" : " (" + extra.trim() + ")"));
+                    notes.add("↳ Impacto: " + impactForPort(profile, service));
+                    notes.add("↳ Recomendação: " + recommendationForPort(profile, service));
                     continue;
                 }
 
                 // Email: diferenciar plaintext vs TLS
-                if (port == 110 || port == 143) { // POP3/IMAP plaintext
+                if (profile == 110 || profile == 143) { // POP3/IMAP plaintext
                     mailPlainPenalty += 5;
                     notes.add("Email plaintext exposto: " + port + " (" + service + ") => -5 (leve)" + (extra.isBlank() ? "" : " (" + extra.trim() + ")"));
-                    notes.add("↳ Impacto: " + impactForPort(port, service));
-                    notes.add("↳ Recomendação: " + recommendationForPort(port, service));
+                    notes.add("↳ Impacto: " + impactForPort(profile, service));
+                    notes.add("↳ Recomendação: " + recommendationForPort(profile, service));
                     continue;
                 }
 
-                if (port == 993 || port == 995 || port == 25 || port == 587 || port == 465) {
+                if (profile == 993 || profile == 995 || profile == 25 || profile == 587 || profile == 465) {
                     notes.add("Porta de e-mail aberta (informativo): " + port + " (" + service + ") — comum em infra de e-mail." + (extra.isBlank() ? "" : " (" + extra.trim() + ")"));
-                    notes.add("↳ Impacto: " + impactForPort(port, service));
-                    notes.add("↳ Recomendação: " + recommendationForPort(port, service));
+                    notes.add("↳ Impacto: " + impactForPort(profile, service));
+                    notes.add("↳ Recomendação: " + recommendationForPort(profile, service));
                     continue;
                 }
 
                 // Inseguros por padrão (forte)
-                if (port == 21 || port == 23) {
+                if (profile == 21 || profile == 23) {
                     insecurePenalty += 25;
                     notes.add("Serviço inseguro exposto: " + port + " (" + service + ") => -25" + (extra.isBlank() ? "" : " (" + extra.trim() + ")"));
 
@@ -311,15 +348,15 @@ public class ScoreService {
                                 "OPEN_PORT_" + port,
                                 "Serviço inseguro exposto: " + port + " (" + service + ")",
                                 "HIGH",
-                                impactForPort(port, service),
-                                recommendationForPort(port, service)
+                                impactForPort(profile, service),
+                                recommendationForPort(profile, service)
                         ));
                     }
                     continue;
                 }
 
                 // DB/Cache/Search sensíveis (forte)
-                if (port == 3306 || port == 5432 || port == 1433 || port == 1521 || port == 27017 || port == 6379 || port == 9200) {
+                if (profile == 3306 || profile == 5432 || profile == 1433 || profile == 1521 || profile == 27017 || profile == 6379 || profile == 9200) {
                     dbPenalty += 20;
                     notes.add("Serviço sensível exposto: " + port + " (" + service + ") => -20" + (extra.isBlank() ? "" : " (" + extra.trim() + ")"));
 
@@ -328,27 +365,27 @@ public class ScoreService {
                                 "OPEN_PORT_" + port,
                                 "Serviço sensível exposto: " + port + " (" + service + ")",
                                 "HIGH",
-                                impactForPort(port, service),
-                                recommendationForPort(port, service)
+                                impactForPort(profile, service),
+                                recommendationForPort(profile, service)
                         ));
                     }
                     continue;
                 }
 
                 // SSH: moderado
-                if (port == 22) {
+                if (profile == 22) {
                     sshPenalty += 10;
-                    notes.add("SSH exposto: 22 (SSH) => -10 (moderado)" + (extra.isBlank() ? "" : " (" + extra.trim() + ")"));
-                    notes.add("↳ Impacto: " + impactForPort(port, service));
-                    notes.add("↳ Recomendação: " + recommendationForPort(port, service));
+                    notes.add("SSH exposto: " + port + " (" + service + ") => -10 (moderado)" + (extra.isBlank() ? "" : " (" + extra.trim() + ")"));
+                    notes.add("↳ Impacto: " + impactForPort(profile, service));
+                    notes.add("↳ Recomendação: " + recommendationForPort(profile, service));
 
                     if (countPortIssues(issues) < maxPortIssues) {
                         issues.add(new SecurityIssue(
-                                "OPEN_PORT_22",
-                                "SSH exposto: 22 (SSH)",
+                                "OPEN_PORT_" + port,
+                                "SSH exposto: " + port + " (" + service + ")",
                                 "MEDIUM",
-                                impactForPort(port, service),
-                                recommendationForPort(port, service)
+                                impactForPort(profile, service),
+                                recommendationForPort(profile, service)
                         ));
                     }
                     continue;
@@ -356,8 +393,8 @@ public class ScoreService {
 
                 // Outros: informativo
                 notes.add("Porta aberta (informativo): " + port + " (" + service + ")" + (extra.isBlank() ? "" : " (" + extra.trim() + ")"));
-                notes.add("↳ Impacto: " + impactForPort(port, service));
-                notes.add("↳ Recomendação: " + recommendationForPort(port, service));
+                notes.add("↳ Impacto: " + impactForPort(profile, service));
+                notes.add("↳ Recomendação: " + recommendationForPort(profile, service));
             }
 
             // Caps por categoria (pra não derrubar score injustamente)
@@ -365,8 +402,13 @@ public class ScoreService {
             insecurePenalty = Math.min(insecurePenalty, 30);
             mailPlainPenalty = Math.min(mailPlainPenalty, 15);
             sshPenalty = Math.min(sshPenalty, 20);
+            udpPenalty = Math.min(udpPenalty, 25);
+
+            if (udpNoReply > 0) {
+                notes.add("Portas UDP sem resposta (open|filtered, inconclusivo): " + udpNoReply);
+            }
 
-            int portPenaltyTotal = dbPenalty + insecurePenalty + mailPlainPenalty + sshPenalty;
+            int portPenaltyTotal = dbPenalty + insecurePenalty + mailPlainPenalty + sshPenalty + udpPenalty;
 
             // Redução se parecer edge/CDN/WAF
             if (looksLikeEdge && portPenaltyTotal > 0) {
@@ -399,10 +441,140 @@ public class ScoreService {
         return RiskLevel.CRITICAL;
     }
 
+    // Penalidade da configuração TLS, com teto (certificado inválido já foi penalizado na seção SSL)
+    private int tlsPenalty(TlsReport tls, SSLInfo sslInfo, List<String> notes, List<SecurityIssue> issues) {
+        if (tls.getError() != null) {
+            notes.add("Análise TLS não concluída: " + tls.getError());
+            return 0;
+        }
+
+        int penalty = 0;
+        List<String> legacy = new ArrayList<>();
+        List<String> weakSuites = new ArrayList<>();
+        List<String> notAssessed = new ArrayList<>();
+        boolean tls13 = false;
+
+        for (TlsProtocolSupport p : tls.getProtocols()) {
+            if (TlsAnalyzerService.UNKNOWN.equals(p.getStatus()) || TlsAnalyzerService.UNTESTABLE.equals(p.getStatus())) {
+                notAssessed.add(p.getProtocol());
+            }
+            if (!TlsAnalyzerService.ACCEPTED.equals(p.getStatus())) continue;
+            if ("TLSv1.3".equals(p.getProtocol())) tls13 = true;
+            if (TlsAnalyzerService.LEGACY_PROTOCOLS.contains(p.getProtocol())) legacy.add(p.getProtocol());
+            for (String suite : p.getCipherSuites()) {
+                if (isWeakSuite(suite) && !weakSuites.contains(suite)) weakSuites.add(suite);
+            }
+        }
+
+        if (!legacy.isEmpty()) {
+            penalty += 10;
+            notes.add("Protocolos TLS legados aceitos " + legacy + ": -10");
+
+            issues.add(new SecurityIssue(
+                    "TLS_LEGACY_PROTOCOL",
+                    "Protocolos TLS legados habilitados",
+                    "MEDIUM",
+                    "SSLv3/TLS 1.0/1.1 têm fraquezas conhecidas (POODLE, BEAST) e permitem downgrade.",
+                    "Desabilitar SSLv3, TLS 1.0 e TLS 1.1; manter apenas TLS 1.2 e TLS 1.3."
+            ));
+        }
+
+        if (!weakSuites.isEmpty()) {
+            penalty += 10;
+            notes.add("Cipher suites fracas aceitas (" + weakSuites.size() + "): -10");
+
+            issues.add(new SecurityIssue(
+                    "TLS_WEAK_CIPHER",
+                    "Cipher suites fracas habilitadas",
+                    "MEDIUM",
+                    "Suites como " + String.join(", ", weakSuites.subList(0, Math.min(3, weakSuites.size())))
+                            + " usam cifras quebradas ou sem autenticação.",
+                    "Remover suites RC4/3DES/NULL/EXPORT/anon; preferir ECDHE com AES-GCM ou ChaCha20."
+            ));
+        }
+
+        String keyAlg = tls.getKeyAlgorithm() == null ? "" : tls.getKeyAlgorithm();
+        int keySize = tls.getKeySize();
+        boolean weakKey = keySize > 0 && (("RSA".equals(keyAlg) || "DSA".equals(keyAlg)) && keySize < 2048
+                || "EC".equals(keyAlg) && keySize < 224);
+        if (weakKey) {
+            penalty += 10;
+            notes.add("Chave do certificado fraca (" + keyAlg + " " + keySize + " bits): -10");
+
+            issues.add(new SecurityIssue(
+                    "TLS_WEAK_KEY",
+                    "Chave do certificado fraca",
+                    "HIGH",
+                    "Chaves " + keyAlg + " de " + keySize + " bits estão ao alcance de fatoração/ataques práticos.",
+                    "Reemitir o certificado com RSA 2048+ ou ECDSA P-256+."
+            ));
+        }
+
+        String sig = tls.getSignatureAlgorithm() == null ? "" : tls.getSignatureAlgorithm().toUpperCase();
+        if (sig.contains("MD5") || sig.contains("SHA1")) {
+            penalty += 10;
+            notes.add("Assinatura do certificado fraca (" + tls.getSignatureAlgorithm() + "): -10");
+
+            issues.add(new SecurityIssue(
+                    "TLS_WEAK_SIGNATURE",
+                    "Certificado assinado com hash fraco",
+                    "MEDIUM",
+                    "MD5/SHA-1 permitem colisões; navegadores rejeitam esses certificados.",
+                    "Reemitir o certificado com assinatura SHA-256 ou superior."
+            ));
+        }
+
+        if (sslInfo.isValid() && !tls.isChainComplete()) {
+            penalty += 5;
+            notes.add("Cadeia de certificados incompleta (intermediário ausente): -5");
+
+            issues.add(new SecurityIssue(
+                    "TLS_INCOMPLETE_CHAIN",
+                    "Cadeia de certificados incompleta",
+                    "LOW",
+                    "Clientes que não buscam o intermediário sozinhos (apps, curl, Android antigo) falham na conexão.",
+                    "Configurar o servidor para enviar o certificado do intermediário junto com o do site."
+            ));
+        }
+
+        if (sslInfo.isValid() && !tls.isHostnameMatches()) {
+            penalty += 10;
+            notes.add("Certificado não cobre o nome " + tls.getServerName() + ": -10");
+
+            issues.add(new SecurityIssue(
+                    "TLS_HOSTNAME_MISMATCH",
+                    "Certificado não corresponde ao nome do host",
+                    "HIGH",
+                    "Clientes estritos recusam a conexão; outros ficam expostos a interceptação.",
+                    "Emitir certificado com o nome no SAN (ou wildcard adequado)."
+            ));
+        }
+
+        if (!tls13) {
+            notes.add("TLS 1.3 não suportado (recomendado habilitar): INFO");
+        }
+
+        // sem resposta não é "recusado": a ausência de penalidade aqui não vale como aprovação
+        if (!notAssessed.isEmpty()) {
+            notes.add("Versões TLS não avaliadas " + notAssessed + ": INFO");
+        }
+
+        penalty = Math.min(penalty, 25);
+        if (penalty > 0) notes.add("Penalidade total da configuração TLS: -" + penalty);
+        return penalty;
+    }
+
+    private boolean isWeakSuite(String suite) {
+        String s = suite.toUpperCase();
+        return s.contains("_RC4_") || s.contains("3DES") || s.contains("_DES_") || s.contains("_NULL_")
+                || s.endsWith("_NULL") || s.contains("_ANON_") || s.contains("EXPORT");
+    }
+
     private int countPortIssues(List<SecurityIssue> issues) {
         int c = 0;
         for (SecurityIssue i : issues) {
-            if (i != null && i.getId() != null && i.getId().startsWith("OPEN_PORT_")) c++;
+            if (i != null && i.getId() != null
+                    && (i.getId().startsWith("OPEN_PORT_") || i.getId().startsWith("OPEN_UDP_PORT_"))) c++;
         }
         return c;
     }
@@ -0,0 +1,506 @@
+package com.joao.cyberaudit.service;
+
+import com.joao.cyberaudit.model.TlsProtocolSupport;
+import com.joao.cyberaudit.model.TlsReport;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.Rdn;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import javax.security.auth.x500.X500Principal;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.security.KeyStore;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.DSAKey;
+import java.security.interfaces.ECKey;
+import java.security.interfaces.EdECKey;
+import java.security.interfaces.RSAKey;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/*
+ * Análise da configuração TLS (modo ativo): quais versões e suites o servidor aceita, chave e assinatura do
+ * certificado, cadeia completa/confiável e nome. Cada versão e cada suite é 1 handshake de teste no TlsHandshakeEngine,
+ * todos em paralelo com limite de handshakes simultâneos por host e orçamento de tempo por análise.
+ * TLS 1.3/1.2 passam pelo SSLEngine; SSLv3/TLSv1/1.1 e as suites que a JVM desabilita (RC4, 3DES, NULL, anon,
+ * EXPORT) vão como ClientHello cru (TlsClientHello), senão nunca seriam oferecidas e sairiam sempre "não testáveis".
+ * Endereços do DNS tentados em ordem até um completar o handshake. Só relatório completo vai pro cache,
+ * por IP:porta (+ nome do SNI, que muda o certificado entregue).
+ */
+@Service
+public class TlsAnalyzerService {
+
+    public static final String ACCEPTED = "ACCEPTED";
+    public static final String REJECTED = "REJECTED";
+    public static final String UNTESTABLE = "UNTESTABLE";
+    public static final String UNKNOWN = "UNKNOWN";
+
+    // da mais nova para a mais antiga
+    private static final List<String> PROTOCOLS = List.of("TLSv1.3", "TLSv1.2", "TLSv1.1", "TLSv1", "SSLv3");
+    public static final Set<String> LEGACY_PROTOCOLS = Set.of("TLSv1.1", "TLSv1", "SSLv3");
+
+    private static final String PARTIAL_SUITES = "enumeração de suites incompleta (timeout/orçamento)";
+    private static final int MAX_ADDRESSES = 4;
+
+    private final ProbeScheduler probeScheduler;
+    private final DnsResolverService dnsResolver;
+    private final ScanCacheService cache;
+    private final long timeoutMs;
+    private final long budgetMs;
+    private final int parallel;
+    private final long cacheTtlMs;
+
+    private final TlsHandshakeEngine engine;
+    private final X509TrustManager trustManager;
+    private final Set<X500Principal> anchors = new HashSet<>();
+
+    public TlsAnalyzerService(
+            ProbeScheduler probeScheduler,
+            DnsResolverService dnsResolver,
+            ScanCacheService cache,
+            @Value("${cyberaudit.tls.timeout-ms:4000}") long timeoutMs,
+            @Value("${cyberaudit.tls.budget-ms:15000}") long budgetMs,
+            @Value("${cyberaudit.tls.parallel:8}") int parallel,
+            @Value("${cyberaudit.tls.cache-ttl-seconds:600}") long cacheTtlSeconds
+    ) throws IOException {
+        this.probeScheduler = probeScheduler;
+        this.dnsResolver = dnsResolver;
+        this.cache = cache;
+        this.timeoutMs = Math.max(500, timeoutMs);
+        this.budgetMs = Math.max(this.timeoutMs, budgetMs);
+        this.parallel = Math.max(1, parallel);
+        this.cacheTtlMs = Math.max(1, cacheTtlSeconds) * 1000;
+        this.engine = new TlsHandshakeEngine();
+        this.trustManager = defaultTrustManager();
+        for (X509Certificate ca : trustManager.getAcceptedIssuers()) anchors.add(ca.getSubjectX500Principal());
+    }
+
+    // tempo máximo de uma análise (entra no deadline do scan)
+    public long budgetMs() {
+        return budgetMs;
+    }
+
+    public TlsReport analyze(String host, int port) {
+        List<InetAddress> addrs;
+        try {
+            addrs = dnsResolver.resolve(host, timeoutMs);
+        } catch (UnknownHostException e) {
+            return failed(host + ":" + port, host, "DNS: " + e.getMessage());
+        }
+        if (addrs.isEmpty()) return failed(host + ":" + port, host, "DNS: nenhum endereço");
+        addrs = addrs.subList(0, Math.min(MAX_ADDRESSES, addrs.size()));
+
+        for (InetAddress addr : addrs) {
+            TlsReport cached = cache.get(cacheKey(addr, port, host), TlsReport.class);
+            if (cached != null) return cached;
+        }
+
+        // handshake normal em cada endereço, na ordem, até um responder (v6 inalcançável, nó fora do ar...)
+        long deadlineAt = System.currentTimeMillis() + budgetMs;
+        String tenant = ProbeScheduler.currentTenant();
+        String lastError = "sem resposta no orçamento de tempo";
+        for (InetAddress addr : addrs) {
+            Analysis a = new Analysis(new InetSocketAddress(addr, port), host, tenant);
+            try {
+                TlsHandshakeEngine.Outcome cert = await(a.handshake(null, null), deadlineAt);
+                if (cert.kind == TlsHandshakeEngine.Kind.FAILED) {
+                    lastError = addr.getHostAddress() + ": " + cert.detail;
+                    continue;
+                }
+                String address = addr.getHostAddress() + ":" + port;
+                return cache.getOrLoad(cacheKey(addr, port, host), TlsReport.class, cacheTtlMs,
+                        () -> run(a, address, cert, deadlineAt), TlsAnalyzerService::complete);
+            } finally {
+                a.close();
+            }
+        }
+        return failed(addrs.get(0).getHostAddress() + ":" + port, host, "Handshake TLS não completou: " + lastError);
+    }
+
+    private static String cacheKey(InetAddress addr, int port, String host) {
+        return "tls:" + addr.getHostAddress() + ":" + port + ":" + host.toLowerCase(Locale.ROOT);
+    }
+
+    // relatório parcial (erro, versão sem resposta, enumeração cortada pelo orçamento) não vai pro cache
+    static boolean complete(TlsReport r) {
+        if (r.getError() != null) return false;
+        for (TlsProtocolSupport p : r.getProtocols()) {
+            if (UNKNOWN.equals(p.getStatus())) return false;
+            if (p.getNote() != null && p.getNote().contains(PARTIAL_SUITES)) return false;
+        }
+        return true;
+    }
+
+    private TlsReport run(Analysis a, String address, TlsHandshakeEngine.Outcome cert, long deadlineAt) {
+        SupportedSuites supported = new SupportedSuites(engine.enabled().getCipherSuites());
+
+        // 1 handshake por versão; as suites saem das versões aceitas
+        Map<String, CompletableFuture<TlsHandshakeEngine.Outcome>> versions = new LinkedHashMap<>();
+        Map<String, CompletableFuture<List<TlsHandshakeEngine.Outcome>>> suites = new LinkedHashMap<>();
+        for (String p : PROTOCOLS) {
+            CompletableFuture<TlsHandshakeEngine.Outcome> v;
+            CompletableFuture<List<TlsHandshakeEngine.Outcome>> s;
+            int raw = TlsClientHello.version(p);
+            if (LEGACY_PROTOCOLS.contains(p)) {
+                v = a.hello(raw, TlsClientHello.SUITES.keySet());
+                s = v.thenCompose(o -> o.kind == TlsHandshakeEngine.Kind.ACCEPTED
+                        ? enumerateRaw(a, raw)
+                        : CompletableFuture.completedFuture(List.of()));
+            } else {
+                String[] candidates = supported.forProtocol(p);
+                CompletableFuture<TlsHandshakeEngine.Outcome> jsse = candidates.length == 0
+                        ? CompletableFuture.completedFuture(TlsHandshakeEngine.Outcome.of(
+                                TlsHandshakeEngine.Kind.UNTESTABLE, "nenhuma suite dessa versão nesta JVM"))
+                        : a.handshake(new String[]{p}, candidates);
+                if (raw < 0) {
+                    v = jsse;
+                    s = v.thenCompose(o -> o.kind == TlsHandshakeEngine.Kind.ACCEPTED
+                            ? enumerateSuites(a, p, candidates)
+                            : CompletableFuture.completedFuture(List.of()));
+                } else {
+                    // TLS 1.2: servidor que só fala suites legadas não tem nada em comum com a JVM; o ClientHello cru decide
+                    v = jsse.thenCompose(o -> o.kind == TlsHandshakeEngine.Kind.ACCEPTED
+                            ? CompletableFuture.completedFuture(o)
+                            : a.hello(raw, TlsClientHello.SUITES.keySet())
+                                    .thenApply(r -> r.kind == TlsHandshakeEngine.Kind.ACCEPTED ? r : o));
+                    s = v.thenCompose(o -> o.kind == TlsHandshakeEngine.Kind.ACCEPTED
+                            ? enumerateSuites(a, p, candidates).thenCombine(enumerateRaw(a, raw), TlsAnalyzerService::concat)
+                            : CompletableFuture.completedFuture(List.of()));
+                }
+            }
+            versions.put(p, v);
+            suites.put(p, s);
+        }
+
+        try {
+            CompletableFuture.allOf(suites.values().toArray(new CompletableFuture<?>[0]))
+                    .get(Math.max(1, deadlineAt - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // orçamento esgotado: fica com o que já respondeu
+        } catch (Exception e) {
+            // não acontece (os futures só completam normalmente)
+        }
+        a.close();
+
+        List<TlsProtocolSupport> protocols = new ArrayList<>();
+        X509Certificate[] chain = chainOf(cert);
+        for (String p : PROTOCOLS) {
+            TlsHandshakeEngine.Outcome v = versions.get(p).getNow(null);
+            List<TlsHandshakeEngine.Outcome> s = suites.get(p).getNow(null);
+            protocols.add(protocolSupport(p, v, s));
+            if (chain == null && v != null) chain = chainOf(v);
+        }
+
+        if (chain == null) {
+            return new TlsReport(address, a.serverName, protocols, null, 0, null, 0, false, false, false,
+                    "Handshake TLS não completou: " + cert.detail);
+        }
+
+        X509Certificate leaf = chain[0];
+        return new TlsReport(address, a.serverName, protocols,
+                leaf.getPublicKey().getAlgorithm(), keySize(leaf.getPublicKey()), leaf.getSigAlgName(),
+                chain.length, chainComplete(chain), chainTrusted(chain), hostnameMatches(leaf, a.serverName), null);
+    }
+
+    // versão aceita: 1 handshake por suite da versão, cada um oferecendo só ela
+    private CompletableFuture<List<TlsHandshakeEngine.Outcome>> enumerateSuites(Analysis a, String protocol,
+                                                                                 String[] candidates) {
+        List<CompletableFuture<TlsHandshakeEngine.Outcome>> each = new ArrayList<>(candidates.length);
+        for (String s : candidates) each.add(a.handshake(new String[]{protocol}, new String[]{s}));
+        return joinAll(each);
+    }
+
+    // idem para as suites da tabela do ClientHello cru; vale só se o servidor escolheu a suite oferecida
+    private CompletableFuture<List<TlsHandshakeEngine.Outcome>> enumerateRaw(Analysis a, int version) {
+        List<CompletableFuture<TlsHandshakeEngine.Outcome>> each = new ArrayList<>(TlsClientHello.SUITES.size());
+        for (Map.Entry<Integer, String> suite : TlsClientHello.SUITES.entrySet()) {
+            each.add(a.hello(version, List.of(suite.getKey())).thenApply(o ->
+                    o.kind != TlsHandshakeEngine.Kind.ACCEPTED || suite.getValue().equals(o.cipherSuite) ? o
+                            : TlsHandshakeEngine.Outcome.of(TlsHandshakeEngine.Kind.REJECTED,
+                                    "servidor escolheu " + o.cipherSuite)));
+        }
+        return joinAll(each);
+    }
+
+    private static CompletableFuture<List<TlsHandshakeEngine.Outcome>> joinAll(
+            List<CompletableFuture<TlsHandshakeEngine.Outcome>> each) {
+        return CompletableFuture.allOf(each.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<TlsHandshakeEngine.Outcome> out = new ArrayList<>(each.size());
+            for (CompletableFuture<TlsHandshakeEngine.Outcome> f : each) out.add(f.join());
+            return out;
+        });
+    }
+
+    private static <T> List<T> concat(List<T> a, List<T> b) {
+        List<T> out = new ArrayList<>(a);
+        out.addAll(b);
+        return out;
+    }
+
+    // espera até o deadline da análise; estourou = falha (como timeout de conexão)
+    private static TlsHandshakeEngine.Outcome await(CompletableFuture<TlsHandshakeEngine.Outcome> f, long deadlineAt) {
+        try {
+            return f.get(Math.max(1, deadlineAt - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return TlsHandshakeEngine.Outcome.of(TlsHandshakeEngine.Kind.FAILED, "interrompido");
+        } catch (Exception e) {
+            return TlsHandshakeEngine.Outcome.of(TlsHandshakeEngine.Kind.FAILED, "sem resposta no orçamento de tempo");
+        }
+    }
+
+    private static TlsProtocolSupport protocolSupport(String protocol, TlsHandshakeEngine.Outcome version,
+                                                      List<TlsHandshakeEngine.Outcome> suiteOutcomes) {
+        if (version == null) return new TlsProtocolSupport(protocol, UNKNOWN, List.of(), "sem resposta no orçamento de tempo");
+
+        switch (version.kind) {
+            case REJECTED:
+                return new TlsProtocolSupport(protocol, REJECTED, List.of(), null);
+            case UNTESTABLE:
+                return new TlsProtocolSupport(protocol, UNTESTABLE, List.of(), version.detail);
+            case FAILED:
+                return new TlsProtocolSupport(protocol, UNKNOWN, List.of(), version.detail);
+            default:
+                break;
+        }
+
+        // aceito: suites da JVM (forte -> fraca) e depois as da tabela crua
+        List<String> accepted = new ArrayList<>();
+        boolean incomplete = suiteOutcomes == null;
+        if (suiteOutcomes != null) {
+            for (TlsHandshakeEngine.Outcome o : suiteOutcomes) {
+                if (o.kind == TlsHandshakeEngine.Kind.ACCEPTED && !accepted.contains(o.cipherSuite)) accepted.add(o.cipherSuite);
+                else if (o.kind == TlsHandshakeEngine.Kind.FAILED) incomplete = true;
+            }
+        }
+        if (accepted.isEmpty() && version.cipherSuite != null) accepted.add(version.cipherSuite);
+
+        return new TlsProtocolSupport(protocol, ACCEPTED, accepted, incomplete ? PARTIAL_SUITES : null);
+    }
+
+    private static X509Certificate[] chainOf(TlsHandshakeEngine.Outcome o) {
+        if (o == null || o.kind != TlsHandshakeEngine.Kind.ACCEPTED || o.chain == null || o.chain.length == 0) {
+            return null;
+        }
+        return o.chain;
+    }
+
+    // ===== certificado =====
+
+    static int keySize(PublicKey key) {
+        if (key instanceof RSAKey rsa) return rsa.getModulus().bitLength();
+        if (key instanceof ECKey ec) return ec.getParams().getCurve().getField().getFieldSize();
+        if (key instanceof DSAKey dsa) return dsa.getParams().getP().bitLength();
+        if (key instanceof EdECKey ed) return "Ed448".equalsIgnoreCase(ed.getParams().getName()) ? 448 : 255;
+        return 0;
+    }
+
+    // cada certificado emitido pelo seguinte; o último é raiz ou foi emitido por uma raiz do truststore
+    private boolean chainComplete(X509Certificate[] chain) {
+        for (int i = 0; i < chain.length - 1; i++) {
+            if (!chain[i].getIssuerX500Principal().equals(chain[i + 1].getSubjectX500Principal())) return false;
+        }
+        X509Certificate last = chain[chain.length - 1];
+        return anchors.contains(last.getIssuerX500Principal())
+                || last.getIssuerX500Principal().equals(last.getSubjectX500Principal());
+    }
+
+    private boolean chainTrusted(X509Certificate[] chain) {
+        try {
+            trustManager.checkServerTrusted(chain, "UNKNOWN");
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    // SAN (DNS ou IP); CN só quando não há SAN DNS. Curinga vale para 1 rótulo, só o mais à esquerda
+    static boolean hostnameMatches(X509Certificate cert, String host) {
+        String h = host.toLowerCase(Locale.ROOT);
+        if (h.startsWith("[") && h.endsWith("]")) h = h.substring(1, h.length() - 1);
+        if (h.endsWith(".")) h = h.substring(0, h.length() - 1);
+        boolean ip = TlsHandshakeEngine.isIpLiteral(h);
+
+        try {
+            boolean hasDnsSan = false;
+            Collection<List<?>> sans = cert.getSubjectAlternativeNames();
+            if (sans != null) {
+                for (List<?> san : sans) {
+                    int type = (Integer) san.get(0);
+                    String value = String.valueOf(san.get(1));
+                    if (ip && type == 7 && InetAddress.getByName(value).equals(InetAddress.getByName(h))) return true;
+                    if (!ip && type == 2) {
+                        hasDnsSan = true;
+                        if (dnsMatches(value, h)) return true;
+                    }
+                }
+            }
+            if (ip || hasDnsSan) return false;
+
+            for (Rdn rdn : new LdapName(cert.getSubjectX500Principal().getName()).getRdns()) {
+                if (rdn.getType().equalsIgnoreCase("CN") && dnsMatches(String.valueOf(rdn.getValue()), h)) return true;
+            }
+            return false;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static boolean dnsMatches(String pattern, String host) {
+        String p = pattern.toLowerCase(Locale.ROOT);
+        if (p.endsWith(".")) p = p.substring(0, p.length() - 1);
+        if (!p.startsWith("*.")) return p.equals(host);
+        String suffix = p.substring(1); // ".example.com"
+        return host.endsWith(suffix) && host.indexOf('.') == host.length() - suffix.length();
+    }
+
+    private static X509TrustManager defaultTrustManager() throws IOException {
+        try {
+            TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            tmf.init((KeyStore) null);
+            for (TrustManager tm : tmf.getTrustManagers()) {
+                if (tm instanceof X509TrustManager x) return x;
+            }
+        } catch (Exception e) {
+            throw new IOException("Truststore padrão indisponível: " + e.getMessage(), e);
+        }
+        throw new IOException("Truststore padrão sem X509TrustManager");
+    }
+
+    private static TlsReport failed(String address, String serverName, String error) {
+        return new TlsReport(address, serverName, List.of(), null, 0, null, 0, false, false, false, error);
+    }
+
+    // ===== suites por versão =====
+
+    // suites que a JVM oferece, menos as da tabela do ClientHello cru (essas vão por lá)
+    private static final class SupportedSuites {
+        final List<String> tls13 = new ArrayList<>();
+        final List<String> tls12 = new ArrayList<>();
+
+        SupportedSuites(String[] all) {
+            for (String s : all) {
+                if (s.endsWith("_SCSV") || TlsClientHello.covers(s)) continue;
+                if (s.startsWith("TLS_AES_") || s.startsWith("TLS_CHACHA20_")) tls13.add(s);
+                else tls12.add(s);
+            }
+        }
+
+        String[] forProtocol(String protocol) {
+            return (protocol.equals("TLSv1.3") ? tls13 : tls12).toArray(new String[0]);
+        }
+    }
+
+    // ===== limite de handshakes simultâneos por análise =====
+
+    private final class Analysis {
+        final InetSocketAddress target;
+        final String serverName;
+        final String tenant;
+
+        // protegido pelo monitor da Analysis
+        final ArrayDeque<Pending> waiting = new ArrayDeque<>();
+        int running;
+        boolean closed;
+
+        Analysis(InetSocketAddress target, String serverName, String tenant) {
+            this.target = target;
+            this.serverName = serverName;
+            this.tenant = tenant;
+        }
+
+        CompletableFuture<TlsHandshakeEngine.Outcome> handshake(String[] protocols, String[] suites) {
+            return submit(() -> engine.handshake(target, serverName, protocols, suites, timeoutMs));
+        }
+
+        // ClientHello cru; ServerHello em outra versão = versão recusada (o servidor faria downgrade)
+        CompletableFuture<TlsHandshakeEngine.Outcome> hello(int version, Collection<Integer> suites) {
+            String protocol = TlsClientHello.protocolName(version);
+            return submit(() -> engine.hello(target, TlsClientHello.build(version, suites, serverName), timeoutMs))
+                    .thenApply(o -> o.kind != TlsHandshakeEngine.Kind.ACCEPTED || protocol.equals(o.protocol) ? o
+                            : TlsHandshakeEngine.Outcome.of(TlsHandshakeEngine.Kind.REJECTED,
+                                    "servidor respondeu com " + o.protocol));
+        }
+
+        private CompletableFuture<TlsHandshakeEngine.Outcome> submit(
+                Supplier<CompletableFuture<TlsHandshakeEngine.Outcome>> attempt) {
+            Pending p = new Pending(attempt);
+            synchronized (this) {
+                if (closed) {
+                    p.out.complete(TlsHandshakeEngine.Outcome.of(TlsHandshakeEngine.Kind.FAILED, "orçamento esgotado"));
+                    return p.out;
+                }
+                if (running >= parallel) {
+                    waiting.add(p);
+                    return p.out;
+                }
+                running++;
+            }
+            start(p);
+            return p.out;
+        }
+
+        // 1 vaga do agendador por handshake: divide a rede de forma justa com os outros scans
+        private void start(Pending p) {
+            probeScheduler.acquire(tenant, () -> {
+                p.attempt.get().whenComplete((o, err) -> {
+                    probeScheduler.release(tenant);
+                    p.out.complete(o != null ? o
+                            : TlsHandshakeEngine.Outcome.of(TlsHandshakeEngine.Kind.FAILED, String.valueOf(err)));
+                    next();
+                });
+                return true;
+            });
+        }
+
+        private void next() {
+            Pending n;
+            synchronized (this) {
+                n = closed ? null : waiting.poll();
+                if (n == null) {
+                    running--;
+                    return;
+                }
+            }
+            start(n);
+        }
+
+        // fim do orçamento: o que ainda não começou não começa mais
+        void close() {
+            List<Pending> dropped;
+            synchronized (this) {
+                closed = true;
+                dropped = new ArrayList<>(waiting);
+                waiting.clear();
+            }
+            for (Pending n : dropped) {
+                n.out.complete(TlsHandshakeEngine.Outcome.of(TlsHandshakeEngine.Kind.FAILED, "orçamento esgotado"));
+            }
+        }
+    }
+
+    private static final class Pending {
+        final Supplier<CompletableFuture<TlsHandshakeEngine.Outcome>> attempt;
+        final CompletableFuture<TlsHandshakeEngine.Outcome> out = new CompletableFuture<>();
+
+        Pending(Supplier<CompletableFuture<TlsHandshakeEngine.Outcome>> attempt) {
+            this.attempt = attempt;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        engine.stop();
+    }
+}
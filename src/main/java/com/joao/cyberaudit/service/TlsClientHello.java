@@ -0,0 +1,199 @@
+package com.joao.cyberaudit.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.*;
+
+/*
+ * ClientHello montado byte a byte (RFC 5246 / RFC 6101), sem SSLEngine.
+ * A JVM não oferece SSLv3/TLSv1/1.1 nem RC4/3DES/NULL/anon/EXPORT (jdk.tls.disabledAlgorithms),
+ * então essas ofertas vão cruas e só o ServerHello é lido: versão e suite que o servidor escolheu.
+ * Nenhuma chave é negociada; a conexão fecha logo depois do ServerHello.
+ */
+final class TlsClientHello {
+
+    static final int SSL3 = 0x0300;
+    static final int TLS10 = 0x0301;
+    static final int TLS11 = 0x0302;
+    static final int TLS12 = 0x0303;
+
+    private static final Map<String, Integer> VERSIONS = Map.of("SSLv3", SSL3, "TLSv1", TLS10, "TLSv1.1", TLS11, "TLSv1.2", TLS12);
+
+    // suites pré-TLS 1.3 testadas cru (nome IANA), das fortes para as quebradas
+    static final Map<Integer, String> SUITES = new LinkedHashMap<>();
+    static {
+        SUITES.put(0xC014, "TLS_ECDHE_RSA_WITH_AES_256_CBC_SHA");
+        SUITES.put(0xC013, "TLS_ECDHE_RSA_WITH_AES_128_CBC_SHA");
+        SUITES.put(0xC00A, "TLS_ECDHE_ECDSA_WITH_AES_256_CBC_SHA");
+        SUITES.put(0xC009, "TLS_ECDHE_ECDSA_WITH_AES_128_CBC_SHA");
+        SUITES.put(0x0039, "TLS_DHE_RSA_WITH_AES_256_CBC_SHA");
+        SUITES.put(0x0033, "TLS_DHE_RSA_WITH_AES_128_CBC_SHA");
+        SUITES.put(0x0035, "TLS_RSA_WITH_AES_256_CBC_SHA");
+        SUITES.put(0x002F, "TLS_RSA_WITH_AES_128_CBC_SHA");
+        SUITES.put(0x0084, "TLS_RSA_WITH_CAMELLIA_256_CBC_SHA");
+        SUITES.put(0x0041, "TLS_RSA_WITH_CAMELLIA_128_CBC_SHA");
+        SUITES.put(0x0096, "TLS_RSA_WITH_SEED_CBC_SHA");
+        // 3DES / DES
+        SUITES.put(0xC012, "TLS_ECDHE_RSA_WITH_3DES_EDE_CBC_SHA");
+        SUITES.put(0x0016, "TLS_DHE_RSA_WITH_3DES_EDE_CBC_SHA");
+        SUITES.put(0x000A, "TLS_RSA_WITH_3DES_EDE_CBC_SHA");
+        SUITES.put(0x0015, "TLS_DHE_RSA_WITH_DES_CBC_SHA");
+        SUITES.put(0x0009, "TLS_RSA_WITH_DES_CBC_SHA");
+        // RC4
+        SUITES.put(0xC011, "TLS_ECDHE_RSA_WITH_RC4_128_SHA");
+        SUITES.put(0xC007, "TLS_ECDHE_ECDSA_WITH_RC4_128_SHA");
+        SUITES.put(0x0005, "TLS_RSA_WITH_RC4_128_SHA");
+        SUITES.put(0x0004, "TLS_RSA_WITH_RC4_128_MD5");
+        // EXPORT
+        SUITES.put(0x0014, "TLS_DHE_RSA_EXPORT_WITH_DES40_CBC_SHA");
+        SUITES.put(0x0008, "TLS_RSA_EXPORT_WITH_DES40_CBC_SHA");
+        SUITES.put(0x0006, "TLS_RSA_EXPORT_WITH_RC2_CBC_40_MD5");
+        SUITES.put(0x0003, "TLS_RSA_EXPORT_WITH_RC4_40_MD5");
+        // sem autenticação
+        SUITES.put(0xC018, "TLS_ECDH_anon_WITH_AES_128_CBC_SHA");
+        SUITES.put(0xC016, "TLS_ECDH_anon_WITH_RC4_128_SHA");
+        SUITES.put(0x0034, "TLS_DH_anon_WITH_AES_128_CBC_SHA");
+        SUITES.put(0x003A, "TLS_DH_anon_WITH_AES_256_CBC_SHA");
+        SUITES.put(0x001B, "TLS_DH_anon_WITH_3DES_EDE_CBC_SHA");
+        SUITES.put(0x0018, "TLS_DH_anon_WITH_RC4_128_MD5");
+        // sem cifra
+        SUITES.put(0xC010, "TLS_ECDHE_RSA_WITH_NULL_SHA");
+        SUITES.put(0xC006, "TLS_ECDHE_ECDSA_WITH_NULL_SHA");
+        SUITES.put(0x0002, "TLS_RSA_WITH_NULL_SHA");
+        SUITES.put(0x0001, "TLS_RSA_WITH_NULL_MD5");
+    }
+
+    private static final int[] GROUPS = {0x001D, 0x0017, 0x0018, 0x0019}; // x25519, P-256, P-384, P-521
+    private static final int[] SIGNATURES = {0x0403, 0x0503, 0x0603, 0x0804, 0x0805, 0x0806,
+            0x0401, 0x0501, 0x0601, 0x0203, 0x0201};
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private TlsClientHello() {
+    }
+
+    // -1 = versão que não vai crua (TLS 1.3)
+    static int version(String protocol) {
+        return VERSIONS.getOrDefault(protocol, -1);
+    }
+
+    static String protocolName(int version) {
+        for (Map.Entry<String, Integer> e : VERSIONS.entrySet()) {
+            if (e.getValue() == version) return e.getKey();
+        }
+        return String.format("0x%04X", version);
+    }
+
+    // a tabela cobre a suite? (a JVM chama algumas de SSL_...)
+    static boolean covers(String jsseName) {
+        String n = jsseName.startsWith("SSL_") ? "TLS_" + jsseName.substring(4) : jsseName;
+        return SUITES.containsValue(n);
+    }
+
+    static String suiteName(int code) {
+        String n = SUITES.get(code);
+        return n != null ? n : String.format("0x%04X", code);
+    }
+
+    /*
+     * ClientHello oferecendo só "version" e "suites". SNI só para nome (não IP).
+     * SSLv3 vai sem extensões; signature_algorithms só em TLS 1.2. Registro na versão pedida (SSLv3) ou TLS 1.0.
+     */
+    static byte[] build(int version, Collection<Integer> suites, String serverName) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        put16(body, version);
+        byte[] random = new byte[32];
+        RANDOM.nextBytes(random);
+        body.writeBytes(random);
+        body.write(0); // sem session id
+
+        put16(body, suites.size() * 2);
+        for (int s : suites) put16(body, s);
+        body.write(1);
+        body.write(0); // compressão: null
+
+        if (version > SSL3) {
+            ByteArrayOutputStream ext = new ByteArrayOutputStream();
+            if (serverName != null && !TlsHandshakeEngine.isIpLiteral(serverName)) {
+                byte[] name = serverName.getBytes(StandardCharsets.US_ASCII);
+                put16(ext, 0x0000);
+                put16(ext, name.length + 5);
+                put16(ext, name.length + 3);
+                ext.write(0); // host_name
+                put16(ext, name.length);
+                ext.writeBytes(name);
+            }
+            put16(ext, 0x000A); // supported_groups
+            put16(ext, GROUPS.length * 2 + 2);
+            put16(ext, GROUPS.length * 2);
+            for (int g : GROUPS) put16(ext, g);
+            put16(ext, 0x000B); // ec_point_formats: uncompressed
+            put16(ext, 2);
+            ext.write(1);
+            ext.write(0);
+            if (version >= TLS12) {
+                put16(ext, 0x000D);
+                put16(ext, SIGNATURES.length * 2 + 2);
+                put16(ext, SIGNATURES.length * 2);
+                for (int s : SIGNATURES) put16(ext, s);
+            }
+            put16(ext, 0xFF01); // renegotiation_info vazio (servidores que exigem renegociação segura)
+            put16(ext, 1);
+            ext.write(0);
+
+            put16(body, ext.size());
+            body.writeBytes(ext.toByteArray());
+        }
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        record.write(0x16);
+        put16(record, version == SSL3 ? SSL3 : TLS10);
+        put16(record, body.size() + 4);
+        record.write(0x01); // ClientHello
+        record.write(0);
+        put16(record, body.size());
+        record.writeBytes(body.toByteArray());
+        return record.toByteArray();
+    }
+
+    /*
+     * Lê a resposta a partir do início de "in" (modo escrita, bytes em [0, position)).
+     * null = ainda faltam bytes. ServerHello -> ACCEPTED com versão e suite escolhidas; alerta ou outra coisa -> REJECTED.
+     */
+    static TlsHandshakeEngine.Outcome parseReply(ByteBuffer in) {
+        int n = in.position();
+        if (n < 5) return null;
+        int type = in.get(0) & 0xFF;
+        if (type == 0x15) {
+            if (n < 7) return null;
+            return TlsHandshakeEngine.Outcome.of(TlsHandshakeEngine.Kind.REJECTED, "alerta TLS " + (in.get(6) & 0xFF));
+        }
+        if (type != 0x16) {
+            return TlsHandshakeEngine.Outcome.of(TlsHandshakeEngine.Kind.REJECTED, "resposta não é TLS");
+        }
+        if (n < 6) return null;
+        if ((in.get(5) & 0xFF) != 0x02) {
+            return TlsHandshakeEngine.Outcome.of(TlsHandshakeEngine.Kind.REJECTED, "handshake inesperado");
+        }
+
+        // registro(5) + tipo/tamanho(4) + versão(2) + random(32) + tamanho do session id(1)
+        if (n < 44) return null;
+        int sessionId = in.get(43) & 0xFF;
+        if (n < 44 + sessionId + 2) return null;
+        int version = u16(in, 9);
+        int suite = u16(in, 44 + sessionId);
+        return new TlsHandshakeEngine.Outcome(TlsHandshakeEngine.Kind.ACCEPTED,
+                protocolName(version), suiteName(suite), null, null);
+    }
+
+    private static int u16(ByteBuffer b, int at) {
+        return ((b.get(at) & 0xFF) << 8) | (b.get(at + 1) & 0xFF);
+    }
+
+    private static void put16(ByteArrayOutputStream out, int v) {
+        out.write((v >>> 8) & 0xFF);
+        out.write(v & 0xFF);
+    }
+}
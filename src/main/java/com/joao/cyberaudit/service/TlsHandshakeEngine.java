@@ -0,0 +1,424 @@
+package com.joao.cyberaudit.service;
+
+import javax.net.ssl.*;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/*
+ * Handshakes TLS de teste: SSLEngine sobre SocketChannel não-bloqueante, todos num único Selector ("tls-engine").
+ * Cada tentativa oferece só os protocolos/suites pedidos e termina no fim do handshake (nenhum dado de aplicação).
+ *   handshake completo            -> ACCEPTED (protocolo, suite e cadeia negociados)
+ *   alerta/conexão fechada        -> REJECTED
+ *   a JVM não gera o ClientHello  -> UNTESTABLE (protocolo/suite desabilitado localmente, nem conecta)
+ *   erro de conexão / timeout     -> FAILED
+ * O que a JVM não oferece (versões/suites legadas) vai como ClientHello cru (TlsClientHello), no mesmo Selector:
+ * aí só o ServerHello é lido (versão e suite escolhidas, sem cadeia).
+ * Confia em qualquer certificado: aqui o objetivo é ver o que o servidor oferece, não validar (isso é feito à parte).
+ */
+final class TlsHandshakeEngine {
+
+    enum Kind { ACCEPTED, REJECTED, UNTESTABLE, FAILED }
+
+    static final class Outcome {
+        final Kind kind;
+        final String protocol;
+        final String cipherSuite;
+        final X509Certificate[] chain;
+        final String detail;
+
+        Outcome(Kind kind, String protocol, String cipherSuite, X509Certificate[] chain, String detail) {
+            this.kind = kind;
+            this.protocol = protocol;
+            this.cipherSuite = cipherSuite;
+            this.chain = chain;
+            this.detail = detail;
+        }
+
+        static Outcome of(Kind kind, String detail) {
+            return new Outcome(kind, null, null, null, detail);
+        }
+    }
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+    private static final int RAW_READ = 4096; // o ServerHello cabe folgado
+
+    private final SSLContext context;
+    private final Loop loop;
+
+    TlsHandshakeEngine() throws IOException {
+        try {
+            this.context = SSLContext.getInstance("TLS");
+            this.context.init(null, new TrustManager[]{new TrustAll()}, null);
+        } catch (Exception e) {
+            throw new IOException("SSLContext indisponível: " + e.getMessage(), e);
+        }
+        this.loop = new Loop();
+        this.loop.thread.start();
+    }
+
+    // protocolos e suites que esta JVM oferece de fato (os desabilitados ficam de fora)
+    SSLParameters enabled() {
+        return context.getDefaultSSLParameters();
+    }
+
+    /*
+     * 1 handshake oferecendo só "protocols"/"suites" (null = padrão da JVM). serverName vai no SNI (se não for IP).
+     * O ClientHello é gerado aqui mesmo, antes de conectar: se a JVM recusar, nem abre socket.
+     */
+    CompletableFuture<Outcome> handshake(InetSocketAddress target, String serverName, String[] protocols,
+                                         String[] suites, long timeoutMs) {
+        CompletableFuture<Outcome> result = new CompletableFuture<>();
+        Conn c;
+        try {
+            SSLEngine engine = context.createSSLEngine();
+            engine.setUseClientMode(true);
+            if (protocols != null) engine.setEnabledProtocols(protocols);
+            if (suites != null) engine.setEnabledCipherSuites(suites);
+            if (serverName != null && !isIpLiteral(serverName)) {
+                SSLParameters params = engine.getSSLParameters();
+                params.setServerNames(List.of(new SNIHostName(serverName)));
+                engine.setSSLParameters(params);
+            }
+
+            c = new Conn(engine, target, result, timeoutMs);
+            engine.beginHandshake();
+            c.wrap();
+            if (!c.netOut.hasRemaining()) {
+                result.complete(Outcome.of(Kind.UNTESTABLE, "ClientHello vazio"));
+                return result;
+            }
+        } catch (IllegalArgumentException | SSLException e) {
+            // "No appropriate protocol", suite desconhecida...: limitação da JVM, não do servidor
+            result.complete(Outcome.of(Kind.UNTESTABLE, e.getMessage()));
+            return result;
+        }
+
+        loop.submit(c);
+        return result;
+    }
+
+    // 1 ClientHello já montado (TlsClientHello.build); o resultado vem de TlsClientHello.parseReply
+    CompletableFuture<Outcome> hello(InetSocketAddress target, byte[] clientHello, long timeoutMs) {
+        CompletableFuture<Outcome> result = new CompletableFuture<>();
+        loop.submit(new Conn(clientHello, target, result, timeoutMs));
+        return result;
+    }
+
+    void stop() {
+        loop.stop();
+    }
+
+    // ===== conexão =====
+
+    private static final class Conn implements Comparable<Conn> {
+        final SSLEngine engine; // null = ClientHello cru
+        final InetSocketAddress target;
+        final CompletableFuture<Outcome> result;
+        final long timeoutMs;
+
+        final ByteBuffer netOut;
+        ByteBuffer netIn;
+        ByteBuffer appIn;
+
+        SocketChannel channel;
+        SelectionKey key;
+        long deadlineNanos;
+        boolean done;
+
+        Conn(SSLEngine engine, InetSocketAddress target, CompletableFuture<Outcome> result, long timeoutMs) {
+            this.engine = engine;
+            this.target = target;
+            this.result = result;
+            this.timeoutMs = timeoutMs;
+            SSLSession s = engine.getSession();
+            this.netOut = ByteBuffer.allocate(s.getPacketBufferSize());
+            this.netIn = ByteBuffer.allocate(s.getPacketBufferSize());
+            this.appIn = ByteBuffer.allocate(s.getApplicationBufferSize());
+            this.netOut.flip(); // vazio, pronto para escrita no canal
+        }
+
+        Conn(byte[] clientHello, InetSocketAddress target, CompletableFuture<Outcome> result, long timeoutMs) {
+            this.engine = null;
+            this.target = target;
+            this.result = result;
+            this.timeoutMs = timeoutMs;
+            this.netOut = ByteBuffer.wrap(clientHello);
+            this.netIn = ByteBuffer.allocate(RAW_READ);
+        }
+
+        // gera o próximo registro TLS (netOut sai em modo leitura)
+        SSLEngineResult wrap() throws SSLException {
+            netOut.compact();
+            try {
+                return engine.wrap(EMPTY, netOut);
+            } finally {
+                netOut.flip();
+            }
+        }
+
+        @Override
+        public int compareTo(Conn o) {
+            return Long.compare(deadlineNanos, o.deadlineNanos);
+        }
+    }
+
+    private final class Loop implements Runnable {
+        final Selector selector;
+        final Thread thread;
+        final Queue<Conn> incoming = new ConcurrentLinkedQueue<>();
+
+        // só a thread do loop
+        final PriorityQueue<Conn> deadlines = new PriorityQueue<>();
+
+        volatile boolean running = true;
+
+        Loop() throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "tls-engine");
+            this.thread.setDaemon(true);
+        }
+
+        void submit(Conn c) {
+            incoming.add(c);
+            selector.wakeup();
+        }
+
+        void stop() {
+            running = false;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    startIncoming();
+                    selector.select(waitMs());
+                    processReady();
+                    expireTimeouts();
+                } catch (Exception e) {
+                    // loop não pode morrer por um canal com problema
+                }
+            }
+            for (SelectionKey k : selector.keys()) ConnectEngine.closeQuietly(k.channel());
+            ConnectEngine.closeQuietly(selector);
+        }
+
+        private void startIncoming() {
+            Conn c;
+            while ((c = incoming.poll()) != null) {
+                try {
+                    c.deadlineNanos = System.nanoTime() + c.timeoutMs * 1_000_000L;
+                    deadlines.add(c);
+                    c.channel = SocketChannel.open();
+                    c.channel.configureBlocking(false);
+                    boolean connected = c.channel.connect(c.target);
+                    c.key = c.channel.register(selector, connected ? 0 : SelectionKey.OP_CONNECT, c);
+                    if (connected) drive(c);
+                } catch (Exception e) {
+                    fail(c, e);
+                }
+            }
+        }
+
+        private long waitMs() {
+            Conn first = deadlines.peek();
+            if (first == null) return 0; // 0 = espera até wakeup
+            long ms = (first.deadlineNanos - System.nanoTime()) / 1_000_000;
+            return Math.max(1, ms);
+        }
+
+        private void processReady() {
+            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey key = it.next();
+                it.remove();
+
+                Conn c = (Conn) key.attachment();
+                if (c == null || c.done) continue;
+
+                try {
+                    if (key.isConnectable()) {
+                        if (!c.channel.finishConnect()) continue;
+                    } else if (key.isReadable()) {
+                        if (c.channel.read(c.netIn) < 0) {
+                            // fechou sem alerta depois do ClientHello: servidor não aceita a oferta
+                            complete(c, Outcome.of(Kind.REJECTED, "conexão fechada pelo servidor"));
+                            continue;
+                        }
+                    }
+                    drive(c);
+                } catch (Exception e) {
+                    fail(c, e);
+                }
+            }
+        }
+
+        // avança o handshake até precisar esperar pela rede (ou terminar)
+        private void drive(Conn c) throws IOException {
+            while (!c.done) {
+                if (c.netOut.hasRemaining()) {
+                    c.channel.write(c.netOut);
+                    if (c.netOut.hasRemaining()) {
+                        c.key.interestOps(SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+
+                if (c.engine == null) {
+                    Outcome o = TlsClientHello.parseReply(c.netIn);
+                    if (o != null) {
+                        complete(c, o);
+                    } else {
+                        if (!c.netIn.hasRemaining()) c.netIn = grow(c.netIn);
+                        c.key.interestOps(SelectionKey.OP_READ);
+                    }
+                    return;
+                }
+
+                SSLEngineResult.HandshakeStatus hs = c.engine.getHandshakeStatus();
+                switch (hs) {
+                    case NEED_WRAP: {
+                        SSLEngineResult r = c.wrap();
+                        if (r.getStatus() == SSLEngineResult.Status.CLOSED && !c.netOut.hasRemaining()) {
+                            complete(c, Outcome.of(Kind.REJECTED, "handshake encerrado"));
+                            return;
+                        }
+                        break;
+                    }
+                    case NEED_UNWRAP:
+                    case NEED_UNWRAP_AGAIN: {
+                        c.netIn.flip();
+                        SSLEngineResult r;
+                        try {
+                            r = c.engine.unwrap(c.netIn, c.appIn);
+                        } finally {
+                            c.netIn.compact();
+                        }
+                        if (r.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW) {
+                            if (!c.netIn.hasRemaining()) c.netIn = grow(c.netIn);
+                            c.key.interestOps(SelectionKey.OP_READ);
+                            return;
+                        }
+                        if (r.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                            c.appIn = ByteBuffer.allocate(c.appIn.capacity() * 2);
+                        } else {
+                            c.appIn.clear(); // dado de aplicação não interessa
+                        }
+                        if (r.getStatus() == SSLEngineResult.Status.CLOSED) {
+                            complete(c, Outcome.of(Kind.REJECTED, "handshake encerrado pelo servidor"));
+                            return;
+                        }
+                        break;
+                    }
+                    case NEED_TASK: {
+                        Runnable task;
+                        while ((task = c.engine.getDelegatedTask()) != null) task.run();
+                        break;
+                    }
+                    default: {
+                        // NOT_HANDSHAKING depois do beginHandshake = handshake completo
+                        complete(c, accepted(c.engine.getSession()));
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void expireTimeouts() {
+            long now = System.nanoTime();
+            while (!deadlines.isEmpty()) {
+                Conn c = deadlines.peek();
+                if (c.done) {
+                    deadlines.poll();
+                    continue;
+                }
+                if (c.deadlineNanos > now) break;
+                deadlines.poll();
+                complete(c, Outcome.of(Kind.FAILED, "timeout"));
+            }
+        }
+
+        // conexão já aberta: reset/alerta no meio do handshake conta como recusa; antes disso, falha de rede
+        private void fail(Conn c, Exception e) {
+            boolean connected = c.channel != null && c.channel.isConnected();
+            complete(c, Outcome.of(connected ? Kind.REJECTED : Kind.FAILED, e.getMessage()));
+        }
+
+        private void complete(Conn c, Outcome o) {
+            if (c.done) return;
+            c.done = true;
+            ConnectEngine.closeQuietly(c.channel);
+            c.result.complete(o);
+        }
+    }
+
+    private static Outcome accepted(SSLSession session) {
+        X509Certificate[] chain = null;
+        try {
+            Certificate[] certs = session.getPeerCertificates();
+            chain = new X509Certificate[certs.length];
+            for (int i = 0; i < certs.length; i++) chain[i] = (X509Certificate) certs[i];
+        } catch (Exception e) {
+            // suite anônima: sem certificado
+        }
+        return new Outcome(Kind.ACCEPTED, session.getProtocol(), session.getCipherSuite(), chain, null);
+    }
+
+    private static ByteBuffer grow(ByteBuffer buf) {
+        ByteBuffer bigger = ByteBuffer.allocate(buf.capacity() * 2);
+        buf.flip();
+        bigger.put(buf);
+        return bigger;
+    }
+
+    static boolean isIpLiteral(String host) {
+        if (host.indexOf(':') >= 0) return true; // IPv6
+        for (int i = 0; i < host.length(); i++) {
+            char ch = host.charAt(i);
+            if (ch != '.' && (ch < '0' || ch > '9')) return false;
+        }
+        return !host.isEmpty();
+    }
+
+    // aceita qualquer cadeia (sem checar nome): a validação de verdade é feita depois, sobre a cadeia capturada
+    private static final class TrustAll extends X509ExtendedTrustManager {
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, java.net.Socket socket) {
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, java.net.Socket socket) {
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }
+}
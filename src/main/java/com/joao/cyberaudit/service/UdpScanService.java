@@ -0,0 +1,589 @@
+package com.joao.cyberaudit.service;
+
+import com.joao.cyberaudit.model.PortFinding;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Supplier;
+
+/*
+ * Scan UDP: 1 thread de Selector segura todos os datagramas em andamento (sem thread por probe).
+ * Cada porta recebe o payload do protocolo (query DNS, request NTP, get SNMP...), com reenvio em backoff.
+ *   resposta           -> OPEN
+ *   ICMP port unreach. -> CLOSED (canal conectado: chega como PortUnreachableException)
+ *   silêncio           -> OPEN|FILTERED (UDP não distingue porta filtrada de serviço que ignora o probe)
+ */
+@Service
+public class UdpScanService {
+
+    public static final String PROTOCOL = "udp";
+
+    public static final String OPEN = "OPEN";
+    public static final String OPEN_FILTERED = "OPEN|FILTERED";
+    public static final String CLOSED = "CLOSED";
+
+    private static final int MAX_DATAGRAM = 2048;
+
+    /*
+     * porta -> serviço + payload do probe (gerado por envio: DNS/NetBIOS levam ID de transação aleatório).
+     * echoesTxid: a resposta repete os 2 primeiros bytes do request; datagrama com outro ID é ignorado.
+     */
+    private static final class UdpProbe {
+        final int port;
+        final String service;
+        final Supplier<byte[]> payload;
+        final boolean echoesTxid;
+
+        UdpProbe(int port, String service, Supplier<byte[]> payload, boolean echoesTxid) {
+            this.port = port;
+            this.service = service;
+            this.payload = payload;
+            this.echoesTxid = echoesTxid;
+        }
+
+        boolean accepts(byte[] sent, ByteBuffer reply) {
+            if (!echoesTxid) return true;
+            int p = reply.position();
+            return reply.remaining() >= 2 && reply.get(p) == sent[0] && reply.get(p + 1) == sent[1];
+        }
+    }
+
+    private static final byte[] SSDP_SEARCH = ("M-SEARCH * HTTP/1.1\r\nHOST: 239.255.255.250:1900\r\n"
+            + "MAN: \"ssdp:discover\"\r\nMX: 1\r\nST: ssdp:all\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+
+    private static final List<UdpProbe> PROBES = List.of(
+            new UdpProbe(53, "DNS", UdpScanService::dnsQuery, true),
+            new UdpProbe(123, "NTP", UdpScanService::ntpRequest, false),
+            new UdpProbe(137, "NetBIOS-NS", UdpScanService::netbiosStatus, true),
+            new UdpProbe(161, "SNMP", UdpScanService::snmpGetSysDescr, false),
+            new UdpProbe(1900, "SSDP", () -> SSDP_SEARCH, false),
+            // consulta unicast de porta != 5353: o responder mDNS repete o ID (RFC 6762, "legacy unicast")
+            new UdpProbe(5353, "mDNS", UdpScanService::dnsQuery, true),
+            new UdpProbe(11211, "Memcached", UdpScanService::memcachedVersion, false)
+    );
+
+    private final ProbeScheduler probeScheduler;
+    private final int timeoutMs;
+    private final int retries;
+    private final Loop loop;
+
+    public UdpScanService(
+            ProbeScheduler probeScheduler,
+            @Value("${cyberaudit.udp.timeout-ms:1000}") int timeoutMs,
+            @Value("${cyberaudit.udp.retries:2}") int retries
+    ) throws IOException {
+        this.probeScheduler = probeScheduler;
+        this.timeoutMs = Math.max(100, timeoutMs);
+        this.retries = Math.max(0, retries);
+        this.loop = new Loop();
+        this.loop.thread.start();
+    }
+
+    // pior caso de 1 endereço: todas as tentativas em timeout (backoff dobra a cada reenvio)
+    public long budgetMs() {
+        long total = 0;
+        for (int attempt = 0; attempt <= retries; attempt++) total += (long) timeoutMs << Math.min(attempt, 4);
+        return total;
+    }
+
+    /*
+     * Varre as portas UDP conhecidas dos endereços já escolhidos pelo port scan TCP.
+     * Devolve OPEN e OPEN|FILTERED (CLOSED fica de fora, como no TCP).
+     */
+    public CompletableFuture<List<PortFinding>> scanAsync(InetAddress addr) {
+        return scanAsync(addr, port -> port);
+    }
+
+    // portOf: porta real de destino de cada probe (testes apontam para responders locais em portas livres)
+    CompletableFuture<List<PortFinding>> scanAsync(InetAddress addr, IntUnaryOperator portOf) {
+        String tenant = ProbeScheduler.currentTenant();
+        HostUdp host = new HostUdp(addr, portOf);
+
+        // 1 slot do agendador por endereço: os datagramas do host saem juntos
+        probeScheduler.acquire(tenant, () -> {
+            host.start();
+            return true;
+        });
+        return host.done.whenComplete((v, err) -> probeScheduler.release(tenant));
+    }
+
+    // ===== estado por endereço =====
+
+    private final class HostUdp {
+        final InetAddress addr;
+        final IntUnaryOperator portOf;
+        final String[] states = new String[PROBES.size()];
+        final String[] evidence = new String[PROBES.size()];
+        final long[] latency = new long[PROBES.size()];
+        final CompletableFuture<List<PortFinding>> done = new CompletableFuture<>();
+        int remaining = PROBES.size(); // só a thread do loop mexe
+
+        HostUdp(InetAddress addr, IntUnaryOperator portOf) {
+            this.addr = addr;
+            this.portOf = portOf;
+        }
+
+        void start() {
+            for (int i = 0; i < PROBES.size(); i++) {
+                loop.submit(new Pending(this, i));
+            }
+        }
+
+        // thread do loop
+        void finish(int index, String state, String ev, long latencyMs) {
+            states[index] = state;
+            evidence[index] = ev;
+            latency[index] = latencyMs;
+            if (--remaining == 0) done.complete(findings());
+        }
+
+        List<PortFinding> findings() {
+            List<PortFinding> out = new ArrayList<>();
+            for (int i = 0; i < PROBES.size(); i++) {
+                if (states[i] == null || CLOSED.equals(states[i])) continue;
+                out.add(finding(addr, PROBES.get(i), states[i], latency[i], evidence[i]));
+            }
+            return out;
+        }
+    }
+
+    private static final class Pending implements Comparable<Pending> {
+        final HostUdp host;
+        final int index;
+        final UdpProbe probe;
+        // mesmo payload (e ID) nos reenvios: resposta atrasada da 1ª tentativa ainda vale
+        final byte[] payload;
+        DatagramChannel channel;
+        long firstSentNanos;
+        long deadlineNanos;
+        int attempt;
+        boolean done;
+
+        Pending(HostUdp host, int index) {
+            this.host = host;
+            this.index = index;
+            this.probe = PROBES.get(index);
+            this.payload = probe.payload.get();
+        }
+
+        long latencyMs() {
+            return (System.nanoTime() - firstSentNanos) / 1_000_000;
+        }
+
+        @Override
+        public int compareTo(Pending o) {
+            return Long.compare(deadlineNanos, o.deadlineNanos);
+        }
+    }
+
+    private final class Loop implements Runnable {
+        final Selector selector;
+        final Thread thread;
+        final Queue<Pending> incoming = new ConcurrentLinkedQueue<>();
+
+        // só a thread do loop
+        final PriorityQueue<Pending> deadlines = new PriorityQueue<>();
+        final ByteBuffer readBuf = ByteBuffer.allocate(MAX_DATAGRAM);
+
+        volatile boolean running = true;
+
+        Loop() throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "udp-engine");
+            this.thread.setDaemon(true);
+        }
+
+        void submit(Pending p) {
+            incoming.add(p);
+            selector.wakeup();
+        }
+
+        void stop() {
+            running = false;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    startIncoming();
+                    selector.select(waitMs());
+                    processReady();
+                    expireTimeouts();
+                } catch (Exception e) {
+                    // loop não pode morrer por um canal com problema
+                }
+            }
+            for (SelectionKey k : selector.keys()) ConnectEngine.closeQuietly(k.channel());
+            ConnectEngine.closeQuietly(selector);
+        }
+
+        private void startIncoming() {
+            Pending p;
+            while ((p = incoming.poll()) != null) {
+                try {
+                    // connect() em UDP só fixa o destino: habilita o ICMP unreachable no read
+                    p.channel = DatagramChannel.open();
+                    p.channel.configureBlocking(false);
+                    p.channel.connect(new InetSocketAddress(p.host.addr, p.host.portOf.applyAsInt(p.probe.port)));
+                    p.channel.register(selector, SelectionKey.OP_READ, p);
+                    p.firstSentNanos = System.nanoTime();
+                    send(p);
+                } catch (PortUnreachableException e) {
+                    complete(p, CLOSED, null);
+                } catch (Exception e) {
+                    // sem rota/erro local: não dá pra afirmar nada sobre a porta
+                    complete(p, OPEN_FILTERED, null);
+                }
+            }
+        }
+
+        private void send(Pending p) throws IOException {
+            p.channel.write(ByteBuffer.wrap(p.payload));
+            p.deadlineNanos = System.nanoTime() + ((long) timeoutMs << Math.min(p.attempt, 4)) * 1_000_000L;
+            deadlines.add(p);
+        }
+
+        private long waitMs() {
+            Pending first = deadlines.peek();
+            if (first == null) return 0; // 0 = espera até wakeup
+            long ms = (first.deadlineNanos - System.nanoTime()) / 1_000_000;
+            return Math.max(1, ms);
+        }
+
+        private void processReady() {
+            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey key = it.next();
+                it.remove();
+
+                Pending p = (Pending) key.attachment();
+                if (p == null || p.done) continue;
+
+                try {
+                    readBuf.clear();
+                    int n = p.channel.read(readBuf);
+                    if (n <= 0) continue;
+                    readBuf.flip();
+                    // ID diferente: resposta a outro scan ou forjada; continua esperando a certa
+                    if (!p.probe.accepts(p.payload, readBuf)) continue;
+                    complete(p, OPEN, describe(p.probe, readBuf));
+                } catch (PortUnreachableException e) {
+                    complete(p, CLOSED, null);
+                } catch (IOException e) {
+                    complete(p, OPEN_FILTERED, null);
+                }
+            }
+        }
+
+        private void expireTimeouts() {
+            long now = System.nanoTime();
+            while (!deadlines.isEmpty()) {
+                Pending p = deadlines.peek();
+                if (p.done) {
+                    deadlines.poll();
+                    continue;
+                }
+                if (p.deadlineNanos > now) break;
+
+                deadlines.poll();
+                if (p.attempt < retries) {
+                    // datagrama (ou resposta) pode ter se perdido: reenvia com backoff
+                    p.attempt++;
+                    try {
+                        send(p);
+                    } catch (PortUnreachableException e) {
+                        complete(p, CLOSED, null);
+                    } catch (IOException e) {
+                        complete(p, OPEN_FILTERED, null);
+                    }
+                } else {
+                    complete(p, OPEN_FILTERED, null);
+                }
+            }
+        }
+
+        private void complete(Pending p, String state, String evidence) {
+            if (p.done) return;
+            p.done = true;
+            ConnectEngine.closeQuietly(p.channel);
+            p.host.finish(p.index, state, evidence, p.firstSentNanos == 0 ? 0 : p.latencyMs());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loop.stop();
+    }
+
+    // ===== achados =====
+
+    private static PortFinding finding(InetAddress addr, UdpProbe probe, String state, long latencyMs, String evidence) {
+        boolean open = OPEN.equals(state);
+        return new PortFinding(
+                open ? impactFor(probe, evidence) : "Sem resposta ao probe UDP: porta filtrada ou serviço que ignora o payload.",
+                open ? recommendationFor(probe) : "Confirmar pela regra de firewall se a porta deveria estar acessível.",
+                probe.port, probe.service, state,
+                open ? severityFor(probe, evidence) : "INFO",
+                open ? Long.valueOf(latencyMs) : null,
+                evidence,
+                addr.getHostAddress(),
+                null,
+                null,
+                PROTOCOL
+        );
+    }
+
+    private static String severityFor(UdpProbe probe, String evidence) {
+        switch (probe.port) {
+            case 161:
+            case 11211:
+                return "HIGH";
+            case 53:
+                return evidence != null && evidence.contains("recursão: sim") ? "MEDIUM" : "LOW";
+            case 137:
+            case 1900:
+            case 5353:
+                return "MEDIUM";
+            default:
+                return "LOW";
+        }
+    }
+
+    private static String impactFor(UdpProbe probe, String evidence) {
+        switch (probe.port) {
+            case 53:
+                return evidence != null && evidence.contains("recursão: sim")
+                        ? "DNS recursivo aberto pode ser usado em ataques de amplificação e envenenamento de cache."
+                        : "DNS pode ser parte da infraestrutura do domínio (autoritativo) e nem sempre indica risco.";
+            case 123:
+                return "NTP exposto pode ser usado em amplificação se comandos de controle (monlist) estiverem ativos.";
+            case 137:
+                return "NetBIOS expõe nomes de máquina/domínio e facilita reconhecimento da rede interna.";
+            case 161:
+                return "SNMP respondendo à community padrão 'public' expõe configuração e inventário do equipamento.";
+            case 1900:
+                return "SSDP/UPnP exposto é vetor conhecido de amplificação e revela dispositivos.";
+            case 5353:
+                return "mDNS exposto revela serviços e nomes da rede local e pode ser usado em amplificação.";
+            case 11211:
+                return "Memcached via UDP permite amplificação massiva (DDoS) e leitura do cache sem autenticação.";
+            default:
+                return "Serviço UDP exposto aumenta a superfície de ataque (" + probe.service + ").";
+        }
+    }
+
+    private static String recommendationFor(UdpProbe probe) {
+        switch (probe.port) {
+            case 53:
+                return "Desabilitar recursão para clientes externos (ou restringir por ACL) e manter o servidor atualizado.";
+            case 123:
+                return "Desabilitar monlist/modo 7 (noquery) e restringir consultas de controle.";
+            case 161:
+                return "Trocar a community padrão, preferir SNMPv3 com autenticação e restringir por firewall.";
+            case 11211:
+                return "Desabilitar UDP no Memcached (-U 0) e expor apenas em rede interna.";
+            default:
+                return "Se o serviço (" + probe.service + ") não precisa ser público, bloquear a porta UDP no firewall.";
+        }
+    }
+
+    // ===== leitura das respostas =====
+
+    private static String describe(UdpProbe probe, ByteBuffer r) {
+        try {
+            switch (probe.port) {
+                case 53:
+                case 5353:
+                    return dnsSummary(r);
+                case 123:
+                    return ntpSummary(r);
+                case 137:
+                    return netbiosSummary(r);
+                case 161:
+                    return snmpSummary(r);
+                case 1900:
+                    return ssdpSummary(r);
+                case 11211:
+                    return memcachedSummary(r);
+                default:
+                    return "Resposta UDP: " + r.remaining() + " bytes";
+            }
+        } catch (RuntimeException e) {
+            // resposta fora do formato esperado: ainda assim a porta respondeu
+            return "Resposta UDP: " + r.remaining() + " bytes";
+        }
+    }
+
+    private static final String[] RCODES = {"NOERROR", "FORMERR", "SERVFAIL", "NXDOMAIN", "NOTIMP", "REFUSED"};
+
+    private static String dnsSummary(ByteBuffer r) {
+        int p = r.position();
+        int flags = r.getShort(p + 2) & 0xFFFF;
+        int rcode = flags & 0x0F;
+        boolean ra = (flags & 0x0080) != 0;
+        int answers = r.getShort(p + 6) & 0xFFFF;
+        boolean recursive = ra && rcode == 0 && answers > 0;
+        return "DNS: rcode=" + (rcode < RCODES.length ? RCODES[rcode] : String.valueOf(rcode))
+                + " respostas=" + answers + " recursão: " + (recursive ? "sim" : "não");
+    }
+
+    private static String ntpSummary(ByteBuffer r) {
+        int p = r.position();
+        int b0 = r.get(p) & 0xFF;
+        int stratum = r.get(p + 1) & 0xFF;
+        return "NTP: versão " + ((b0 >> 3) & 0x07) + ", stratum " + stratum;
+    }
+
+    // resposta NBSTAT: nº de nomes no offset 56, cada nome com 18 bytes (15 nome + sufixo + flags)
+    private static String netbiosSummary(ByteBuffer r) {
+        int p = r.position();
+        int count = r.get(p + 56) & 0xFF;
+        if (count == 0) return "NetBIOS: sem nomes";
+        return "NetBIOS: " + ascii(r, p + 57, p + 57 + 15).trim() + " (" + count + " nomes)";
+    }
+
+    // procura o OID sysDescr.0 e lê o OCTET STRING que vem depois
+    private static String snmpSummary(ByteBuffer r) {
+        int i = indexOf(r, SYS_DESCR_OID);
+        if (i < 0) return "SNMP: community 'public' aceita";
+        int v = i + SYS_DESCR_OID.length;
+        if ((r.get(v) & 0xFF) != 0x04) return "SNMP: community 'public' aceita";
+        int len = r.get(v + 1) & 0xFF;
+        int start = v + 2;
+        if (len == 0x81) {
+            len = r.get(v + 2) & 0xFF;
+            start = v + 3;
+        } else if (len == 0x82) {
+            len = r.getShort(v + 2) & 0xFFFF;
+            start = v + 4;
+        }
+        int end = Math.min(r.limit(), start + Math.min(len, 120));
+        return "SNMP: community 'public' aceita | sysDescr: " + ascii(r, start, end).trim();
+    }
+
+    private static String ssdpSummary(ByteBuffer r) {
+        List<String> lines = lines(r, r.position());
+        for (String line : lines) {
+            if (line.regionMatches(true, 0, "SERVER:", 0, 7)) return "SSDP: " + line;
+        }
+        return "SSDP: " + (lines.isEmpty() ? "" : lines.get(0));
+    }
+
+    // frame UDP do memcached tem 8 bytes de cabeçalho antes do texto
+    private static String memcachedSummary(ByteBuffer r) {
+        List<String> lines = lines(r, r.position() + 8);
+        return "Memcached: " + (lines.isEmpty() ? "" : lines.get(0));
+    }
+
+    private static List<String> lines(ByteBuffer r, int from) {
+        List<String> out = new ArrayList<>();
+        int start = from;
+        for (int i = from; i <= r.limit(); i++) {
+            if (i == r.limit() || r.get(i) == '\n') {
+                int end = i > start && r.get(i - 1) == '\r' ? i - 1 : i;
+                String line = ascii(r, start, end).trim();
+                if (!line.isEmpty()) out.add(line.length() > 120 ? line.substring(0, 120) : line);
+                start = i + 1;
+            }
+        }
+        return out;
+    }
+
+    private static final byte[] SYS_DESCR_OID = {0x06, 0x08, 0x2b, 0x06, 0x01, 0x02, 0x01, 0x01, 0x01, 0x00};
+
+    private static int indexOf(ByteBuffer r, byte[] needle) {
+        outer:
+        for (int i = r.position(); i <= r.limit() - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (r.get(i + j) != needle[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    // bytes não imprimíveis viram '.', como no FingerprintService
+    private static String ascii(ByteBuffer r, int from, int to) {
+        StringBuilder sb = new StringBuilder(Math.max(0, to - from));
+        for (int i = from; i < Math.min(to, r.limit()); i++) {
+            int c = r.get(i) & 0xFF;
+            sb.append(c >= 0x20 && c < 0x7F ? (char) c : '.');
+        }
+        return sb.toString();
+    }
+
+    // ===== payloads =====
+
+    // consulta "." NS com RD=1: resposta com RA + respostas indica resolver recursivo aberto
+    private static byte[] dnsQuery() {
+        ByteBuffer b = ByteBuffer.allocate(17);
+        b.putShort((short) ThreadLocalRandom.current().nextInt(1, 0xFFFF));
+        b.putShort((short) 0x0100);
+        b.putShort((short) 1).putShort((short) 0).putShort((short) 0).putShort((short) 0);
+        b.put((byte) 0);                      // nome raiz
+        b.putShort((short) 2);                // NS
+        b.putShort((short) 1);                // IN
+        return b.array();
+    }
+
+    // NTP v4, modo cliente (request padrão de 48 bytes)
+    private static byte[] ntpRequest() {
+        byte[] b = new byte[48];
+        b[0] = 0x23;
+        return b;
+    }
+
+    // NBSTAT para o nome "*"
+    private static byte[] netbiosStatus() {
+        ByteBuffer b = ByteBuffer.allocate(50);
+        b.putShort((short) ThreadLocalRandom.current().nextInt(1, 0xFFFF));
+        b.putShort((short) 0).putShort((short) 1).putShort((short) 0).putShort((short) 0).putShort((short) 0);
+        b.put((byte) 0x20);
+        b.put("CK".getBytes(StandardCharsets.US_ASCII));
+        for (int i = 0; i < 30; i++) b.put((byte) 'A');
+        b.put((byte) 0);
+        b.putShort((short) 0x0021).putShort((short) 0x0001);
+        return b.array();
+    }
+
+    // SNMPv2c GetRequest sysDescr.0 com community "public"
+    private static byte[] snmpGetSysDescr() {
+        return new byte[]{
+                0x30, 0x29,
+                0x02, 0x01, 0x01,
+                0x04, 0x06, 'p', 'u', 'b', 'l', 'i', 'c',
+                (byte) 0xa0, 0x1c,
+                0x02, 0x04, 0x43, 0x41, 0x55, 0x44,
+                0x02, 0x01, 0x00,
+                0x02, 0x01, 0x00,
+                0x30, 0x0e, 0x30, 0x0c,
+                0x06, 0x08, 0x2b, 0x06, 0x01, 0x02, 0x01, 0x01, 0x01, 0x00,
+                0x05, 0x00
+        };
+    }
+
+    private static byte[] memcachedVersion() {
+        byte[] cmd = "version\r\n".getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer b = ByteBuffer.allocate(8 + cmd.length);
+        b.putShort((short) 1).putShort((short) 0).putShort((short) 1).putShort((short) 0);
+        b.put(cmd);
+        return b.array();
+    }
+}
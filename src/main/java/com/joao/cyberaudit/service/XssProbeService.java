@@ -1,76 +1,193 @@
 package com.joao.cyberaudit.service;
 
+import com.joao.cyberaudit.model.XssReflection;
+import com.joao.cyberaudit.util.ByteAhoCorasick;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.net.URI;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.util.UUID;
-
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Probe de XSS refletido em todos os parâmetros da query.
+ * 1 request com um marcador diferente em cada parâmetro; se o servidor recusar a combinação (4xx/5xx),
+ * cai para 1 request por parâmetro, em paralelo. Cada reflexão é classificada pelo contexto em que caiu
+ * (texto, atributo, URL, script...) por um tokenizer em streaming, sem DOM.
+ */
 @Service
 public class XssProbeService {
 
-    private final HttpClient client = HttpClient.newBuilder()
-            .followRedirects(HttpClient.Redirect.ALWAYS)
-            .connectTimeout(Duration.ofSeconds(8))
-            .build();
+    // query com muitos parâmetros: só os primeiros recebem marcador (os demais seguem intactos)
+    private static final int MAX_PARAMS = 20;
+    private static final int FANOUT_THREADS = 8;
+
+    private final HttpTransportService transport;
+    private final BaselineService baselines;
+    private final long maxBodyBytes;
+
+    private final ExecutorService fanout =
+            Executors.newFixedThreadPool(FANOUT_THREADS, ScanStageExecutor.daemonFactory("xss-probe-"));
+
+    public XssProbeService(
+            HttpTransportService transport,
+            BaselineService baselines,
+            @Value("${cyberaudit.probe.max-body-bytes:524288}") long maxBodyBytes
+    ) {
+        this.transport = transport;
+        this.baselines = baselines;
+        this.maxBodyBytes = Math.max(1024, maxBodyBytes);
+    }
 
-    // Retorna true se o marcador voltar "cru" na resposta (suspeita de reflexão sem escape)
-    public boolean reflectedMarkerAppears(String urlWithParams) {
+    // Reflexão em comentário HTML não executa: não conta como suspeita
+    public static boolean isSuspected(List<XssReflection> reflections) {
+        for (XssReflection r : reflections) {
+            if (!HtmlContextTokenizer.Context.COMMENT.name().equals(r.getContext())) return true;
+        }
+        return false;
+    }
+
+    // Todas as reflexões encontradas (parâmetro + contexto + offset); vazio se nenhuma
+    public List<XssReflection> reflections(String urlWithParams) {
         try {
-            if (urlWithParams == null || !urlWithParams.contains("?")) return false;
+            if (urlWithParams == null || !urlWithParams.contains("?")) return List.of();
+
+            int q = urlWithParams.indexOf('?');
+            String base = urlWithParams.substring(0, q);
+            List<String[]> params = parseQuery(urlWithParams.substring(q + 1));
+            if (params.isEmpty()) return List.of();
+
+            // mesmo tamanho para todos: nenhum marcador é prefixo de outro
+            int probed = Math.min(params.size(), MAX_PARAMS);
+            String prefix = "xss_probe_" + UUID.randomUUID().toString().replace("-", "").substring(0, 8);
+            String[] markers = new String[probed];
+            for (int i = 0; i < probed; i++) markers[i] = prefix + String.format("%02d", i);
+
+            // 1) todos os parâmetros num request só
+            Probe batched = probe(urlWithParams, base, params, markers, allIndexes(probed));
+            if (batched == null) return List.of(); // host não respondeu: não adianta multiplicar requests
+            if (batched.status < 400) return batched.reflections;
+
+            // a página já dá erro sem mutação: o erro não vem da combinação de marcadores
+            BaselineService.Baseline baseline = baselines.get(urlWithParams);
+            if (baseline != null && baseline.status >= 400) return batched.reflections;
+
+            // 2) servidor recusou a combinação: 1 parâmetro por request, em paralelo
+            String tenant = ProbeScheduler.currentTenant();
+            List<CompletableFuture<Probe>> single = new ArrayList<>(probed);
+            for (int i = 0; i < probed; i++) {
+                int[] only = {i};
+                single.add(CompletableFuture.supplyAsync(
+                        () -> ProbeScheduler.callAs(tenant, () -> probe(urlWithParams, base, params, markers, only)),
+                        fanout));
+            }
 
-            String marker = "xss_probe_" + UUID.randomUUID().toString().replace("-", "").substring(0, 10);
-            String mutatedUrl = mutateFirstParamValue(urlWithParams, marker);
+            List<XssReflection> out = new ArrayList<>();
+            for (CompletableFuture<Probe> f : single) {
+                Probe p = f.join();
+                if (p != null) out.addAll(p.reflections);
+            }
+            return out;
 
-            HttpRequest req = HttpRequest.newBuilder(URI.create(mutatedUrl))
-                    .GET()
-                    .timeout(Duration.ofSeconds(12))
-                    .header("User-Agent", "CyberAuditScanner/1.0")
-                    .header("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,/;q=0.8")
-                    .header("Range", "bytes=0-4000")
-                    .build();
+        } catch (Exception e) {
+            return List.of();
+        }
+    }
 
-            HttpResponse<String> resp =
-                    client.send(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
-            String body = resp.body() == null ? "" : resp.body();
+    private static final class Probe {
+        final int status;
+        final List<XssReflection> reflections;
 
-            // Sinal forte: marcador aparece exatamente (sem encoding)
-            if (body.contains(marker)) {
-                // Se também aparecer encoded, pode ser que esteja escapando em algum contexto.
-                // Mas a presença do marker cru já é um indicador forte.
-                return true;
+        Probe(int status, List<XssReflection> reflections) {
+            this.status = status;
+            this.reflections = reflections;
+        }
+    }
+
+    // 1 request com marcador nos parâmetros "mutate"; null se o request falhar
+    private Probe probe(String endpoint, String base, List<String[]> params, String[] markers, int[] mutate) {
+        try {
+            StringBuilder query = new StringBuilder();
+            List<byte[]> patterns = new ArrayList<>(mutate.length);
+            List<String> names = new ArrayList<>(mutate.length);
+            int next = 0;
+            for (int i = 0; i < params.size(); i++) {
+                String[] kv = params.get(i);
+                if (query.length() > 0) query.append('&');
+                query.append(kv[0]);
+
+                if (next < mutate.length && mutate[next] == i) {
+                    next++;
+                    // marcador inofensivo (sem <script>, sem tags) depois do valor original
+                    String decoded = kv[1] == null ? "" : URLDecoder.decode(kv[1], StandardCharsets.UTF_8);
+                    query.append('=').append(URLEncoder.encode(decoded + markers[i], StandardCharsets.UTF_8));
+                    patterns.add(markers[i].getBytes(StandardCharsets.US_ASCII));
+                    names.add(URLDecoder.decode(kv[0], StandardCharsets.UTF_8));
+                } else if (kv[1] != null) {
+                    query.append('=').append(kv[1]);
+                }
             }
 
-            return false;
+            HttpRequest req = HttpRequest.newBuilder(URI.create(base + "?" + query))
+                    .GET()
+                    .timeout(Duration.ofSeconds(12))
+                    .header("User-Agent", HttpTransportService.USER_AGENT)
+                    .header("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,/;q=0.8")
+                    .build();
 
+            // marcadores casados em streaming; o tokenizer vê os mesmos bytes e diz o contexto de cada match
+            ByteAhoCorasick matcher = ByteAhoCorasick.compile(patterns, false);
+            HtmlContextTokenizer tokenizer = new HtmlContextTokenizer();
+            List<XssReflection> found = new ArrayList<>();
+            boolean[] seen = new boolean[patterns.size()];
+            int[] pending = {patterns.size()};
+
+            HttpResponse<BoundedMatchSubscriber.Match> resp = transport.send(req,
+                    BoundedMatchSubscriber.handler(matcher, maxBodyBytes, (id, end) -> {
+                        found.add(new XssReflection(endpoint, names.get(id), tokenizer.context().name(),
+                                end - matcher.patternLength(id)));
+                        if (!seen[id]) {
+                            seen[id] = true;
+                            pending[0]--;
+                        }
+                        // todos os parâmetros já refletiram: o resto do corpo não muda a resposta
+                        return pending[0] > 0;
+                    }, tokenizer::consume), true);
+
+            return new Probe(resp.statusCode(), found);
         } catch (Exception e) {
-            return false;
+            return null;
         }
     }
 
-    private String mutateFirstParamValue(String url, String marker) {
-        int q = url.indexOf('?');
-        String base = url.substring(0, q);
-        String query = url.substring(q + 1);
-
-        String[] parts = query.split("&", 2);
-        String first = parts[0];
-        String rest = (parts.length > 1) ? "&" + parts[1] : "";
-
-        String[] kv = first.split("=", 2);
-        String key = kv[0];
-        String value = kv.length > 1 ? kv[1] : "";
+    // pares crus (ainda encoded) na ordem original; valor null = parâmetro sem '='
+    private List<String[]> parseQuery(String query) {
+        List<String[]> out = new ArrayList<>();
+        for (String part : query.split("&")) {
+            if (part.isEmpty()) continue;
+            String[] kv = part.split("=", 2);
+            out.add(new String[]{kv[0], kv.length > 1 ? kv[1] : null});
+        }
+        return out;
+    }
 
-        String decoded = URLDecoder.decode(value, StandardCharsets.UTF_8);
-        String newValue = decoded + marker; // marcador inofensivo (sem <script>, sem tags)
-        String encoded = URLEncoder.encode(newValue, StandardCharsets.UTF_8);
+    private static int[] allIndexes(int n) {
+        int[] all = new int[n];
+        for (int i = 0; i < n; i++) all[i] = i;
+        return all;
+    }
 
-        return base + "?" + key + "=" + encoded + rest;
+    @PreDestroy
+    public void shutdown() {
+        fanout.shutdownNow();
     }
-}
\ No newline at end of file
+}
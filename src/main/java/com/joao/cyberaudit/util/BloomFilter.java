@@ -0,0 +1,59 @@
+package com.joao.cyberaudit.util;
+
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Filtro de Bloom para strings: memória fixa (definida na criação), não importa quantos itens entrem.
+ * "já visto" pode ser falso positivo (item novo tratado como repetido), nunca falso negativo.
+ * Passando da capacidade prevista a taxa de falso positivo sobe, mas a memória não cresce.
+ * Não é thread-safe.
+ */
+public final class BloomFilter {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long[] bits;
+    private final long size;
+    private final int hashes;
+
+    // tamanho ótimo para "expected" itens com a taxa de falso positivo "fpp"
+    public BloomFilter(int expected, double fpp) {
+        int n = Math.max(1, expected);
+        double p = Math.min(0.5, Math.max(1e-6, fpp));
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        this.bits = new long[(int) ((m + 63) / 64)];
+        this.size = (long) bits.length * 64;
+        this.hashes = Math.max(1, (int) Math.round((double) size / n * Math.log(2)));
+    }
+
+    // true se o item é novo (e marca); false se já estava (ou colidiu)
+    public boolean add(String item) {
+        byte[] b = item.getBytes(StandardCharsets.UTF_8);
+        long h1 = FNV_OFFSET;
+        for (byte x : b) h1 = (h1 ^ (x & 0xFF)) * FNV_PRIME;
+        long h2 = mix(h1) | 1; // ímpar: os k índices não se repetem em ciclo curto
+
+        boolean added = false;
+        for (int i = 0; i < hashes; i++) {
+            long idx = Math.floorMod(h1 + i * h2, size);
+            int word = (int) (idx >>> 6);
+            long mask = 1L << idx;
+            if ((bits[word] & mask) == 0) {
+                bits[word] |= mask;
+                added = true;
+            }
+        }
+        return added;
+    }
+
+    public long sizeBytes() {
+        return bits.length * 8L;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
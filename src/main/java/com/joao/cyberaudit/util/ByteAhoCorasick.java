@@ -0,0 +1,188 @@
+package com.joao.cyberaudit.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Aho-Corasick sobre bytes: N padrões literais casados numa única passada, sem String nem regex.
+ * Compilado 1x (DFA completo: transição = 1 acesso a array, custo por byte não depende do nº de padrões)
+ * e imutável depois — seguro entre threads.
+ * ignoreCase vale só para ASCII (A-Z == a-z), o que cobre banners e protocolos de texto.
+ */
+public final class ByteAhoCorasick {
+
+    @FunctionalInterface
+    public interface MatchHandler {
+        // endOffset = índice (no buffer) logo após o último byte casado; false interrompe a busca
+        boolean onMatch(int patternId, int endOffset);
+    }
+
+    private static final int[] NO_OUTPUT = new int[0];
+
+    private final int[] classOf;    // byte -> coluna do DFA (0 = byte que não aparece em nenhum padrão)
+    private final int classes;
+    private final int[] delta;      // delta[state * classes + classe] -> próximo estado
+    private final int[][] outputs;  // padrões que terminam em cada estado (inclui os herdados pelo fail)
+    private final int[] lengths;
+    private final boolean ignoreCase;
+
+    private ByteAhoCorasick(int[] classOf, int classes, int[] delta, int[][] outputs, int[] lengths,
+                            boolean ignoreCase) {
+        this.classOf = classOf;
+        this.classes = classes;
+        this.delta = delta;
+        this.outputs = outputs;
+        this.lengths = lengths;
+        this.ignoreCase = ignoreCase;
+    }
+
+    public static ByteAhoCorasick compile(List<byte[]> patterns, boolean ignoreCase) {
+        // 0) classes de bytes: só bytes usados nos padrões ganham coluna própria
+        // (pacote com milhares de padrões continua com DFA de poucas colunas, não 256)
+        int[] classOf = new int[256];
+        int classes = 1;
+        for (byte[] p : patterns) {
+            for (byte raw : p) {
+                int b = fold(raw & 0xFF, ignoreCase);
+                if (classOf[b] == 0) classOf[b] = classes++;
+            }
+        }
+        // ignoreCase: maiúsculas ASCII caem na mesma coluna das minúsculas
+        if (ignoreCase) {
+            for (int b = 'A'; b <= 'Z'; b++) classOf[b] = classOf[b | 0x20];
+        }
+
+        // 1) trie
+        List<int[]> gotoRows = new ArrayList<>();
+        List<List<Integer>> out = new ArrayList<>();
+        gotoRows.add(newRow(classes));
+        out.add(new ArrayList<>());
+
+        int[] lengths = new int[patterns.size()];
+        for (int id = 0; id < patterns.size(); id++) {
+            byte[] p = patterns.get(id);
+            if (p.length == 0) throw new IllegalArgumentException("padrão vazio (id " + id + ")");
+            lengths[id] = p.length;
+
+            int state = 0;
+            for (byte raw : p) {
+                int c = classOf[raw & 0xFF];
+                int next = gotoRows.get(state)[c];
+                if (next < 0) {
+                    next = gotoRows.size();
+                    gotoRows.add(newRow(classes));
+                    out.add(new ArrayList<>());
+                    gotoRows.get(state)[c] = next;
+                }
+                state = next;
+            }
+            out.get(state).add(id);
+        }
+
+        // 2) fail links em BFS, já completando o DFA
+        int n = gotoRows.size();
+        int[] delta = new int[n * classes];
+        int[] fail = new int[n];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+
+        for (int c = 0; c < classes; c++) {
+            int next = gotoRows.get(0)[c];
+            if (next < 0) {
+                delta[c] = 0;
+            } else {
+                delta[c] = next;
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            out.get(s).addAll(out.get(fail[s]));
+            for (int c = 0; c < classes; c++) {
+                int next = gotoRows.get(s)[c];
+                if (next < 0) {
+                    delta[s * classes + c] = delta[fail[s] * classes + c];
+                } else {
+                    delta[s * classes + c] = next;
+                    fail[next] = delta[fail[s] * classes + c];
+                    queue.add(next);
+                }
+            }
+        }
+
+        int[][] outputs = new int[n][];
+        for (int s = 0; s < n; s++) {
+            List<Integer> o = out.get(s);
+            if (o.isEmpty()) {
+                outputs[s] = NO_OUTPUT;
+            } else {
+                int[] ids = o.stream().mapToInt(Integer::intValue).distinct().toArray();
+                Arrays.sort(ids);
+                outputs[s] = ids;
+            }
+        }
+
+        return new ByteAhoCorasick(classOf, classes, delta, outputs, lengths, ignoreCase);
+    }
+
+    // Varre position..limit do buffer sem consumir (position/limit não mudam)
+    public void scan(ByteBuffer buf, MatchHandler handler) {
+        scan(0, buf, handler);
+    }
+
+    /*
+     * Versão para stream em pedaços: continua do estado devolvido pelo pedaço anterior
+     * (padrão que atravessa 2 chunks ainda casa). Devolve o estado final, ou -1 se o handler parou.
+     */
+    public int scan(int state, ByteBuffer buf, MatchHandler handler) {
+        int limit = buf.limit();
+        for (int i = buf.position(); i < limit; i++) {
+            state = delta[state * classes + classOf[buf.get(i) & 0xFF]];
+            int[] ids = outputs[state];
+            for (int id : ids) {
+                if (!handler.onMatch(id, i + 1)) return -1;
+            }
+        }
+        return state;
+    }
+
+    // Menor id de padrão presente no buffer (ordem dos padrões = prioridade), ou -1
+    public int firstById(ByteBuffer buf, int[] endOffsetOut) {
+        int[] best = {-1, -1};
+        scan(buf, (id, end) -> {
+            if (best[0] < 0 || id < best[0]) {
+                best[0] = id;
+                best[1] = end;
+            }
+            return best[0] != 0; // id 0 não tem como ser superado
+        });
+        if (endOffsetOut != null && endOffsetOut.length > 0) endOffsetOut[0] = best[1];
+        return best[0];
+    }
+
+    public int patternLength(int patternId) {
+        return lengths[patternId];
+    }
+
+    public int patternCount() {
+        return lengths.length;
+    }
+
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    private static int[] newRow(int classes) {
+        int[] row = new int[classes];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private static int fold(int b, boolean ignoreCase) {
+        return ignoreCase && b >= 'A' && b <= 'Z' ? b | 0x20 : b;
+    }
+}
@@ -0,0 +1,100 @@
+package com.joao.cyberaudit.util;
+
+import java.nio.ByteBuffer;
+
+/*
+ * SimHash incremental (Charikar) sobre shingles de 3 tokens: páginas parecidas dão hashes a poucos bits de distância.
+ * Recebe o corpo em pedaços, na ordem (token cortado entre dois chunks continua no próximo); memória constante.
+ * Token = sequência de letras/dígitos ASCII (sem caixa) ou bytes não-ASCII; o resto separa.
+ * Não é thread-safe: uma instância por corpo.
+ */
+public final class SimHash {
+
+    private static final int SHINGLE = 3;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int[] votes = new int[64];
+
+    // últimos SHINGLE tokens (janela circular)
+    private final long[] window = new long[SHINGLE];
+    private long tokens;
+    private long shingles;
+
+    private long token = FNV_OFFSET;
+    private boolean inToken;
+
+    public void update(ByteBuffer buf, int from, int to) {
+        for (int i = from; i < to; i++) step(buf.get(i) & 0xFF);
+    }
+
+    public void update(byte[] buf, int from, int to) {
+        for (int i = from; i < to; i++) step(buf[i] & 0xFF);
+    }
+
+    // fecha o token pendente; chamar depois do último update
+    public long value() {
+        if (inToken) endToken();
+        // corpo com menos de SHINGLE tokens: o que houver vira 1 shingle
+        if (shingles == 0 && tokens > 0) addShingle((int) tokens);
+
+        long h = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (votes[bit] > 0) h |= 1L << bit;
+        }
+        return h;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    // 1.0 = mesmo hash; ~0.5 = sem relação
+    public static double similarity(long a, long b) {
+        return 1.0 - distance(a, b) / 64.0;
+    }
+
+    private void step(int c) {
+        if (isWordByte(c)) {
+            token = (token ^ lower(c)) * FNV_PRIME;
+            inToken = true;
+        } else if (inToken) {
+            endToken();
+        }
+    }
+
+    private void endToken() {
+        window[(int) (tokens % SHINGLE)] = token;
+        tokens++;
+        token = FNV_OFFSET;
+        inToken = false;
+        if (tokens >= SHINGLE) addShingle(SHINGLE);
+    }
+
+    // combina os n tokens mais recentes, do mais antigo ao mais novo (ordem importa)
+    private void addShingle(int n) {
+        long h = 0;
+        for (long k = tokens - n; k < tokens; k++) {
+            h = mix(h * 31 + window[(int) (k % SHINGLE)]);
+        }
+        for (int bit = 0; bit < 64; bit++) {
+            votes[bit] += ((h >>> bit) & 1) != 0 ? 1 : -1;
+        }
+        shingles++;
+    }
+
+    // finalizador do splitmix64: espalha os bits antes da votação
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static boolean isWordByte(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c >= 0x80;
+    }
+
+    private static int lower(int c) {
+        return c >= 'A' && c <= 'Z' ? c | 0x20 : c;
+    }
+}
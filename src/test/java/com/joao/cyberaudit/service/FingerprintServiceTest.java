@@ -0,0 +1,141 @@
+package com.joao.cyberaudit.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Banner/resposta -> serviço, produto e versão pelas regras do signatures.txt (servidor local que responde bytes fixos)
+class FingerprintServiceTest {
+
+    private static final InetAddress LOOPBACK = InetAddress.getLoopbackAddress();
+
+    private final FingerprintService fingerprints;
+    private final List<ServerSocket> servers = new ArrayList<>();
+
+    FingerprintServiceTest() throws IOException {
+        fingerprints = new FingerprintService();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (ServerSocket s : servers) s.close();
+    }
+
+    @Test
+    void openSshBannerWithVersion() throws Exception {
+        FingerprintService.Result r = identify(22, "SSH-2.0-OpenSSH_9.6p1 Ubuntu-3ubuntu13\r\n");
+
+        assertEquals("SSH", r.getService());
+        assertEquals("OpenSSH", r.getProduct());
+        assertEquals("9.6p1", r.getVersion());
+        assertEquals("Banner: SSH-2.0-OpenSSH_9.6p1 Ubuntu-3ubuntu13", r.getEvidence());
+    }
+
+    @Test
+    void openSearchIsNotReportedAsElasticsearch() throws Exception {
+        FingerprintService.Result os = identify(9200, http("{\n  \"name\" : \"node-1\",\n  \"version\" : {\n"
+                + "    \"distribution\" : \"opensearch\",\n    \"number\" : \"2.13.0\",\n"
+                + "    \"build_type\" : \"tar\"\n  },\n  \"tagline\" : \"The OpenSearch Project\"\n}\n"));
+        FingerprintService.Result es = identify(9200, http("{\n  \"name\" : \"node-1\",\n  \"version\" : {\n"
+                + "    \"number\" : \"8.13.2\",\n    \"build_flavor\" : \"default\"\n  },\n"
+                + "  \"tagline\" : \"You Know, for Search\"\n}\n"));
+
+        assertEquals("Elasticsearch", os.getService());
+        assertEquals("OpenSearch", os.getProduct());
+        assertEquals("2.13.0", os.getVersion());
+
+        assertEquals("Elasticsearch", es.getService());
+        assertEquals("Elasticsearch", es.getProduct());
+        assertEquals("8.13.2", es.getVersion());
+    }
+
+    @Test
+    void genericSmtpGreetingIsNotFtp() throws Exception {
+        FingerprintService.Result smtp = identify(25, "220 mail.example.com Service ready\r\n");
+        FingerprintService.Result submission = identify(587, "220-mail.example.com welcome\r\n220 ready\r\n");
+
+        assertEquals("SMTP", smtp.getService());
+        assertNull(smtp.getProduct());
+        assertEquals("SMTP", submission.getService());
+    }
+
+    @Test
+    void ftpGreetingOnlyOnFtpPorts() throws Exception {
+        assertEquals("FTP", identify(21, "220 Welcome to the file server\r\n").getService());
+
+        FingerprintService.Result vsftpd = identify(2222, "220 (vsFTPd 3.0.5)\r\n");
+        assertEquals("FTP", vsftpd.getService(), "produto conhecido vale em qualquer porta");
+        assertEquals("vsftpd", vsftpd.getProduct());
+        assertEquals("3.0.5", vsftpd.getVersion());
+
+        // "220 " genérico fora das portas padrão: sem serviço, fica o palpite pela porta
+        FingerprintService.Result unknown = identify(8025, "220 Welcome to the file server\r\n");
+        assertNull(unknown.getService());
+        assertEquals("Banner: 220 Welcome to the file server", unknown.getEvidence());
+    }
+
+    @Test
+    void genericPop3OkOnlyOnPop3Port() throws Exception {
+        assertEquals("POP3", identify(110, "+OK ready\r\n").getService());
+        assertNull(identify(7000, "+OK ready\r\n").getService());
+        assertNull(identify(110, "-ERR x +OK\r\n").getService(), "+OK tem que abrir a resposta");
+    }
+
+    @Test
+    void postgresNeedsSingleByteSslReply() throws Exception {
+        assertEquals("PostgreSQL", identify(5432, "S").getService());
+        assertEquals("PostgreSQL", identify(5432, "N").getService());
+        assertNull(identify(5432, "Some other service\r\n").getService());
+    }
+
+    // ===== apoio =====
+
+    private static String http(String json) {
+        return "HTTP/1.1 200 OK\r\ncontent-type: application/json; charset=UTF-8\r\n"
+                + "content-length: " + json.length() + "\r\n\r\n" + json;
+    }
+
+    // porta lógica = a que o scanner acha que está testando (escolhe probe e regras); conexão vai para o servidor local
+    private FingerprintService.Result identify(int logicalPort, String response) throws Exception {
+        ServerSocket server = new ServerSocket(0, 50, LOOPBACK);
+        servers.add(server);
+        Thread t = new Thread(() -> serve(server, response.getBytes(StandardCharsets.ISO_8859_1)), "banner-standin");
+        t.setDaemon(true);
+        t.start();
+
+        try (Socket s = new Socket(LOOPBACK, server.getLocalPort())) {
+            s.setSoTimeout(2000);
+            FingerprintService.Result r = fingerprints.identify(s, "localhost", logicalPort);
+            assertNotNull(r, "sem resposta");
+            return r;
+        }
+    }
+
+    // escreve a resposta ao conectar e descarta o que o cliente mandar (probe direct) até ele fechar
+    private static void serve(ServerSocket server, byte[] response) {
+        try (Socket c = server.accept()) {
+            c.setSoTimeout(5000);
+            OutputStream out = c.getOutputStream();
+            out.write(response);
+            out.flush();
+            InputStream in = c.getInputStream();
+            byte[] sink = new byte[512];
+            while (in.read(sink) >= 0) {
+                // descarta
+            }
+        } catch (IOException e) {
+            // cliente fechou: fim do teste
+        }
+    }
+}
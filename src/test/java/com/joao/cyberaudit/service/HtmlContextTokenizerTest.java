@@ -0,0 +1,95 @@
+package com.joao.cyberaudit.service;
+
+import com.joao.cyberaudit.service.HtmlContextTokenizer.Context;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Contexto do byte atual (onde um reflexo caiu) e tags/atributos entregues ao listener, com o corpo em pedaços
+class HtmlContextTokenizerTest {
+
+    @Test
+    void contextAfterPrefix() {
+        assertEquals(Context.HTML_TEXT, contextAfter("<p>hello "));
+        assertEquals(Context.URL, contextAfter("<a class=x href=\"/search?q="));
+        assertEquals(Context.SCRIPT, contextAfter("<img src=x onerror='alert("));
+        assertEquals(Context.STYLE, contextAfter("<div style=\"color:"));
+        assertEquals(Context.ATTRIBUTE, contextAfter("<input value=\""));
+        assertEquals(Context.SCRIPT, contextAfter("<script>var q = \"</p>"));
+        assertEquals(Context.STYLE, contextAfter("<style>body { content: '"));
+        assertEquals(Context.COMMENT, contextAfter("<!-- <b>"));
+    }
+
+    @Test
+    void rawTextAndCommentsEndWhereTheyShould() {
+        assertEquals(Context.HTML_TEXT, contextAfter("<script>if (a < b) x = '</div>';</script>depois"));
+        assertEquals(Context.HTML_TEXT, contextAfter("<STYLE>p{}</style >depois"));
+        assertEquals(Context.HTML_TEXT, contextAfter("<!-- a -- b -->depois"));
+    }
+
+    @Test
+    void stateSurvivesChunkBoundaries() {
+        String html = "<p>x</p><script>var s = '</scr' + 'ipt>';</script><a href='/next'>n</a><!-- c -->fim";
+        Context whole = contextAfter(html);
+        List<String> expected = events(html, html.length());
+
+        for (int cut = 1; cut < html.length(); cut++) {
+            HtmlContextTokenizer t = new HtmlContextTokenizer();
+            ByteBuffer b = ByteBuffer.wrap(html.getBytes(StandardCharsets.UTF_8));
+            t.consume(b, 0, cut);
+            t.consume(b, cut, b.limit());
+            assertEquals(whole, t.context(), "corte em " + cut);
+            assertEquals(expected, events(html, cut), "corte em " + cut);
+        }
+    }
+
+    @Test
+    void listenerGetsLowercaseTagsAndRawValues() {
+        List<String> ev = events("<A HREF=\"/a?x=1&amp;y=2\">a</A><form action=/login method=post><input name=q></form>",
+                Integer.MAX_VALUE);
+
+        assertEquals(List.of(
+                "<a", "a.href=/a?x=1&amp;y=2", "</a",
+                "<form", "form.action=/login", "form.method=post",
+                "<input", "input.name=q", "</form"), ev);
+    }
+
+    // ===== apoio =====
+
+    private static Context contextAfter(String html) {
+        HtmlContextTokenizer t = new HtmlContextTokenizer();
+        ByteBuffer b = ByteBuffer.wrap(html.getBytes(StandardCharsets.UTF_8));
+        t.consume(b, 0, b.limit());
+        return t.context();
+    }
+
+    private static List<String> events(String html, int cut) {
+        List<String> ev = new ArrayList<>();
+        HtmlContextTokenizer t = new HtmlContextTokenizer(new HtmlContextTokenizer.TagListener() {
+            @Override
+            public void startTag(String tag) {
+                ev.add("<" + tag);
+            }
+
+            @Override
+            public void attribute(String tag, String name, String value) {
+                ev.add(tag + "." + name + "=" + value);
+            }
+
+            @Override
+            public void endTag(String tag) {
+                ev.add("</" + tag);
+            }
+        });
+        ByteBuffer b = ByteBuffer.wrap(html.getBytes(StandardCharsets.UTF_8));
+        int at = Math.min(cut, b.limit());
+        t.consume(b, 0, at);
+        t.consume(b, at, b.limit());
+        return ev;
+    }
+}
@@ -0,0 +1,70 @@
+package com.joao.cyberaudit.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Deadline do scan: stage cortado devolve o que já tinha achado e marca o run como parcial
+class ScanStageExecutorTest {
+
+    private final ScanStageExecutor executor = new ScanStageExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void stageCutByDeadlineKeepsWhatItFound() throws Exception {
+        try (ScanStageExecutor.Run run = executor.newRun(300)) {
+            List<Integer> found = new CopyOnWriteArrayList<>();
+            CompletableFuture<List<Integer>> ports = run.stageOr(() -> List.copyOf(found), () -> {
+                found.add(22);
+                found.add(6379);
+                sleep(5_000); // resto da varredura não termina a tempo
+                return List.of(22, 6379, 8080);
+            });
+
+            assertEquals(List.of(22, 6379), ports.get(2, TimeUnit.SECONDS));
+            assertTrue(run.expired());
+        }
+    }
+
+    @Test
+    void stagesFinishedInTimeAreNotPartial() throws Exception {
+        try (ScanStageExecutor.Run run = executor.newRun(2_000)) {
+            CompletableFuture<String> a = run.stage("fallback", () -> "ok");
+            CompletableFuture<List<Integer>> b = run.fanOut(() -> List.of(1, 2, 3), i -> i * 10, 2, 1_000);
+
+            assertEquals("ok", a.get(1, TimeUnit.SECONDS));
+            assertEquals(List.of(10, 20, 30), b.get(1, TimeUnit.SECONDS));
+            assertFalse(run.expired());
+        }
+    }
+
+    @Test
+    void failingStageUsesFallbackWithoutMarkingPartial() throws Exception {
+        try (ScanStageExecutor.Run run = executor.newRun(2_000)) {
+            CompletableFuture<String> s = run.stage("fallback", () -> {
+                throw new IllegalStateException("boom");
+            });
+
+            assertEquals("fallback", s.get(1, TimeUnit.SECONDS));
+            assertFalse(run.expired());
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.joao.cyberaudit.service;
+
+import com.joao.cyberaudit.model.PortFinding;
+import com.joao.cyberaudit.model.SSLInfo;
+import com.joao.cyberaudit.model.ScoreResult;
+import com.joao.cyberaudit.model.SecurityIssue;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Penalidade de portas TCP pelo serviço identificado, não pelo número da porta
+class ScoreServiceTest {
+
+    private final ScoreService score = new ScoreService();
+
+    @Test
+    void redisOnWebPortIsScoredAsRedis() {
+        ScoreResult redis = calculate(tcp(8080, "Redis"));
+        ScoreResult http = calculate(tcp(8080, "HTTP"));
+
+        SecurityIssue issue = issue(redis, "OPEN_PORT_8080");
+        assertNotNull(issue, redis.getNotes().toString());
+        assertEquals("HIGH", issue.getSeverity());
+        assertTrue(hasNote(redis, "Serviço sensível exposto: 8080 (Redis) => -20"), redis.getNotes().toString());
+        assertFalse(hasNote(redis, "Porta web comum aberta"), redis.getNotes().toString());
+
+        assertNull(issue(http, "OPEN_PORT_8080"));
+        assertTrue(hasNote(http, "Porta web comum aberta: 8080 (HTTP) [OK]"), http.getNotes().toString());
+        assertEquals(http.getScore() - 20, redis.getScore());
+    }
+
+    @Test
+    void sshAndMysqlOnOtherPortsArePenalized() {
+        ScoreResult r = calculate(tcp(2222, "SSH"), tcp(3307, "MySQL"));
+
+        assertEquals("MEDIUM", issue(r, "OPEN_PORT_2222").getSeverity());
+        assertEquals("HIGH", issue(r, "OPEN_PORT_3307").getSeverity());
+        assertTrue(hasNote(r, "SSH exposto: 2222 (SSH) => -10"), r.getNotes().toString());
+    }
+
+    @Test
+    void unidentifiedPortKeepsPortBasedCategory() {
+        ScoreResult r = calculate(tcp(6379, "Redis"), tcp(8443, "HTTPS Alt"), tcp(12345, "Unknown"));
+
+        assertEquals("HIGH", issue(r, "OPEN_PORT_6379").getSeverity());
+        assertNull(issue(r, "OPEN_PORT_8443"));
+        assertNull(issue(r, "OPEN_PORT_12345"));
+        assertTrue(hasNote(r, "Porta aberta (informativo): 12345 (Unknown)"), r.getNotes().toString());
+    }
+
+    // ===== apoio =====
+
+    private ScoreResult calculate(PortFinding... ports) {
+        SSLInfo ssl = new SSLInfo(true, true, "2030-01-01", 365, "OK", "TLSv1.3", "TLS_AES_128_GCM_SHA256");
+        return score.calculate(ssl, null, Map.of(), true, true, false, false, false, false, List.of(ports));
+    }
+
+    private static PortFinding tcp(int port, String service) {
+        return new PortFinding("impacto", "recomendação", port, service, "OPEN", "LOW",
+                5L, null, "127.0.0.1", null, null, "tcp");
+    }
+
+    private static SecurityIssue issue(ScoreResult r, String id) {
+        for (SecurityIssue i : r.getIssues()) {
+            if (id.equals(i.getId())) return i;
+        }
+        return null;
+    }
+
+    private static boolean hasNote(ScoreResult r, String prefix) {
+        for (String n : r.getNotes()) {
+            if (n.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,247 @@
+package com.joao.cyberaudit.service;
+
+import com.joao.cyberaudit.model.TlsProtocolSupport;
+import com.joao.cyberaudit.model.TlsReport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.KeyStore;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Análise TLS contra SSLServerSocket locais (certificado autoassinado CN=localhost, RSA 2048, SHA256withRSA)
+class TlsAnalyzerServiceTest {
+
+    static {
+        // os servidores de teste precisam falar TLSv1/3DES; o scanner não depende disso (vai por ClientHello cru)
+        Security.setProperty("jdk.tls.disabledAlgorithms", "");
+    }
+
+    private static final InetAddress LOOPBACK = InetAddress.getLoopbackAddress();
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    private TlsAnalyzerService tls;
+    private ScanCacheService cache;
+    private final List<InetAddress> resolved = new ArrayList<>(List.of(LOOPBACK));
+    private final List<Server> servers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        DnsResolverService dns = new DnsResolverService(60, 10, false) {
+            @Override
+            public List<InetAddress> resolve(String host, long timeoutMs) {
+                return resolved;
+            }
+        };
+        cache = new ScanCacheService();
+        tls = new TlsAnalyzerService(new ProbeScheduler(64, ""), dns, cache, 2000, 15000, 8, 600);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tls.shutdown();
+        servers.forEach(Server::close);
+    }
+
+    @Test
+    void modernServerListsOnlyItsSuitesAndCertificate() throws Exception {
+        Server s = tlsServer(new String[]{"TLSv1.2"},
+                new String[]{"TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256", "TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384"});
+
+        TlsReport r = tls.analyze("localhost", s.port());
+
+        assertNull(r.getError(), r.getError());
+        assertEquals(TlsAnalyzerService.REJECTED, protocol(r, "TLSv1.3").getStatus());
+        TlsProtocolSupport v12 = protocol(r, "TLSv1.2");
+        assertEquals(TlsAnalyzerService.ACCEPTED, v12.getStatus());
+        assertEquals(Set.of("TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256", "TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384"),
+                new HashSet<>(v12.getCipherSuites()));
+        for (String legacy : TlsAnalyzerService.LEGACY_PROTOCOLS) {
+            assertEquals(TlsAnalyzerService.REJECTED, protocol(r, legacy).getStatus(), legacy);
+        }
+
+        assertEquals("RSA", r.getKeyAlgorithm());
+        assertEquals(2048, r.getKeySize());
+        assertEquals("SHA256withRSA", r.getSignatureAlgorithm());
+        assertEquals(1, r.getChainLength());
+        assertTrue(r.isChainComplete(), "autoassinado: cadeia termina nele mesmo");
+        assertFalse(r.isChainTrusted());
+        assertTrue(r.isHostnameMatches());
+    }
+
+    @Test
+    void tls13OnlyServerRejectsEverythingElse() throws Exception {
+        Server s = tlsServer(new String[]{"TLSv1.3"}, null);
+
+        TlsReport r = tls.analyze("localhost", s.port());
+
+        TlsProtocolSupport v13 = protocol(r, "TLSv1.3");
+        assertEquals(TlsAnalyzerService.ACCEPTED, v13.getStatus());
+        assertFalse(v13.getCipherSuites().isEmpty());
+        for (String suite : v13.getCipherSuites()) assertTrue(suite.startsWith("TLS_AES_") || suite.startsWith("TLS_CHACHA20_"), suite);
+        assertEquals(TlsAnalyzerService.REJECTED, protocol(r, "TLSv1.2").getStatus());
+        assertEquals(TlsAnalyzerService.REJECTED, protocol(r, "TLSv1").getStatus());
+    }
+
+    @Test
+    void legacyProtocolAndWeakSuiteAreDetected() throws Exception {
+        Server s = tlsServer(new String[]{"TLSv1"}, new String[]{"SSL_RSA_WITH_3DES_EDE_CBC_SHA"});
+
+        TlsReport r = tls.analyze("localhost", s.port());
+
+        TlsProtocolSupport v10 = protocol(r, "TLSv1");
+        assertEquals(TlsAnalyzerService.ACCEPTED, v10.getStatus(), String.valueOf(v10.getNote()));
+        assertEquals(List.of("TLS_RSA_WITH_3DES_EDE_CBC_SHA"), v10.getCipherSuites());
+        assertEquals(TlsAnalyzerService.REJECTED, protocol(r, "TLSv1.1").getStatus());
+        assertEquals(TlsAnalyzerService.REJECTED, protocol(r, "TLSv1.2").getStatus());
+        assertEquals(TlsAnalyzerService.REJECTED, protocol(r, "SSLv3").getStatus());
+        assertEquals(2048, r.getKeySize(), "cadeia vem do handshake normal mesmo só com TLSv1");
+    }
+
+    @Test
+    void weakSuiteOnTls12IsListed() throws Exception {
+        Server s = tlsServer(new String[]{"TLSv1.2"},
+                new String[]{"TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256", "SSL_RSA_WITH_3DES_EDE_CBC_SHA"});
+
+        TlsReport r = tls.analyze("localhost", s.port());
+
+        List<String> suites = protocol(r, "TLSv1.2").getCipherSuites();
+        assertTrue(suites.contains("TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256"), suites.toString());
+        assertTrue(suites.contains("TLS_RSA_WITH_3DES_EDE_CBC_SHA"), suites.toString());
+        assertEquals(2, suites.size(), suites.toString());
+    }
+
+    @Test
+    void unreachableAddressFallsBackToNextOne() throws Exception {
+        Server s = tlsServer(new String[]{"TLSv1.2"}, null);
+        // 1º endereço recusa a conexão (nada escutando em 127.0.0.2); o 2º é o servidor
+        resolved.clear();
+        resolved.add(InetAddress.getByName("127.0.0.2"));
+        resolved.add(LOOPBACK);
+
+        TlsReport r = tls.analyze("localhost", s.port());
+
+        assertNull(r.getError(), r.getError());
+        assertEquals(LOOPBACK.getHostAddress() + ":" + s.port(), r.getAddress());
+    }
+
+    @Test
+    void completeReportIsCachedButErrorsAreNot() throws Exception {
+        Server ok = tlsServer(new String[]{"TLSv1.2"}, new String[]{"TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256"});
+        TlsReport first = tls.analyze("localhost", ok.port());
+        assertTrue(TlsAnalyzerService.complete(first));
+        int handshakes = ok.accepted.get();
+        assertSame(first, tls.analyze("localhost", ok.port()));
+        assertEquals(handshakes, ok.accepted.get(), "relatório completo vem do cache");
+
+        // aceita TCP e fecha na hora: nenhuma versão completa o handshake
+        Server closer = plainServer();
+        TlsReport broken = tls.analyze("localhost", closer.port());
+        assertNotNull(broken.getError());
+        assertFalse(TlsAnalyzerService.complete(broken));
+        int before = closer.accepted.get();
+        tls.analyze("localhost", closer.port());
+        assertTrue(closer.accepted.get() > before, "relatório com erro não pode vir do cache");
+    }
+
+    // ===== apoio =====
+
+    private static TlsProtocolSupport protocol(TlsReport r, String name) {
+        for (TlsProtocolSupport p : r.getProtocols()) {
+            if (p.getProtocol().equals(name)) return p;
+        }
+        fail("protocolo ausente: " + name);
+        return null;
+    }
+
+    private Server tlsServer(String[] protocols, String[] suites) throws Exception {
+        KeyStore ks = KeyStore.getInstance("PKCS12");
+        try (InputStream in = getClass().getResourceAsStream("/tls/localhost.p12")) {
+            ks.load(in, PASSWORD);
+        }
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(ks, PASSWORD);
+        SSLContext ctx = SSLContext.getInstance("TLS");
+        ctx.init(kmf.getKeyManagers(), null, null);
+
+        SSLServerSocket socket = (SSLServerSocket) ctx.getServerSocketFactory().createServerSocket(0, 50, LOOPBACK);
+        socket.setEnabledProtocols(protocols);
+        if (suites != null) socket.setEnabledCipherSuites(suites);
+        return start(socket, true);
+    }
+
+    private Server plainServer() throws IOException {
+        return start(new ServerSocket(0, 50, LOOPBACK), false);
+    }
+
+    private Server start(ServerSocket socket, boolean handshake) {
+        Server s = new Server(socket, handshake);
+        servers.add(s);
+        return s;
+    }
+
+    // aceita conexões numa thread; com TLS faz o handshake e fecha, sem TLS fecha direto
+    private static final class Server implements Runnable {
+        final ServerSocket socket;
+        final boolean handshake;
+        final AtomicInteger accepted = new AtomicInteger();
+
+        Server(ServerSocket socket, boolean handshake) {
+            this.socket = socket;
+            this.handshake = handshake;
+            Thread t = new Thread(this, "tls-standin");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        int port() {
+            return socket.getLocalPort();
+        }
+
+        @Override
+        public void run() {
+            while (!socket.isClosed()) {
+                Socket c;
+                try {
+                    c = socket.accept();
+                } catch (IOException e) {
+                    return;
+                }
+                accepted.incrementAndGet();
+                Thread t = new Thread(() -> serve(c), "tls-standin-conn");
+                t.setDaemon(true);
+                t.start();
+            }
+        }
+
+        private void serve(Socket c) {
+            try (c) {
+                c.setSoTimeout(5000);
+                if (handshake) ((SSLSocket) c).startHandshake();
+            } catch (IOException e) {
+                // oferta recusada ou ClientHello cru abandonado: esperado
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // já fechado
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.joao.cyberaudit.service;
+
+import com.joao.cyberaudit.model.PortFinding;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Scan UDP contra responders locais (portas livres no loopback no lugar de 53/123/...)
+class UdpScanServiceTest {
+
+    private static final InetAddress LOOPBACK = InetAddress.getLoopbackAddress();
+
+    private UdpScanService udp;
+    private final List<Responder> responders = new ArrayList<>();
+    private int closedPort;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        udp = new UdpScanService(new ProbeScheduler(64, ""), 300, 1);
+        // porta sem ninguém: o loopback devolve ICMP unreachable
+        try (DatagramSocket s = new DatagramSocket(0, LOOPBACK)) {
+            closedPort = s.getLocalPort();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        udp.shutdown();
+        responders.forEach(Responder::close);
+    }
+
+    @Test
+    void dnsReplyWithSameIdIsOpenAndRecursive() throws Exception {
+        Responder dns = responder(UdpScanServiceTest::recursiveDnsAnswer);
+
+        PortFinding f = find(scan(Map.of(53, dns.port())), 53);
+
+        assertNotNull(f, "porta 53 deveria aparecer");
+        assertEquals(UdpScanService.OPEN, f.getState());
+        assertEquals(UdpScanService.PROTOCOL, f.getProtocol());
+        assertTrue(f.getEvidence().contains("recursão: sim"), f.getEvidence());
+        assertEquals("MEDIUM", f.getSeverity());
+    }
+
+    @Test
+    void dnsReplyWithOtherIdIsIgnored() throws Exception {
+        Responder dns = responder(query -> {
+            byte[] reply = recursiveDnsAnswer(query);
+            reply[0] ^= (byte) 0xFF;
+            return reply;
+        });
+
+        PortFinding f = find(scan(Map.of(53, dns.port())), 53);
+
+        assertNotNull(f);
+        assertEquals(UdpScanService.OPEN_FILTERED, f.getState(), "resposta com ID errado não pode abrir a porta");
+        assertTrue(dns.received.size() >= 2, "sem resposta válida, o probe é reenviado");
+    }
+
+    @Test
+    void eachScanUsesFreshDnsIdAndRetriesKeepIt() throws Exception {
+        Responder silent = responder(query -> null);
+
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            int before = silent.received.size();
+            scan(Map.of(53, silent.port()));
+            List<byte[]> sent = silent.received.subList(before, silent.received.size());
+            assertEquals(2, sent.size(), "1 envio + 1 reenvio");
+            assertEquals(txid(sent.get(0)), txid(sent.get(1)), "reenvio repete o ID da 1ª tentativa");
+            ids.add(txid(sent.get(0)));
+        }
+        assertTrue(ids.size() > 1, "IDs de transação iguais em todos os scans: " + ids);
+    }
+
+    @Test
+    void ntpRepliesAndClosedPortsAreClassified() throws Exception {
+        Responder ntp = responder(query -> {
+            byte[] reply = new byte[48];
+            reply[0] = 0x24; // v4, modo servidor
+            reply[1] = 2;    // stratum
+            return reply;
+        });
+
+        List<PortFinding> findings = scan(Map.of(123, ntp.port()));
+
+        PortFinding f = find(findings, 123);
+        assertNotNull(f);
+        assertEquals(UdpScanService.OPEN, f.getState());
+        assertEquals("NTP: versão 4, stratum 2", f.getEvidence());
+        assertNotNull(f.getLatencyMs());
+        // demais probes foram para a porta fechada: CLOSED fica fora do resultado
+        assertNull(find(findings, 53));
+        assertNull(find(findings, 161));
+        assertEquals(1, findings.size(), findings.toString());
+    }
+
+    // ===== apoio =====
+
+    private List<PortFinding> scan(Map<Integer, Integer> ports) throws Exception {
+        IntUnaryOperator portOf = p -> ports.getOrDefault(p, closedPort);
+        return udp.scanAsync(LOOPBACK, portOf).get(10, TimeUnit.SECONDS);
+    }
+
+    private static PortFinding find(List<PortFinding> findings, int port) {
+        for (PortFinding f : findings) {
+            if (f.getPort() == port) return f;
+        }
+        return null;
+    }
+
+    private static int txid(byte[] packet) {
+        return ((packet[0] & 0xFF) << 8) | (packet[1] & 0xFF);
+    }
+
+    // resposta com RA e 1 resposta, repetindo ID e pergunta da query
+    private static byte[] recursiveDnsAnswer(byte[] query) {
+        ByteBuffer b = ByteBuffer.allocate(query.length + 16);
+        b.put(query, 0, 2);
+        b.putShort((short) 0x8180);
+        b.putShort((short) 1).putShort((short) 1).putShort((short) 0).putShort((short) 0);
+        b.put(query, 12, query.length - 12);
+        b.put((byte) 0).putShort((short) 2).putShort((short) 1).putInt(60).putShort((short) 2).put((byte) 0);
+        return Arrays.copyOf(b.array(), b.position());
+    }
+
+    private Responder responder(UnaryOperator<byte[]> reply) throws SocketException {
+        Responder r = new Responder(reply);
+        responders.add(r);
+        return r;
+    }
+
+    // responde cada datagrama recebido com reply(query); null = não responde
+    private static final class Responder implements Runnable {
+        final DatagramSocket socket;
+        final UnaryOperator<byte[]> reply;
+        final List<byte[]> received = new CopyOnWriteArrayList<>();
+
+        Responder(UnaryOperator<byte[]> reply) throws SocketException {
+            this.socket = new DatagramSocket(0, LOOPBACK);
+            this.reply = reply;
+            Thread t = new Thread(this, "udp-responder");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        int port() {
+            return socket.getLocalPort();
+        }
+
+        @Override
+        public void run() {
+            byte[] buf = new byte[2048];
+            while (!socket.isClosed()) {
+                try {
+                    DatagramPacket in = new DatagramPacket(buf, buf.length);
+                    socket.receive(in);
+                    byte[] query = Arrays.copyOf(in.getData(), in.getLength());
+                    received.add(query);
+                    byte[] out = reply.apply(query);
+                    if (out != null) socket.send(new DatagramPacket(out, out.length, in.getSocketAddress()));
+                } catch (Exception e) {
+                    return;
+                }
+            }
+        }
+
+        void close() {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.joao.cyberaudit.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Automato: sobreposição via fail links, caixa ASCII, prioridade por id e casamento atravessando chunks
+class ByteAhoCorasickTest {
+
+    @Test
+    void overlappingPatternsAllMatch() {
+        ByteAhoCorasick ac = compile(false, "he", "she", "his", "hers");
+
+        // "she" e "he" terminam no mesmo byte: saem em ordem de id
+        assertEquals(List.of("0@4", "1@4", "3@6"), matches(ac, buf("ushers")));
+    }
+
+    @Test
+    void ignoreCaseFoldsAsciiOnly() {
+        ByteAhoCorasick ac = compile(true, "Server: nginx");
+
+        assertEquals(List.of("0@13"), matches(ac, buf("SERVER: NGINX/1.25")));
+        assertEquals(List.of(), matches(compile(false, "Server: nginx"), buf("SERVER: NGINX")));
+        // 0xC9 ('É' em latin-1) não é dobrado para 0xE9
+        assertEquals(List.of(), matches(compile(true, "é"), latin1("É")));
+    }
+
+    @Test
+    void firstByIdPrefersEarlierRuleOverEarlierPosition() {
+        ByteAhoCorasick ac = compile(true, "\"distribution\":\"opensearch\"", "\"number\":\"");
+        ByteBuffer b = buf("{\"number\":\"2.13.0\",\"distribution\":\"opensearch\"}");
+
+        int[] end = new int[1];
+        assertEquals(0, ac.firstById(b, end));
+        assertEquals(b.limit() - 1, end[0]);
+        assertEquals(-1, ac.firstById(buf("nada aqui"), end));
+    }
+
+    @Test
+    void scanRespectsPositionAndDoesNotConsume() {
+        ByteAhoCorasick ac = compile(false, "abc");
+        ByteBuffer b = buf("abcxxabc");
+        b.position(1);
+
+        assertEquals(List.of("0@8"), matches(ac, b));
+        assertEquals(1, b.position());
+        assertEquals(8, b.limit());
+    }
+
+    @Test
+    void matchSpanningChunkBoundaryIsFound() {
+        ByteAhoCorasick ac = compile(true, "SSH-2.0-OpenSSH_", "redis_version:");
+        String stream = "SSH-2.0-OpenSSH_9.6 ... # Server\r\nredis_version:7.2.4\r\n";
+
+        // todas as posições de corte: o padrão cortado em dois chunks casa no segundo
+        for (int cut = 1; cut < stream.length(); cut++) {
+            List<Integer> ids = new ArrayList<>();
+            int state = ac.scan(0, buf(stream.substring(0, cut)), (id, end) -> ids.add(id));
+            state = ac.scan(state, buf(stream.substring(cut)), (id, end) -> ids.add(id));
+
+            assertTrue(state >= 0);
+            assertEquals(List.of(0, 1), ids, "corte em " + cut);
+        }
+    }
+
+    @Test
+    void handlerCanStopTheScan() {
+        ByteAhoCorasick ac = compile(false, "a");
+        List<Integer> seen = new ArrayList<>();
+
+        int state = ac.scan(0, buf("aaaa"), (id, end) -> seen.add(end) && seen.size() < 2);
+
+        assertEquals(-1, state);
+        assertEquals(List.of(1, 2), seen);
+    }
+
+    @Test
+    void emptyPatternIsRejected() {
+        try {
+            compile(false, "ok", "");
+            fail("padrão vazio aceito");
+        } catch (IllegalArgumentException expected) {
+            // ok
+        }
+    }
+
+    // ===== apoio =====
+
+    private static ByteAhoCorasick compile(boolean ignoreCase, String... patterns) {
+        List<byte[]> bytes = new ArrayList<>();
+        for (String p : patterns) bytes.add(p.getBytes(StandardCharsets.ISO_8859_1));
+        return ByteAhoCorasick.compile(bytes, ignoreCase);
+    }
+
+    private static List<String> matches(ByteAhoCorasick ac, ByteBuffer b) {
+        List<String> out = new ArrayList<>();
+        ac.scan(b, (id, end) -> out.add(id + "@" + end));
+        return out;
+    }
+
+    private static ByteBuffer buf(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static ByteBuffer latin1(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,60 @@
+package com.joao.cyberaudit.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// SimHash em pedaços: mesmo valor que de uma vez só; páginas parecidas ficam perto, diferentes ficam longe
+class SimHashTest {
+
+    private static final String PAGE = "<html><head><title>Not Found</title></head><body><h1>404 Not Found</h1>"
+            + "<p>The requested URL was not found on this server. Please check the address and try again.</p>"
+            + "<hr><address>Apache/2.4.58 (Ubuntu) Server at example.com Port 443</address></body></html>";
+
+    @Test
+    void chunkedUpdateEqualsSingleUpdate() {
+        long whole = hash(PAGE);
+        byte[] b = PAGE.getBytes(StandardCharsets.UTF_8);
+
+        // corta no meio de tokens em todas as posições
+        for (int cut = 1; cut < b.length; cut++) {
+            SimHash h = new SimHash();
+            h.update(b, 0, cut);
+            h.update(b, cut, b.length);
+            assertEquals(whole, h.value(), "corte em " + cut);
+        }
+    }
+
+    @Test
+    void caseAndPunctuationDoNotMatter() {
+        assertEquals(hash("Hello, World! foo bar"), hash("hello world   FOO\tbar"));
+    }
+
+    @Test
+    void nearDuplicatePagesAreCloserThanUnrelatedOnes() {
+        long a = hash(PAGE);
+        long b = hash(PAGE.replace("example.com", "shop.example.com").replace("443", "8443"));
+        long other = hash("<html><body><form action=/login method=post><input name=user><input name=password"
+                + " type=password><button>Entrar</button></form><script src=/app.js></script></body></html>");
+
+        assertEquals(64, SimHash.distance(a, a) + 64);
+        assertTrue(SimHash.distance(a, b) < SimHash.distance(a, other),
+                SimHash.distance(a, b) + " vs " + SimHash.distance(a, other));
+        assertTrue(SimHash.similarity(a, b) > 0.8, String.valueOf(SimHash.similarity(a, b)));
+    }
+
+    @Test
+    void shortBodiesStillHash() {
+        assertNotEquals(0L, hash("ok"));
+        assertEquals(0L, hash("  ...  "), "sem tokens: nenhum voto");
+    }
+
+    private static long hash(String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        SimHash h = new SimHash();
+        h.update(b, 0, b.length);
+        return h.value();
+    }
+}